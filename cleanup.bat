@@ -33,6 +33,16 @@ if exist "student.db" (
     del "student.db"
 )
 
+if exist "student.db-wal" del "student.db-wal"
+if exist "student.db-shm" del "student.db-shm"
+
+REM --- Delete scoring journal ---
+if exist "student.db.journal" (
+    echo Deleting scoring journal: student.db.journal
+    del "student.db.journal"
+)
+if exist "score_journal.bin" del "score_journal.bin"
+
 REM --- Delete snapshot files ---
 if exist "snapshot_*.json" (
     echo Deleting JSON snapshots...
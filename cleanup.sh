@@ -11,7 +11,10 @@ rm -f Raw_Source.xlsx
 rm -f Student_Awards.xlsx
 
 # Delete database file
-rm -f student.db
+rm -f student.db student.db-wal student.db-shm
+
+# Delete scoring journal
+rm -f student.db.journal score_journal.bin
 
 # Delete snapshot files
 rm -f snapshot_*.json
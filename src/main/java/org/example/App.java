@@ -1,14 +1,21 @@
 package org.example;
 
 import org.example.app.StartupService;
+import org.example.build.BuildDelta;
 import org.example.build.BuildList;
 import org.example.build.BuildNull;
+import org.example.build.DedupReport;
 import org.example.config.Config;
 import org.example.model.Award;
 import org.example.model.Student;
 import org.example.model.StudentAwardRecord;
+import org.example.persistence.LabelMergePolicy;
+import org.example.persistence.MergeReport;
 import org.example.persistence.NewDataManager;
+import org.example.persistence.SnapshotFilter;
+import org.example.persistence.SnapshotFormat;
 import org.example.persistence.SnapshotManager;
+import org.example.persistence.SqliteConnectionHolder;
 import org.example.util.LoggerUtil;
 import org.slf4j.Logger;
 import org.fusesource.jansi.AnsiConsole;
@@ -17,6 +24,7 @@ import static org.example.util.AnsiColors.*;
 import java.io.File;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -30,25 +38,12 @@ public class App {
     private static NewDataManager dataManager;
     private static List<Student> studentList;
     private static final Scanner scanner = new Scanner(System.in);
-    private static final Map<String, Double> SCORE_MAP = Map.of(
-            Config.CATEGORY_CERT, Config.SCORE_CERT,
-            Config.CATEGORY_NATIONAL, Config.SCORE_NATIONAL,
-            Config.CATEGORY_PROVINCE_CITY, Config.SCORE_PROVINCE_CITY,
-            Config.CATEGORY_SCHOOL, Config.SCORE_SCHOOL,
-            Config.CATEGORY_COLLEGE, Config.SCORE_COLLEGE,
-            Config.CATEGORY_NONE, Config.SCORE_NONE
-    );
-    private static final List<String> CATEGORY_KEYS = List.of(
-            Config.CATEGORY_CERT,
-            Config.CATEGORY_NATIONAL,
-            Config.CATEGORY_PROVINCE_CITY,
-            Config.CATEGORY_SCHOOL,
-            Config.CATEGORY_COLLEGE,
-            Config.CATEGORY_NONE
-    );
+    private static final Map<String, Double> SCORE_MAP = Config.SCORE_MAP;
+    private static final List<String> CATEGORY_KEYS = Config.CATEGORY_KEYS;
 
     public static void main(String[] args) {
         AnsiConsole.systemInstall(); // Enable ANSI support
+        Runtime.getRuntime().addShutdownHook(new Thread(App::shutdown, "app-shutdown"));
         System.out.println(cyan("欢迎使用学生奖项评分系统（命令行版）"));
 
         if (!startup()) {
@@ -58,6 +53,7 @@ public class App {
         }
 
         mainLoop();
+        shutdown();
 
         System.out.println(cyan("感谢使用，程序已退出。"));
         AnsiConsole.systemUninstall();
@@ -77,10 +73,9 @@ public class App {
         try {
             switch (choice) {
                 case "1":
-                    System.out.print(yellow("请输入源 Excel 文件路径: "));
+                    System.out.print(yellow("请输入源 Excel 文件路径（也可为目录或通配符, 如 exports/*.xlsx）: "));
                     String path = scanner.nextLine();
-                    new BuildList().build(path);
-                    result = startupService.initialize();
+                    result = startupService.initialize(reportDuplicates(new BuildList().build(path)));
                     break;
                 case "2":
                      result = startupService.initialize();
@@ -89,11 +84,11 @@ public class App {
                     if (Config.USE_RANDOM_DATA) {
                         System.out.println(green("使用随机数据构建源文件..."));
                         new BuildNull().build();
-                        new BuildList().build(Config.RAW_SOURCE_PATH);
+                        result = startupService.initialize(reportDuplicates(new BuildList().build(Config.RAW_SOURCE_PATH)));
                     } else {
                         System.out.println("随机数据被禁用, 使用现有汇总文件");
+                        result = startupService.initialize();
                     }
-                    result = startupService.initialize();
                     break;
                 default:
                     System.out.println(red("无效选项，程序退出。"));
@@ -116,6 +111,33 @@ public class App {
         }
     }
 
+    /**
+     * 构建时合并掉的重复奖项：打印统计并把明细写成 CSV，便于核对。
+     */
+    private static BuildDelta reportDuplicates(BuildDelta delta) {
+        DedupReport report = delta == null ? null : delta.getDedupReport();
+        if (report == null || report.getDuplicateCount() == 0) return delta;
+        System.out.println(yellow(report.summary()));
+        File csv = new File("award_duplicates_" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss")) + ".csv");
+        try {
+            report.writeCsv(csv);
+            System.out.println(yellow("重复明细: ") + csv.getAbsolutePath());
+        } catch (Exception e) {
+            LOGGER.error("写出去重报告失败", e);
+        }
+        return delta;
+    }
+
+    /**
+     * 退出前刷新写回缓冲中的数据（正常退出与 Ctrl+C 均会调用，重复调用无副作用）。
+     */
+    private static synchronized void shutdown() {
+        if (dataManager != null) {
+            dataManager.close();
+        }
+        SqliteConnectionHolder.closeAll();
+    }
+
     private static void mainLoop() {
         while (true) {
             System.out.println(cyan("\n--- 主菜单 ---"));
@@ -159,29 +181,31 @@ public class App {
 
         List<StudentAwardRecord> recordsToList = switch (choice) {
             case "2" -> dataManager.getAllRecords().stream()
-                    .filter(r -> r.getRecordedAwardCount() > 0 && r.getRecordedAwardCount() == r.getAwards().size())
+                    .filter(r -> r.getRecordedAwardCount() > 0 && r.getRecordedAwardCount() == r.getAwardCount())
                     .collect(Collectors.toList());
             case "3" -> dataManager.getAllRecords().stream()
-                    .filter(r -> r.getRecordedAwardCount() < r.getAwards().size())
+                    .filter(r -> r.getRecordedAwardCount() < r.getAwardCount())
                     .collect(Collectors.toList());
-            default -> new java.util.ArrayList<>(dataManager.getAllRecords());
+            default -> dataManager.getAllRecords();
         };
 
         listAllStudents(recordsToList);
     }
 
 
+    /**
+     * 打印学生列表。records 需已按学号升序（getAllRecords 的顺序，过滤后仍保持）。
+     */
     private static void listAllStudents(List<StudentAwardRecord> records) {
         System.out.println(cyan("\n--- 学生列表 ---"));
         System.out.printf("%-15s %-10s %-15s %-10s\n", "学号", "姓名", "班级", "进度");
         System.out.println("-".repeat(55));
-        records.sort((r1, r2) -> Long.compare(r1.getStudentId(), r2.getStudentId()));
         for (StudentAwardRecord record : records) {
             System.out.printf("%-15d %-10s %-15s %-10s\n",
                     record.getStudentId(),
                     record.getName(),
                     record.getClassName(),
-                    record.getRecordedAwardCount() + "/" + record.getAwards().size());
+                    record.getRecordedAwardCount() + "/" + record.getAwardCount());
         }
     }
 
@@ -217,17 +241,16 @@ public class App {
     private static void scoreStudent(StudentAwardRecord record, boolean showAll) {
         System.out.println("开始为学生 " + green(record.getName()) + " (" + record.getStudentId() + ") 评分。输入 'q' 可以随时退出评分。");
 
-        List<Map<String, String>> awards = record.getAwards();
+        int awardCount = record.getAwardCount();
 
-        for (int i = 0; i < awards.size(); i++) {
-            Map<String, String> award = awards.get(i);
-            String currentLabel = award.get("category");
+        for (int i = 0; i < awardCount; i++) {
+            String currentLabel = record.getAwardLabel(i);
 
             if (showAll || currentLabel == null || currentLabel.isEmpty()) {
                 System.out.println("\n" + "-".repeat(20));
-                System.out.printf("正在评分第 %d / %d 个奖项:\n", i + 1, awards.size());
-                System.out.println("奖项名称: " + award.get("name"));
-                System.out.println("证书图片链接: " + award.get("image"));
+                System.out.printf("正在评分第 %d / %d 个奖项:\n", i + 1, awardCount);
+                System.out.println("奖项名称: " + record.getAwardName(i));
+                System.out.println("证书图片链接: " + record.getAwardImage(i));
                 System.out.println("当前分类: " + (currentLabel == null || currentLabel.isEmpty() ? yellow("未评分") : green(currentLabel)));
                 System.out.println("请选择一个新分类:");
 
@@ -266,70 +289,162 @@ public class App {
     }
 
     private static void updateAwardPoints(StudentAwardRecord record, int awardIndex, String newLabel) {
-        String previousLabel = record.getAwardLabel(awardIndex);
+        // 内存更新 + 写 journal 后即返回，SQLite/Excel 由持久化流水线异步写入；写库失败时 journal 保留，下次启动重放
+        dataManager.scoreAward(record, awardIndex, newLabel)
+                .exceptionally(ex -> {
+                    LOGGER.error("评分写库失败: 学号 " + record.getStudentId() + " 奖项 " + (awardIndex + 1), ex);
+                    return null;
+                });
+    }
 
-        // 如果之前有标签，先减去旧分数
-        if (previousLabel != null && !previousLabel.isEmpty()) {
-            double oldScore = SCORE_MAP.getOrDefault(previousLabel, 0.0);
-            if (Config.CATEGORY_CERT.equals(previousLabel)) {
-                record.addCertTotalPoints(-oldScore);
-            } else {
-                record.addAwardTotalPoints(-oldScore);
+    private static void exportProgress() {
+        String baseId = dataManager.latestSnapshotId();
+        System.out.println(cyan("\n选择导出类型:"));
+        System.out.println("1. 全量快照");
+        System.out.println("2. 增量快照 " + (baseId == null ? "(尚无导出/导入过的快照, 不可用)" : "(只含快照 " + baseId + " 之后变更的学生)"));
+        System.out.println("3. 压缩快照链 (全量快照 + 其后的增量 -> 新的全量快照)");
+        System.out.println("4. 合并多位评分人的快照 (逐个奖项合并, 输出冲突报告)");
+        System.out.print(yellow("请输入选项 (1-4): "));
+        String kind = scanner.nextLine();
+        if ("2".equals(kind) && baseId == null) {
+            System.out.println(red("尚无可作为基准的快照，请先导出全量快照。"));
+            return;
+        }
+        List<File> inputs = new ArrayList<>();
+        LabelMergePolicy policy = LabelMergePolicy.LAST_WRITER;
+        if ("3".equals(kind) || "4".equals(kind)) {
+            System.out.print(yellow("3".equals(kind) ? "请输入全量快照与增量快照文件名 (以空格分隔): " : "请输入要合并的快照文件名 (以空格分隔): "));
+            for (String name : scanner.nextLine().trim().split("\\s+")) {
+                if (!name.isEmpty()) inputs.add(new File(name));
             }
-        } else {
-            // 如果是第一次评分，增加计数
-            record.incrementRecordedAwardCount();
         }
-
-        // 添加新分数
-        double newScore = SCORE_MAP.getOrDefault(newLabel, 0.0);
-        if (Config.CATEGORY_CERT.equals(newLabel)) {
-            record.addCertTotalPoints(newScore);
-        } else {
-            record.addAwardTotalPoints(newScore);
+        if ("4".equals(kind)) {
+            System.out.println(cyan("\n同一奖项评分不一致时:"));
+            System.out.println("1. 采用较新快照中的评分");
+            System.out.println("2. 采用积分较高的评分");
+            System.out.print(yellow("请输入选项 (1-2): "));
+            if ("2".equals(scanner.nextLine())) policy = LabelMergePolicy.HIGHEST_SCORE;
         }
 
-        record.setAwardLabel(awardIndex, newLabel);
-        dataManager.persistRecord(record);
-    }
-
-    private static void exportProgress() {
         System.out.println(cyan("\n选择导出格式:"));
         System.out.println("1. 普通 JSON");
         System.out.println("2. 压缩 JSON (GZIP)");
-        System.out.print(yellow("请输入选项 (1-2): "));
+        System.out.println("3. 二进制快照 (体积最小, 导入最快)");
+        System.out.println("4. 压缩 JSON (LZ4, 压缩速度快)");
+        System.out.print(yellow("请输入选项 (1-4): "));
         String choice = scanner.nextLine();
 
         String ts = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss"));
-        boolean compressed = "2".equals(choice);
-        String extension = compressed ? ".json.gz" : ".json";
-        File out = new File("snapshot_" + ts + extension);
+        SnapshotFormat format = switch (choice) {
+            case "2" -> SnapshotFormat.JSON_GZIP;
+            case "3" -> SnapshotFormat.BINARY;
+            case "4" -> SnapshotFormat.JSON_LZ4;
+            default -> SnapshotFormat.JSON;
+        };
+        File out = new File(switch (kind) {
+            case "2" -> "delta_";
+            case "4" -> "merged_";
+            default -> "snapshot_";
+        } + ts + format.extension());
+
+        if ("4".equals(kind)) {
+            MergeReport report = SnapshotManager.mergeSnapshots(inputs, out, format, policy);
+            if (report == null) {
+                System.out.println(red("合并失败（详见日志）。"));
+                return;
+            }
+            System.out.println(green(report.summary()));
+            System.out.println(green("合并结果已导出到 ") + out.getAbsolutePath() + "，可通过“导入进度”载入。");
+            if (report.getConflictCount() > 0) {
+                File csv = new File("merge_conflicts_" + ts + ".csv");
+                try {
+                    report.writeCsv(csv);
+                    System.out.println(yellow("冲突明细: ") + csv.getAbsolutePath());
+                } catch (Exception e) {
+                    LOGGER.error("写出冲突报告失败", e);
+                }
+            }
+            return;
+        }
+        if ("3".equals(kind)) {
+            if (SnapshotManager.compactChain(inputs, out, format)) {
+                System.out.println(green("快照链已压缩为全量快照 ") + out.getAbsolutePath());
+            } else {
+                System.out.println(red("压缩失败，请检查文件是否构成完整的快照链（详见日志）。"));
+            }
+            return;
+        }
 
         // 确保所有学生记录都存在
         studentList.forEach(s -> dataManager.getOrCreateRecord(s.getStudentId(), s.getName(), s.getClassName()));
 
-        SnapshotManager.exportAllProgress(out, dataManager, compressed);
+        if ("2".equals(kind)) {
+            if (!SnapshotManager.exportDelta(out, dataManager, baseId, format)) {
+                System.out.println(red("增量导出失败（详见日志）。"));
+                return;
+            }
+            System.out.println(green("增量进度已导出到 ") + out.getAbsolutePath());
+            return;
+        }
+        SnapshotManager.exportAllProgress(out, dataManager, format);
         System.out.println(green("进度已成功导出到 ") + out.getAbsolutePath());
     }
 
     private static void importProgress() {
-        System.out.print(yellow("\n请输入要导入的快照文件名: "));
-        String filename = scanner.nextLine();
-        File file = new File(filename);
+        System.out.println(cyan("\n选择导入方式:"));
+        System.out.println("1. 导入快照 (全量快照覆盖全部数据, 增量快照按链合并)");
+        System.out.println("2. 只导入指定班级 (合并到现有数据, 不清空)");
+        System.out.println("3. 只导入学号范围 (合并到现有数据, 不清空)");
+        System.out.print(yellow("请输入选项 (1-3): "));
+        String mode = scanner.nextLine();
+        SnapshotFilter filter = null;
+        if ("2".equals(mode)) {
+            System.out.print(yellow("请输入班级名称: "));
+            filter = SnapshotFilter.byClass(scanner.nextLine().trim());
+        } else if ("3".equals(mode)) {
+            System.out.print(yellow("请输入起始学号与结束学号 (以空格分隔): "));
+            String[] range = scanner.nextLine().trim().split("\\s+");
+            try {
+                filter = SnapshotFilter.byIdRange(Long.parseLong(range[0]), Long.parseLong(range[range.length - 1]));
+            } catch (NumberFormatException e) {
+                System.out.println(red("学号格式无效。"));
+                return;
+            }
+        }
 
-        if (!file.exists()) {
-            System.out.println(red("文件不存在: " + filename));
-            return;
+        System.out.print(yellow(filter == null
+                ? "\n请输入要导入的快照文件名 (全量快照与其后的增量可一次输入多个, 以空格分隔): "
+                : "\n请输入要导入的快照文件名: "));
+        List<File> files = new ArrayList<>();
+        for (String filename : scanner.nextLine().trim().split("\\s+")) {
+            if (filename.isEmpty()) continue;
+            File file = new File(filename);
+            if (!file.exists()) {
+                System.out.println(red("文件不存在: " + filename));
+                return;
+            }
+            files.add(file);
         }
+        if (files.isEmpty()) return;
 
-        System.out.println(red("警告：导入操作将覆盖所有当前数据（包括Excel和数据库）！"));
+        if (filter == null) {
+            System.out.println(red("警告：导入全量快照将覆盖所有当前数据（包括Excel和数据库）！增量快照只更新其中的学生。"));
+        } else {
+            System.out.println(yellow("将把快照中" + filter + "的学生合并到当前数据，其他学生不受影响。"));
+        }
         System.out.print(yellow("确定要继续吗? (y/n): "));
         String confirmation = scanner.nextLine();
 
         if ("y".equalsIgnoreCase(confirmation)) {
             try {
-                SnapshotManager.importAndRebuild(file, dataManager);
-                System.out.println(green("导入成功！正在重新加载数据..."));
+                NewDataManager.ProgressListener progress = (done, total) -> System.out.printf("\r已写入 %d / %d 条记录", done, total);
+                boolean ok = filter == null
+                        ? SnapshotManager.importChain(files, dataManager, progress)
+                        : SnapshotManager.importSelected(files.get(0), dataManager, filter, progress);
+                System.out.println();
+                System.out.println(ok ? green("导入成功！正在重新加载数据...") : red("导入未完成（详见日志），正在重新加载当前数据..."));
+                // 先关闭旧管理器（含 journal），再由新管理器接管同一组文件
+                dataManager.close();
 
                 // 从重建后的数据中加载新的学生列表
                 studentList.clear();
@@ -2,11 +2,7 @@ package org.example.app;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import org.apache.poi.ss.usermodel.Cell;
-import org.apache.poi.ss.usermodel.Row;
-import org.apache.poi.ss.usermodel.Sheet;
-import org.apache.poi.ss.usermodel.Workbook;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.example.build.BuildDelta;
 import org.example.build.BuildList;
 import org.example.config.Config;
 import org.example.config.TemplateInitializer;
@@ -14,13 +10,15 @@ import org.example.model.Award;
 import org.example.model.Student;
 import org.example.model.StudentAwardRecord;
 import org.example.persistence.NewDataManager;
+import org.example.processing.XlsxStreamReader;
 import org.example.startup.StartupIntegrityChecker;
 import org.example.util.LoggerUtil;
+import org.example.util.StringDictionary;
 import org.slf4j.Logger;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -29,24 +27,121 @@ import java.util.List;
 public class StartupService {
     private static final Logger LOGGER = LoggerUtil.getLogger(StartupService.class.getName());
     private final ObjectMapper mapper = new ObjectMapper();
+    private final StringDictionary dict = StringDictionary.shared();
 
+    /**
+     * 启动加载。SQLite 为权威数据源：数据库有记录、已与汇总完整同步过，且汇总文件不比数据库新（或其中没有学生）时，
+     * 直接从库载入（一次有序扫描），学生列表由记录派生；否则解析 Awards_Summary.xlsx 并把新学生同步入库。
+     * 旧版本的数据库只含评过分或导入过的学生，升级后首次启动会与汇总同步一次。
+     * Student_Awards.xlsx 仅作为导出文件，缺失或导出状态落后于数据库时才重新生成。
+     */
     public StartupResult initialize() {
+        return initialize(null);
+    }
+
+    /**
+     * 汇总增量构建之后的启动：数据库已有数据时直接从库载入，只用 delta 中受影响的学生修补记录，不再解析整个汇总文件、同步全部学生。
+     * delta 为空、为整体重建，或数据库为空时与 {@link #initialize()} 相同；数据库尚未与汇总同步过时先完整同步一次再修补。
+     */
+    public StartupResult initialize(BuildDelta delta) {
+        long start = System.nanoTime();
+        File summary = new File(Config.AWARDS_SUMMARY_PATH);
+        // 须在生成空模板之前判断：快照重建会删除汇总文件，新建的空模板不应被当作更新的数据源
+        boolean summaryChanged = summary.exists() && summary.lastModified() > NewDataManager.dbLastModified(Config.DB_PATH);
         TemplateInitializer.initializeTemplate();
-        List<Student> students = loadStudentsFromSummary();
         NewDataManager manager = new NewDataManager(Config.STUDENT_AWARDS_PATH, Config.DB_PATH);
-        manager.reloadFromExcel();
 
-        // Sync student list with data manager
+        int dbCount = manager.reloadFromDb();
+        // 尚未与汇总同步过的数据库可能只含部分学生，须先完整同步一次
+        boolean partialDb = dbCount > 0 && !manager.isSummarySynced();
+        boolean incremental = delta != null && delta.isIncremental() && dbCount > 0;
+        // 汇总较新但没有任何学生（如只剩表头的模板）时同样以数据库为准
+        List<Student> students = (summaryChanged && !incremental) || partialDb ? loadStudentsFromSummary() : null;
+        String source;
+        // 重放上次未合并进 SQLite/Excel 的评分（崩溃恢复），每次启动只重放一次
+        boolean replayed = false;
+        if (incremental) {
+            if (partialDb && syncWithSummary(manager, students)) manager.markSummarySynced();
+            // 增量修补前重放：事件按奖项序号定位，修补可能改变奖项顺序
+            manager.replayJournal();
+            replayed = true;
+            int patched = manager.applySourceChanges(toRecords(delta.getChanged()));
+            students = toStudents(manager.getAllRecords());
+            source = "SQLite + 增量修补 " + patched + " 名";
+            // 与整体重建一致：源中已没有的学生不从数据库删除（其评分仍保留）
+            if (!delta.getRemoved().isEmpty()) LOGGER.warn("源数据中已没有 " + delta.getRemoved().size() + " 名学生的任何行, 已从汇总移除, 数据库记录保留");
+        } else if (dbCount > 0 && (students == null || students.isEmpty())) {
+            students = toStudents(manager.getAllRecords());
+            source = "SQLite";
+        } else {
+            if (students == null) students = loadStudentsFromSummary();
+            boolean persisted = true;
+            // 旧版本只有 Excel 数据时退回解析 Student_Awards.xlsx，载入的记录随即入库，下次启动直接从库载入
+            if (dbCount == 0 && manager.reloadFromExcel() > 0) persisted = manager.writeDbBatch(manager.getAllRecords(), null);
+            if (syncWithSummary(manager, students) && persisted) manager.markSummarySynced();
+            if (partialDb) {
+                // 库中已有但汇总里没有的学生（如导入的）同样保留在名单中，与之后从库启动一致
+                students = toStudents(manager.getAllRecords());
+                source = "SQLite + Awards_Summary.xlsx 同步";
+            } else {
+                source = "Awards_Summary.xlsx";
+            }
+        }
+
+        if (!replayed) manager.replayJournal();
+        manager.exportExcelIfStale();
+
+        StartupIntegrityChecker.runAll(manager, students);
+        LOGGER.info(dict.summary());
+        LOGGER.info("启动加载完成: 来源=" + source + ", 学生 " + students.size() + " 名, 耗时 " + (System.nanoTime() - start) / 1_000_000 + " ms");
+        return new StartupResult(students, manager);
+    }
+
+    /**
+     * 把汇总中的学生同步到数据管理器：新学生带上汇总里的奖项并批量入库。
+     * @return 汇总中有学生且全部已入库
+     */
+    private boolean syncWithSummary(NewDataManager manager, List<Student> students) {
+        List<StudentAwardRecord> created = new ArrayList<>();
         for (Student student : students) {
+            boolean isNew = manager.getRecord(student.getStudentId()) == null;
             StudentAwardRecord record = manager.getOrCreateRecord(student.getStudentId(), student.getName(), student.getClassName());
             // If the record is new, populate it with awards from the student summary
-            if (record.getAwards().isEmpty() && student.getAwards() != null) {
+            if (record.getAwardCount() == 0 && student.getAwards() != null) {
                 student.getAwards().forEach(award -> record.addAward(award.getName(), award.getImageUrl(), ""));
+                isNew = true;
             }
+            if (isNew) created.add(record);
         }
+        return manager.persistRecords(created) && !students.isEmpty();
+    }
 
-        StartupIntegrityChecker.runAll(manager, students);
-        return new StartupResult(students, manager);
+    /**
+     * 增量构建给出的学生（源中的完整奖项列表，未评分）转为记录。
+     */
+    private List<StudentAwardRecord> toRecords(List<Student> changed) {
+        List<StudentAwardRecord> records = new ArrayList<>(changed.size());
+        for (Student student : changed) {
+            StudentAwardRecord record = new StudentAwardRecord(student.getStudentId(), student.getName(), dict.intern(student.getClassName()));
+            for (Award award : student.getAwards()) record.addAward(dict.intern(award.getName()), dict.intern(award.getImageUrl()), "");
+            records.add(record);
+        }
+        return records;
+    }
+
+    /**
+     * 由记录派生学生列表（SQLite 启动模式下不再解析汇总文件）。
+     */
+    private List<Student> toStudents(Collection<StudentAwardRecord> records) {
+        List<Student> list = new ArrayList<>(records.size());
+        for (StudentAwardRecord r : records) {
+            List<Award> awards = new ArrayList<>(r.getAwardCount());
+            for (int i = 0; i < r.getAwardCount(); i++) {
+                awards.add(new Award(r.getAwardName(i), r.getAwardImage(i)));
+            }
+            list.add(new Student(r.getStudentId(), r.getName(), r.getClassName(), awards));
+        }
+        return list;
     }
 
     private List<Student> loadStudentsFromSummary() {
@@ -56,65 +151,39 @@ public class StartupService {
             LOGGER.warn("汇总文件不存在: " + Config.AWARDS_SUMMARY_PATH);
             return list;
         }
-        try (FileInputStream fis = new FileInputStream(f); Workbook wb = new XSSFWorkbook(fis)) {
-            Sheet sheet = wb.getSheet("Sheet1");
-            if (sheet == null) return list;
-            Row header = sheet.getRow(0);
-            if (header == null) return list;
-            int colStudentId = findColumnIndex(header, "学号");
-            int colName = findColumnIndex(header, "姓名");
-            int colClazz = findColumnIndex(header, "班级");
-            int colAwards = findColumnIndex(header, "奖项");
-            if (colStudentId < 0 || colName < 0 || colClazz < 0 || colAwards < 0) {
-                LOGGER.error("列索引识别失败");
-                return list;
-            }
-            for (int r = 1; r <= sheet.getLastRowNum(); r++) {
-                Row row = sheet.getRow(r);
-                if (row == null) continue;
-                String sidStr = getCellString(row.getCell(colStudentId));
-                String name = getCellString(row.getCell(colName));
-                String clazz = getCellString(row.getCell(colClazz));
-                String awardsJson = getCellString(row.getCell(colAwards));
-                if (sidStr == null || sidStr.isEmpty()) continue;
+        // 列索引：学号, 姓名, 班级, 奖项；-2 表示尚未读到表头
+        int[] cols = {-2, -2, -2, -2};
+        try {
+            XlsxStreamReader.readSheet(f, "Sheet1", (r, cells) -> {
+                if (r == 0) {
+                    cols[0] = XlsxStreamReader.indexOf(cells, "学号");
+                    cols[1] = XlsxStreamReader.indexOf(cells, "姓名");
+                    cols[2] = XlsxStreamReader.indexOf(cells, "班级");
+                    cols[3] = XlsxStreamReader.indexOf(cells, "奖项");
+                    if (cols[0] < 0 || cols[1] < 0 || cols[2] < 0 || cols[3] < 0) LOGGER.error("列索引识别失败");
+                    return;
+                }
+                if (cols[0] < 0 || cols[1] < 0 || cols[2] < 0 || cols[3] < 0) return;
+                String sidStr = XlsxStreamReader.cell(cells, cols[0]);
+                String name = XlsxStreamReader.cell(cells, cols[1]);
+                String clazz = XlsxStreamReader.cell(cells, cols[2]);
+                String awardsJson = XlsxStreamReader.cell(cells, cols[3]);
+                if (sidStr == null || sidStr.isEmpty()) return;
                 long sid;
                 try {
                     sid = Long.parseLong(sidStr);
                 } catch (NumberFormatException ex) {
-                    continue;
+                    return;
                 }
                 List<Award> awardList = parseAwards(awardsJson);
-                list.add(new Student(sid, name == null ? "" : name, clazz == null ? "" : clazz, awardList));
-            }
+                list.add(new Student(sid, name == null ? "" : name, clazz == null ? "" : dict.intern(clazz), awardList));
+            });
         } catch (Exception e) {
             LoggerUtil.logException(LOGGER, e, "加载学生失败");
         }
         return list;
     }
 
-    private int findColumnIndex(Row header, String name) {
-        for (int i = 0; i < header.getLastCellNum(); i++) {
-            Cell cell = header.getCell(i);
-            if (cell != null && name.equals(cell.getStringCellValue())) return i;
-        }
-        return -1;
-    }
-
-    private String getCellString(Cell cell) {
-        if (cell == null) return null;
-        switch (cell.getCellType()) {
-            case STRING:
-                return cell.getStringCellValue();
-            case NUMERIC:
-                double d = cell.getNumericCellValue();
-                return d == (long) d ? String.valueOf((long) d) : String.valueOf(d);
-            case BLANK:
-                return "";
-            default:
-                return cell.toString();
-        }
-    }
-
     private List<Award> parseAwards(String json) {
         List<Award> list = new ArrayList<>();
         if (json == null || json.isEmpty()) return list;
@@ -124,7 +193,7 @@ public class StartupService {
                 for (JsonNode node : arr) {
                     String name = node.has("奖项") ? node.get("奖项").asText() : "";
                     String img = node.has("证书图片") ? node.get("证书图片").asText() : "";
-                    list.add(new Award(name, img));
+                    list.add(new Award(dict.intern(name), dict.intern(img)));
                 }
             }
         } catch (Exception e) {
@@ -0,0 +1,55 @@
+package org.example.build;
+
+import org.example.model.Student;
+
+import java.util.List;
+
+/**
+ * 一次汇总构建的结果：整体重建，或增量构建时受影响学生的最新聚合（启动时据此只修补这些学生的记录，不再重新同步全部学生）。
+ */
+public final class BuildDelta {
+    private final boolean incremental;
+    private final List<Student> changed;
+    private final List<Long> removed;
+    private final DedupReport dedup;
+
+    private BuildDelta(boolean incremental, List<Student> changed, List<Long> removed, DedupReport dedup) {
+        this.incremental = incremental;
+        this.changed = changed;
+        this.removed = removed;
+        this.dedup = dedup;
+    }
+
+    static BuildDelta full(DedupReport dedup) {
+        return new BuildDelta(false, List.of(), List.of(), dedup);
+    }
+
+    static BuildDelta incremental(List<Student> changed, List<Long> removed, DedupReport dedup) {
+        return new BuildDelta(true, changed, removed, dedup);
+    }
+
+    public boolean isIncremental() {
+        return incremental;
+    }
+
+    /**
+     * 新增或源数据有变化的学生（增量构建时），奖项为源中的完整列表。
+     */
+    public List<Student> getChanged() {
+        return changed;
+    }
+
+    /**
+     * 源中已没有任何行的学生学号（已从汇总中去掉）。
+     */
+    public List<Long> getRemoved() {
+        return removed;
+    }
+
+    /**
+     * 本次聚合中被合并掉的重复奖项。
+     */
+    public DedupReport getDedupReport() {
+        return dedup;
+    }
+}
@@ -4,94 +4,341 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import org.apache.poi.ss.usermodel.*;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.example.config.Config;
+import org.example.model.Award;
+import org.example.model.Student;
+import org.example.processing.XlsxStreamReader;
+import org.example.util.LongObjectMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.text.Normalizer;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 /**
- * 汇总构建 (逻辑未改)
+ * 汇总构建：把问卷导出的源文件（单个文件、目录或通配符，每个文件的全部工作表）按学号聚合为 Awards_Summary.xlsx。
+ * <p>
+ * 源文件用 SAX 流式读取，多个文件时在 ForkJoinPool 上并行解析；聚合经 {@link SpillingAggregator}，超出
+ * {@link Config#BUILD_AGGREGATE_MEMORY_BUDGET} 时按学号排序溢写为临时段，输出时 k 路归并，汇总表经 SXSSF 流式写出。
+ * 开启 {@link Config#BUILD_DEDUP_AWARDS} 时，同一学生规范化后奖项名与证书图片相同的奖项只保留第一次，其余记入 {@link DedupReport}。
+ * 构建清单记录各源文件的指纹与逐行哈希：清单与现有汇总匹配时只重新聚合变化行涉及的学生并修补汇总，否则整体重建，
+ * 两种方式都返回 {@link BuildDelta} 供启动流程增量更新数据库。
  */
 public class BuildList {
     private static final Logger LOGGER = LoggerFactory.getLogger(BuildList.class);
     private final ObjectMapper mapper = new ObjectMapper();
 
-    public void build(String sourcePath) {
-        File src = new File(sourcePath);
-        if (!src.exists()) {
-            LOGGER.error("源文件不存在: " + sourcePath);
-            return;
+    /**
+     * 构建汇总。有与现有汇总匹配的构建清单时增量构建：指纹未变的源文件不再解析，
+     * 只重新聚合新增/修改/删除的行涉及的学生，并在汇总中替换这些学生的行；否则整体重建。两种方式都会更新清单。
+     * @param sourcePath 单个源文件、目录或通配符（见 {@link RawSources}）；每个文件的全部工作表都参与汇总
+     * @return 构建结果；失败时返回 null
+     */
+    public BuildDelta build(String sourcePath) {
+        try {
+            List<File> sources = RawSources.resolve(sourcePath);
+            if (sources.isEmpty()) {
+                LOGGER.error("源文件不存在: " + sourcePath);
+                return null;
+            }
+            File manifestFile = new File(Config.BUILD_MANIFEST_PATH);
+            BuildManifest previous = BuildManifest.readIfCurrent(manifestFile, new File(Config.AWARDS_SUMMARY_PATH));
+            BuildDelta delta = previous == null ? buildFull(sources, manifestFile) : buildIncremental(sources, previous, manifestFile);
+            if (delta != null) LOGGER.info("BuildList: 汇总完成 -> " + Config.NULL_TEMPLATE_FILE);
+            return delta;
+        } catch (Exception e) {
+            LOGGER.error("生成过程中出错", e);
+            return null;
+        }
+    }
+
+    private BuildDelta buildFull(List<File> sources, File manifestFile) throws Exception {
+        long start = System.nanoTime();
+        List<SourceJob> jobs = new ArrayList<>();
+        for (File f : sources) jobs.add(new SourceJob(f, BuildManifest.Source.of(f), null));
+        DedupReport dedup = new DedupReport();
+        try (SpillingAggregator aggregator = new SpillingAggregator(Config.BUILD_AGGREGATE_MEMORY_BUDGET, Config.BUILD_SPILL_MERGE_FAN_IN)) {
+            List<SourceStats> stats = runJobs(jobs);
+            if (!logStats(sources.size(), stats, System.nanoTime() - start)) return null;
+            SpillingAggregator merged = merge(jobs, aggregator);
+            if (merged.spilledRuns() > 0) LOGGER.info("聚合数据超出内存预算或来自多个文件, 已溢写 " + merged.spilledRuns() + " 段, 汇总按学号顺序输出");
+            writeSummary(merged, dedup);
+        } finally {
+            for (SourceJob job : jobs) job.close();
         }
-        try (FileInputStream fis = new FileInputStream(src); Workbook wb = new XSSFWorkbook(fis)) {
-            Sheet sheet = wb.getSheet(Config.SHEET_MAIN);
-            if (sheet == null) {
-                LOGGER.error("未找到 " + Config.SHEET_MAIN + " 工作表");
-                return;
+        writeManifest(manifestFile, jobs.stream().map(j -> j.rows).toList());
+        logDedup(dedup);
+        return BuildDelta.full(dedup);
+    }
+
+    /**
+     * 增量构建：
+     * 1. 指纹变化（或新增）的源文件整体解析，记录逐行哈希并与清单逐行比较，得到受影响学生的学号哈希集合；已移除的源文件中的学生同样受影响；
+     * 2. 指纹未变、但含受影响学生的源文件再解析一遍，只聚合这些学生的行（学生跨文件时才会发生）；
+     * 3. 按源文件顺序归并，取出受影响学生的完整聚合，流式复制旧汇总并替换/删除这些学生的行，新学生追加在末尾。
+     * 变化的行超过一半时增量没有意义，改为整体重建。
+     */
+    private BuildDelta buildIncremental(List<File> sources, BuildManifest previous, File manifestFile) throws Exception {
+        long start = System.nanoTime();
+        List<BuildManifest.Source> current = new ArrayList<>();
+        List<SourceJob> changedJobs = new ArrayList<>();
+        for (File f : sources) {
+            BuildManifest.Source old = previous.get(f);
+            if (old != null && old.sameFingerprint(f)) {
+                current.add(old);
+            } else {
+                SourceJob job = new SourceJob(f, BuildManifest.Source.of(f), null);
+                changedJobs.add(job);
+                current.add(job.rows);
+            }
+        }
+        List<SourceJob> jobs = new ArrayList<>(changedJobs);
+        try {
+            List<SourceStats> stats = runJobs(changedJobs);
+            LongObjectMap<Boolean> affected = new LongObjectMap<>();
+            int changedRows = 0;
+            long totalRows = 0;
+            for (BuildManifest.Source src : current) totalRows += src.rows();
+            Set<String> currentPaths = new HashSet<>();
+            for (BuildManifest.Source src : current) currentPaths.add(src.path);
+            for (SourceJob job : changedJobs) {
+                BuildManifest.Source old = previous.get(job.file);
+                changedRows += job.rows.diff(old == null ? BuildManifest.Source.of(job.file).emptyCopy() : old, affected);
             }
-            Row headerRow = sheet.getRow(0);
-            if (headerRow == null) {
-                LOGGER.error("缺少表头行");
-                return;
+            for (BuildManifest.Source old : previous.sources()) {
+                if (!currentPaths.contains(old.path)) changedRows += old.emptyCopy().diff(old, affected);
             }
-            Map<String, Integer> headerIndex = new HashMap<>();
-            for (int i = 0; i < headerRow.getLastCellNum(); i++) {
-                Cell cell = headerRow.getCell(i);
-                if (cell != null) {
-                    String val = cell.getStringCellValue();
-                    headerIndex.put(val, i);
+            if (affected.isEmpty()) {
+                LOGGER.info("源数据与上次构建相同 (" + sources.size() + " 个文件), 汇总无需更新");
+                writeManifest(manifestFile, current);
+                return BuildDelta.incremental(List.of(), List.of(), new DedupReport());
+            }
+            if ((long) changedRows * 2 > totalRows) {
+                LOGGER.info("变化的行 " + changedRows + " / " + totalRows + " 超过一半, 整体重建");
+                for (SourceJob job : jobs) job.close();
+                jobs.clear();
+                return buildFull(sources, manifestFile);
+            }
+
+            List<SourceJob> extraJobs = new ArrayList<>();
+            for (int i = 0; i < sources.size(); i++) {
+                BuildManifest.Source src = current.get(i);
+                if (src == previous.get(sources.get(i)) && src.touches(affected)) extraJobs.add(new SourceJob(sources.get(i), null, affected));
+            }
+            jobs.addAll(extraJobs);
+            stats = new ArrayList<>(stats);
+            stats.addAll(runJobs(extraJobs));
+            logStats(sources.size(), stats, System.nanoTime() - start);
+            // 按源文件顺序归并，保证奖项拼接顺序与整体重建一致
+            jobs.sort(Comparator.comparingInt(j -> sources.indexOf(j.file)));
+
+            Map<String, AggregatedStudent> patch = new LinkedHashMap<>();
+            try (SpillingAggregator aggregator = new SpillingAggregator(Config.BUILD_AGGREGATE_MEMORY_BUDGET, Config.BUILD_SPILL_MERGE_FAN_IN)) {
+                merge(jobs, aggregator).forEach(st -> {
+                    if (affected.containsKey(BuildManifest.studentHash(st.studentId))) patch.put(st.studentId, st);
+                });
+            }
+            List<Student> changed = new ArrayList<>(patch.size());
+            DedupReport dedup = new DedupReport();
+            for (AggregatedStudent st : patch.values()) {
+                dedup.add(st);
+                Student model = toStudent(st);
+                if (model != null) changed.add(model);
+            }
+            List<Long> removed = patchSummary(patch, affected);
+            writeManifest(manifestFile, current);
+            LOGGER.info("增量构建: 变化的行 " + changedRows + ", 受影响学生 " + (changed.size() + removed.size()) + " (其中移除 " + removed.size()
+                    + "), 重新解析 " + jobs.size() + " / " + sources.size() + " 个文件, 耗时 " + (System.nanoTime() - start) / 1_000_000 + " ms");
+            logDedup(dedup);
+            return BuildDelta.incremental(changed, removed, dedup);
+        } finally {
+            for (SourceJob job : jobs) job.close();
+        }
+    }
+
+    /**
+     * 读取一个源文件的全部工作表并聚合：每个工作表有自己的表头；
+     * 找不到学号列的工作表跳过（Config.SHEET_MAIN 仍按旧规则退回固定列位置）。
+     * job.rows 非空时记录每个数据行的哈希；job.only 非空时只聚合学号哈希在其中的行。
+     */
+    private SourceStats ingest(SourceJob job) throws Exception {
+        long start = System.nanoTime();
+        File file = job.file;
+        long[] rows = {0};
+        int[] sheets = {0};
+        int[] sheetNo = {-1};
+        XlsxStreamReader.readSheets(file, sheetName -> {
+            int sheet = ++sheetNo[0];
+            SourceLayout[] layout = new SourceLayout[1];
+            return (r, cells) -> {
+                if (layout[0] == null) {
+                    if (r != 0) throw new IllegalStateException(file.getName() + " / " + sheetName + ": 缺少表头行");
+                    SourceLayout l = new SourceLayout(cells, sheetName);
+                    // 非主表且表头里没有学号列：说明、统计之类的工作表，整表跳过
+                    layout[0] = l.hasIdColumn || Config.SHEET_MAIN.equals(sheetName) ? l : SourceLayout.SKIP;
+                    if (layout[0] != SourceLayout.SKIP) sheets[0]++;
+                    return;
                 }
+                if (layout[0] == SourceLayout.SKIP) return;
+                rows[0]++;
+                long studentHash = BuildManifest.studentHash(getCellString(cells, layout[0].idxStudentId));
+                if (job.rows != null) job.rows.add(sheet, r, BuildManifest.rowHash(cells), studentHash);
+                if (job.only == null || job.only.containsKey(studentHash)) aggregateRow(layout[0], cells, job.part);
+            };
+        });
+        return new SourceStats(file, sheets[0], rows[0], System.nanoTime() - start);
+    }
+
+    /**
+     * 执行一组解析任务。只有一个时直接在当前线程聚合（内存预算不均分、不强制溢写）；
+     * 多个时在 ForkJoinPool 上并行，每个文件聚合到自己的 SpillingAggregator（内存预算均分），结束时整体溢写成有序段，
+     * 之后由 {@link #merge} 按文件顺序归并，因此同一学生的奖项按 文件顺序 → 工作表顺序 → 行顺序 拼接，与并行调度无关。
+     */
+    private List<SourceStats> runJobs(List<SourceJob> jobs) throws Exception {
+        if (jobs.isEmpty()) return List.of();
+        if (jobs.size() == 1) {
+            SourceJob job = jobs.get(0);
+            job.part = new SpillingAggregator(Config.BUILD_AGGREGATE_MEMORY_BUDGET, Config.BUILD_SPILL_MERGE_FAN_IN);
+            return List.of(ingest(job));
+        }
+        int parallelism = Math.max(1, Math.min(Config.BUILD_PARSE_PARALLELISM, jobs.size()));
+        long budget = Config.BUILD_AGGREGATE_MEMORY_BUDGET / parallelism;
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            List<ForkJoinTask<SourceStats>> tasks = new ArrayList<>();
+            for (SourceJob job : jobs) {
+                job.part = new SpillingAggregator(budget, Config.BUILD_SPILL_MERGE_FAN_IN);
+                tasks.add(pool.submit(() -> {
+                    SourceStats st = ingest(job);
+                    job.part.spillAll();
+                    return st;
+                }));
             }
-            Integer idxStudentId = findColumn(headerIndex, Arrays.asList("3、学号", "学号"));
-            Integer idxName = findColumn(headerIndex, Arrays.asList("1、姓名", "姓名"));
-            Integer idxClass = findColumn(headerIndex, Arrays.asList("2、班级", "班级"));
-            if (idxStudentId == null || idxName == null || idxClass == null) {
+            List<SourceStats> stats = new ArrayList<>();
+            for (ForkJoinTask<SourceStats> t : tasks) {
+                try {
+                    stats.add(t.get());
+                } catch (ExecutionException e) {
+                    throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                }
+            }
+            return stats;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * 按 jobs 的顺序合并各自的聚合结果：只有一个时直接用它（保持首次出现顺序），否则由 total 接管全部溢写段归并。
+     */
+    private static SpillingAggregator merge(List<SourceJob> jobs, SpillingAggregator total) throws IOException {
+        if (jobs.size() == 1) return jobs.get(0).part;
+        for (SourceJob job : jobs) total.adoptRuns(job.part);
+        return total;
+    }
+
+    /**
+     * 记录各文件的读取统计。
+     * @return 是否找到了可用的工作表
+     */
+    private static boolean logStats(int fileCount, List<SourceStats> stats, long nanos) {
+        long rows = 0;
+        int sheets = 0;
+        for (SourceStats st : stats) {
+            rows += st.rows;
+            sheets += st.sheets;
+            if (fileCount > 1 || st.sheets > 1) LOGGER.info(st.toString());
+        }
+        if (sheets == 0 && !stats.isEmpty()) {
+            LOGGER.error("未找到包含学号列的工作表 (" + Config.SHEET_MAIN + " 或表头含\"学号\"的工作表)");
+            return false;
+        }
+        if (stats.size() > 1) {
+            LOGGER.info(String.format("读取 %d 个文件 / %d 个工作表, 共 %d 行, 耗时 %d ms, %.0f 行/秒",
+                    stats.size(), sheets, rows, nanos / 1_000_000, rows * 1e9 / Math.max(1, nanos)));
+        }
+        return true;
+    }
+
+    private static void writeManifest(File manifestFile, List<BuildManifest.Source> sources) {
+        File summary = new File(Config.AWARDS_SUMMARY_PATH);
+        BuildManifest manifest = new BuildManifest(summary.length(), summary.lastModified());
+        for (BuildManifest.Source src : sources) manifest.put(src);
+        try {
+            manifest.write(manifestFile);
+        } catch (IOException e) {
+            // 清单只影响下次能否增量构建
+            LOGGER.warn("写入构建清单失败, 下次将整体重建: " + e.getMessage());
+        }
+    }
+
+    private void aggregateRow(SourceLayout layout, String[] cells, SpillingAggregator aggregator) throws IOException {
+        String studentId = getCellString(cells, layout.idxStudentId);
+        String name = getCellString(cells, layout.idxName);
+        String clazz = getCellString(cells, layout.idxClass);
+        if (studentId == null || studentId.isEmpty()) return;
+        AggregatedStudent agg = aggregator.student(studentId, name, clazz);
+        for (int i = 0; i < layout.awardNameCols.size(); i++) {
+            int colAward = layout.awardNameCols.get(i);
+            int colImg = i < layout.awardImageCols.size() ? layout.awardImageCols.get(i) : -1;
+            String awardName = getCellString(cells, colAward);
+            String imgUrl = colImg >= 0 ? getCellString(cells, colImg) : null;
+            if ((awardName == null || awardName.isEmpty()) && (imgUrl == null || imgUrl.isEmpty())) continue;
+            if (awardName == null || awardName.isEmpty()) awardName = "无名字";
+            if (imgUrl == null || imgUrl.isEmpty()) imgUrl = "无图片";
+            aggregator.addAward(agg, awardName, imgUrl);
+        }
+        aggregator.endRow();
+    }
+
+    /**
+     * 由表头行推导出的列布局：基础列位置 + 奖项/证书图片列对。
+     */
+    private static final class SourceLayout {
+        // 跳过整张工作表的占位布局
+        static final SourceLayout SKIP = new SourceLayout(new String[0], "");
+
+        final boolean hasIdColumn;
+        final int idxStudentId;
+        final int idxName;
+        final int idxClass;
+        final List<Integer> awardNameCols = new ArrayList<>();
+        final List<Integer> awardImageCols = new ArrayList<>();
+
+        SourceLayout(String[] header, String sheetName) {
+            Map<String, Integer> headerIndex = new HashMap<>();
+            for (int i = 0; i < header.length; i++) {
+                if (header[i] != null) headerIndex.put(header[i], i);
+            }
+            Integer sid = findColumn(headerIndex, Arrays.asList("3、学号", "学号"));
+            Integer name = findColumn(headerIndex, Arrays.asList("1、姓名", "姓名"));
+            Integer clazz = findColumn(headerIndex, Arrays.asList("2、班级", "班级"));
+            hasIdColumn = sid != null;
+            if ((sid == null || name == null || clazz == null) && Config.SHEET_MAIN.equals(sheetName)) {
                 LOGGER.warn("基础列缺失, 退回位置 (7=姓名,8=班级,9=学号)");
-                idxName = idxName == null ? 6 : idxName;
-                idxClass = idxClass == null ? 7 : idxClass;
-                idxStudentId = idxStudentId == null ? 8 : idxStudentId;
             }
+            idxName = name == null ? 6 : name;
+            idxClass = clazz == null ? 7 : clazz;
+            idxStudentId = sid == null ? 8 : sid;
             int startAwardIndex = 9;
-            int maxColumns = headerRow.getLastCellNum();
-            List<Integer> awardNameCols = new ArrayList<>();
-            List<Integer> awardImageCols = new ArrayList<>();
+            int maxColumns = header.length;
             for (int i = startAwardIndex; i < maxColumns; i += 2) {
                 awardNameCols.add(i);
                 if (i + 1 < maxColumns) awardImageCols.add(i + 1);
             }
-            Map<String, AggregatedStudent> aggregateMap = new LinkedHashMap<>();
-            for (int r = 1; r <= sheet.getLastRowNum(); r++) {
-                Row row = sheet.getRow(r);
-                if (row == null) continue;
-                String studentId = getCellString(row.getCell(idxStudentId));
-                String name = getCellString(row.getCell(idxName));
-                String clazz = getCellString(row.getCell(idxClass));
-                if (studentId == null || studentId.isEmpty()) continue;
-                AggregatedStudent agg = aggregateMap.computeIfAbsent(studentId, sid -> new AggregatedStudent(sid, name, clazz));
-                for (int i = 0; i < awardNameCols.size(); i++) {
-                    int colAward = awardNameCols.get(i);
-                    int colImg = i < awardImageCols.size() ? awardImageCols.get(i) : -1;
-                    String awardName = getCellString(row.getCell(colAward));
-                    String imgUrl = colImg >= 0 ? getCellString(row.getCell(colImg)) : null;
-                    if ((awardName == null || awardName.isEmpty()) && (imgUrl == null || imgUrl.isEmpty())) continue;
-                    if (awardName == null || awardName.isEmpty()) awardName = "无名字";
-                    if (imgUrl == null || imgUrl.isEmpty()) imgUrl = "无图片";
-                    agg.addAward(awardName, imgUrl);
-                }
-            }
-            writeSummary(new ArrayList<>(aggregateMap.values()));
-            LOGGER.info("BuildList: 汇总完成 -> " + Config.NULL_TEMPLATE_FILE);
-        } catch (Exception e) {
-            LOGGER.error("生成过程中出错", e);
         }
     }
 
-    private Integer findColumn(Map<String, Integer> headerIndex, List<String> candidates) {
+    private static Integer findColumn(Map<String, Integer> headerIndex, List<String> candidates) {
         for (String c : candidates) {
             if (headerIndex.containsKey(c)) return headerIndex.get(c);
         }
@@ -103,45 +350,196 @@ public class BuildList {
         return null;
     }
 
-    private String getCellString(Cell cell) {
-        if (cell == null) return null;
-        if (cell.getCellType() == CellType.NUMERIC) {
-            double d = cell.getNumericCellValue();
-            return d == (long) d ? String.valueOf((long) d) : String.valueOf(d);
-        }
-        if (cell.getCellType() == CellType.STRING) return cell.getStringCellValue().trim();
-        if (cell.getCellType() == CellType.BLANK) return "";
-        return cell.toString().trim();
-    }
-
-    private void writeSummary(List<AggregatedStudent> students) throws IOException {
-        try (Workbook wb = new XSSFWorkbook()) {
-            Sheet sheet = wb.createSheet(Config.SHEET_MAIN);
-            Row header = sheet.createRow(0);
-            header.createCell(0).setCellValue(Config.COL_STUDENT_ID);
-            header.createCell(1).setCellValue(Config.COL_NAME);
-            header.createCell(2).setCellValue(Config.COL_CLASS);
-            header.createCell(3).setCellValue("奖项");
-            header.createCell(4).setCellValue("总奖项数");
-            int r = 1;
-            for (AggregatedStudent s : students) {
-                Row row = sheet.createRow(r++);
-                row.createCell(0).setCellValue(s.studentId);
-                row.createCell(1).setCellValue(s.name);
-                row.createCell(2).setCellValue(s.clazz);
-                ArrayNode arr = mapper.createArrayNode();
-                for (AwardPair ap : s.awards) {
-                    ObjectNode node = mapper.createObjectNode();
-                    node.put("奖项", ap.award);
-                    node.put("证书图片", ap.image);
-                    arr.add(node);
+    private String getCellString(String[] cells, int index) {
+        String v = XlsxStreamReader.cell(cells, index);
+        return v == null ? null : v.trim();
+    }
+
+    private static void logDedup(DedupReport dedup) {
+        if (dedup.getDuplicateCount() > 0) LOGGER.info(dedup.summary());
+    }
+
+    private void writeSummary(SpillingAggregator students, DedupReport dedup) throws IOException {
+        long start = System.nanoTime();
+        // 流式写出：行窗口之外的行压缩落到临时文件，堆占用与学生数无关
+        SXSSFWorkbook wb = new SXSSFWorkbook(Config.EXCEL_STREAM_ROW_WINDOW);
+        wb.setCompressTempFiles(true);
+        try {
+            Sheet sheet = createSummarySheet(wb);
+            int[] r = {1};
+            int count = students.forEach(s -> {
+                dedup.add(s);
+                writeStudentRow(sheet.createRow(r[0]++), s);
+            });
+            // 先写临时文件再替换，写出失败时原汇总保持完整
+            File summary = new File(Config.AWARDS_SUMMARY_PATH);
+            File tmp = new File(Config.AWARDS_SUMMARY_PATH + ".tmp");
+            try {
+                try (FileOutputStream fos = new FileOutputStream(tmp)) {
+                    wb.write(fos);
                 }
-                row.createCell(3).setCellValue(arr.toString());
-                row.createCell(4).setCellValue(s.awards.size());
+                Files.move(tmp.toPath(), summary.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(tmp.toPath());
             }
-            try (FileOutputStream fos = new FileOutputStream(Config.AWARDS_SUMMARY_PATH)) {
+            LOGGER.debug("汇总写出 " + count + " 行, 耗时 " + (System.nanoTime() - start) / 1_000_000 + " ms");
+        } finally {
+            wb.dispose();
+            wb.close();
+        }
+    }
+
+    /**
+     * 增量修补汇总：受影响学生的行换成 patch 中的新聚合（patch 中没有的即已移除），其余行原样保留，新学生追加在末尾。
+     * 先在 xlsx 包内按字节修补（见 {@link SummaryPatcher}），汇总格式不符时退回逐行读出再流式写出。先写临时文件再替换。
+     * @return 被移除的学生学号
+     */
+    private List<Long> patchSummary(Map<String, AggregatedStudent> patch, LongObjectMap<Boolean> affected) throws Exception {
+        long start = System.nanoTime();
+        File summary = new File(Config.AWARDS_SUMMARY_PATH);
+        File tmp = new File(Config.AWARDS_SUMMARY_PATH + ".tmp");
+        List<Long> removed;
+        try {
+            removed = SummaryPatcher.patch(summary, tmp, patch, affected, this::awardsJson);
+        } catch (IOException e) {
+            LOGGER.warn("汇总无法按字节修补 (" + e.getMessage() + "), 改为逐行复制");
+            removed = copySummary(summary, tmp, patch, affected);
+        }
+        Files.move(tmp.toPath(), summary.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        LOGGER.debug("汇总修补: 更新/新增 " + patch.size() + " 名, 移除 " + removed.size() + " 名, 耗时 " + (System.nanoTime() - start) / 1_000_000 + " ms");
+        return removed;
+    }
+
+    private List<Long> copySummary(File summary, File target, Map<String, AggregatedStudent> patch, LongObjectMap<Boolean> affected) throws Exception {
+        List<Long> removed = new ArrayList<>();
+        Set<String> written = new HashSet<>();
+        SXSSFWorkbook wb = new SXSSFWorkbook(Config.EXCEL_STREAM_ROW_WINDOW);
+        wb.setCompressTempFiles(true);
+        try {
+            Sheet sheet = createSummarySheet(wb);
+            int[] r = {1};
+            XlsxStreamReader.readSheet(summary, Config.SHEET_MAIN, (i, cells) -> {
+                if (i == 0) return;
+                String sid = XlsxStreamReader.cell(cells, 0);
+                if (sid == null || sid.isEmpty()) return;
+                if (affected.containsKey(BuildManifest.studentHash(sid))) {
+                    AggregatedStudent s = patch.get(sid);
+                    if (s != null) {
+                        writeStudentRow(sheet.createRow(r[0]++), s);
+                        written.add(sid);
+                        return;
+                    }
+                    // 受影响但源中已无任何行：学生被移除（学号哈希碰撞的无关学生也在 patch 中，不会走到这里）
+                    try {
+                        removed.add(Long.parseLong(sid));
+                    } catch (NumberFormatException ignored) {
+                        // 非数字学号不进入数据库
+                    }
+                    return;
+                }
+                Row row = sheet.createRow(r[0]++);
+                for (int c = 0; c < 4; c++) row.createCell(c).setCellValue(XlsxStreamReader.cell(cells, c));
+                String total = XlsxStreamReader.cell(cells, 4);
+                row.createCell(4).setCellValue(total == null || total.isEmpty() ? 0 : Double.parseDouble(total));
+            });
+            for (AggregatedStudent s : patch.values()) {
+                if (!written.contains(s.studentId)) writeStudentRow(sheet.createRow(r[0]++), s);
+            }
+            try (FileOutputStream fos = new FileOutputStream(target)) {
                 wb.write(fos);
             }
+            return removed;
+        } finally {
+            wb.dispose();
+            wb.close();
+        }
+    }
+
+    private static Sheet createSummarySheet(SXSSFWorkbook wb) {
+        Sheet sheet = wb.createSheet(Config.SHEET_MAIN);
+        Row header = sheet.createRow(0);
+        header.createCell(0).setCellValue(Config.COL_STUDENT_ID);
+        header.createCell(1).setCellValue(Config.COL_NAME);
+        header.createCell(2).setCellValue(Config.COL_CLASS);
+        header.createCell(3).setCellValue("奖项");
+        header.createCell(4).setCellValue("总奖项数");
+        return sheet;
+    }
+
+    private void writeStudentRow(Row row, AggregatedStudent s) {
+        row.createCell(0).setCellValue(s.studentId);
+        row.createCell(1).setCellValue(s.name);
+        row.createCell(2).setCellValue(s.clazz);
+        row.createCell(3).setCellValue(awardsJson(s));
+        row.createCell(4).setCellValue(s.awards.size());
+    }
+
+    private String awardsJson(AggregatedStudent s) {
+        ArrayNode arr = mapper.createArrayNode();
+        for (AwardPair ap : s.awards) {
+            ObjectNode node = mapper.createObjectNode();
+            node.put("奖项", ap.award);
+            node.put("证书图片", ap.image);
+            arr.add(node);
+        }
+        return arr.toString();
+    }
+
+    /**
+     * 转为启动同步用的学生模型；非数字学号（不会进入数据库）返回 null。
+     */
+    private static Student toStudent(AggregatedStudent s) {
+        long sid;
+        try {
+            sid = Long.parseLong(s.studentId);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        List<Award> awards = new ArrayList<>(s.awards.size());
+        for (AwardPair p : s.awards) awards.add(new Award(p.award, p.image));
+        return new Student(sid, s.name == null ? "" : s.name, s.clazz == null ? "" : s.clazz, awards);
+    }
+
+    /**
+     * 一个源文件的解析任务：rows 非空时记录逐行哈希，only 非空时只聚合其中的学生；聚合结果在 part 中。
+     */
+    private static final class SourceJob {
+        final File file;
+        final BuildManifest.Source rows;
+        final LongObjectMap<Boolean> only;
+        SpillingAggregator part;
+
+        SourceJob(File file, BuildManifest.Source rows, LongObjectMap<Boolean> only) {
+            this.file = file;
+            this.rows = rows;
+            this.only = only;
+        }
+
+        void close() {
+            if (part != null) part.close();
+        }
+    }
+
+    /**
+     * 单个源文件的读取统计。
+     */
+    private static final class SourceStats {
+        final File file;
+        final int sheets;
+        final long rows;
+        final long nanos;
+
+        SourceStats(File file, int sheets, long rows, long nanos) {
+            this.file = file;
+            this.sheets = sheets;
+            this.rows = rows;
+            this.nanos = nanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: %d 个工作表, %d 行, 耗时 %d ms, %.0f 行/秒",
+                    file.getName(), sheets, rows, nanos / 1_000_000, rows * 1e9 / Math.max(1, nanos));
         }
     }
 
@@ -160,6 +558,10 @@ public class BuildList {
         final String name;
         final String clazz;
         final List<AwardPair> awards = new ArrayList<>();
+        // 与已有奖项重复而未加入 awards 的奖项（按出现顺序，供去重报告）
+        final List<AwardPair> duplicates = new ArrayList<>(0);
+        // 已有奖项的规范化键：奖项名 + '\u0000' + 图片（两者都不含 \u0000，键互不混淆）
+        private Set<String> keys;
 
         AggregatedStudent(String sid, String name, String clazz) {
             this.studentId = sid;
@@ -167,8 +569,45 @@ public class BuildList {
             this.clazz = clazz;
         }
 
-        void addAward(String a, String i) {
-            awards.add(new AwardPair(a, i));
+        /**
+         * 追加奖项；Config.BUILD_DEDUP_AWARDS 开启时，与已有奖项规范化后相同的记入 duplicates 而不加入。
+         * @return 是否加入
+         */
+        boolean addAward(String a, String i) {
+            AwardPair pair = new AwardPair(a, i);
+            if (Config.BUILD_DEDUP_AWARDS) {
+                if (keys == null) keys = new HashSet<>();
+                if (!keys.add(normalizeAward(a) + '\u0000' + normalizeImage(i))) {
+                    duplicates.add(pair);
+                    return false;
+                }
+            }
+            awards.add(pair);
+            return true;
+        }
+
+        /**
+         * 恢复已判定过的重复奖项（从溢写段读回时）。
+         */
+        void addDuplicate(String a, String i) {
+            duplicates.add(new AwardPair(a, i));
+        }
+
+        // 奖项名：全角/半角统一（NFKC）、去掉全部空白、英文不分大小写
+        static String normalizeAward(String s) {
+            if (s == null) return "";
+            String n = Normalizer.normalize(s, Normalizer.Form.NFKC);
+            StringBuilder b = new StringBuilder(n.length());
+            for (int k = 0; k < n.length(); k++) {
+                char c = n.charAt(k);
+                if (!Character.isWhitespace(c)) b.append(Character.toLowerCase(c));
+            }
+            return b.toString();
+        }
+
+        // 图片地址只去掉首尾空白（路径区分大小写）
+        static String normalizeImage(String s) {
+            return s == null ? "" : s.trim();
         }
     }
 }
@@ -0,0 +1,257 @@
+package org.example.build;
+
+import org.example.util.LongObjectMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 汇总构建清单：记录上次构建时每个源文件的指纹（长度 + 修改时间）与每一行的内容哈希，
+ * 以及据此生成的汇总文件的指纹。下次构建时据此找出新增/修改/删除的行，只重新聚合受影响的学生。
+ * <p>
+ * 行以 (工作表序号, 行号) 定位；学号只存 64 位哈希（碰撞只会让无关学生被多聚合一次，结果不变）。
+ * <pre>
+ * 文件 := "BLMF" 版本(int) 汇总长度(long) 汇总修改时间(long) 源文件数(int) 源文件*
+ * 源文件 := 路径(UTF) 长度(long) 修改时间(long) 行数(int) { 行键(long) 行哈希(long) 学号哈希(long) }*
+ * </pre>
+ */
+final class BuildManifest {
+    private static final Logger LOGGER = LoggerFactory.getLogger(BuildManifest.class);
+    private static final int MAGIC = 0x424C4D46; // "BLMF"
+    private static final int VERSION = 1;
+
+    /**
+     * 一个源文件的指纹与逐行哈希（按行键升序，即读取顺序）。
+     */
+    static final class Source {
+        final String path;
+        final long length;
+        final long modified;
+        private long[] rowKeys = new long[16];
+        private long[] rowHashes = new long[16];
+        private long[] studentHashes = new long[16];
+        private int rows;
+
+        Source(String path, long length, long modified) {
+            this.path = path;
+            this.length = length;
+            this.modified = modified;
+        }
+
+        static Source of(File file) {
+            return new Source(pathOf(file), file.length(), file.lastModified());
+        }
+
+        /**
+         * 源文件自上次构建以来未变（长度与修改时间都相同）。
+         */
+        boolean sameFingerprint(File file) {
+            return length == file.length() && modified == file.lastModified();
+        }
+
+        void add(int sheet, int row, long rowHash, long studentHash) {
+            if (rows == rowKeys.length) {
+                int capacity = rows * 2;
+                rowKeys = Arrays.copyOf(rowKeys, capacity);
+                rowHashes = Arrays.copyOf(rowHashes, capacity);
+                studentHashes = Arrays.copyOf(studentHashes, capacity);
+            }
+            rowKeys[rows] = rowKey(sheet, row);
+            rowHashes[rows] = rowHash;
+            studentHashes[rows] = studentHash;
+            rows++;
+        }
+
+        int rows() {
+            return rows;
+        }
+
+        /**
+         * 同一文件指纹、没有任何行的副本（用于和新增/移除的源文件比较）。
+         */
+        Source emptyCopy() {
+            return new Source(path, length, modified);
+        }
+
+        /**
+         * 与上次构建的同一文件逐行比较，把新增、内容变化、被删除的行涉及的学号哈希（变化行的新旧学号都算）加入 affected。
+         * 两边都按行键升序，一次归并扫描。
+         * @return 变化的行数
+         */
+        int diff(Source previous, LongObjectMap<Boolean> affected) {
+            int changed = 0;
+            int i = 0;
+            int j = 0;
+            while (i < rows || j < previous.rows) {
+                int c = i == rows ? 1 : j == previous.rows ? -1 : Long.compare(rowKeys[i], previous.rowKeys[j]);
+                if (c < 0) {
+                    affected.put(studentHashes[i++], Boolean.TRUE);
+                    changed++;
+                } else if (c > 0) {
+                    affected.put(previous.studentHashes[j++], Boolean.TRUE);
+                    changed++;
+                } else {
+                    if (rowHashes[i] != previous.rowHashes[j]) {
+                        affected.put(studentHashes[i], Boolean.TRUE);
+                        affected.put(previous.studentHashes[j], Boolean.TRUE);
+                        changed++;
+                    }
+                    i++;
+                    j++;
+                }
+            }
+            return changed;
+        }
+
+        /**
+         * 文件中是否有学号哈希在 set 中的行。
+         */
+        boolean touches(LongObjectMap<Boolean> set) {
+            for (int i = 0; i < rows; i++) {
+                if (set.containsKey(studentHashes[i])) return true;
+            }
+            return false;
+        }
+    }
+
+    final long summaryLength;
+    final long summaryModified;
+    private final Map<String, Source> sources = new LinkedHashMap<>();
+
+    BuildManifest(long summaryLength, long summaryModified) {
+        this.summaryLength = summaryLength;
+        this.summaryModified = summaryModified;
+    }
+
+    void put(Source s) {
+        sources.put(s.path, s);
+    }
+
+    Source get(File file) {
+        return sources.get(pathOf(file));
+    }
+
+    List<Source> sources() {
+        return new ArrayList<>(sources.values());
+    }
+
+    /**
+     * 读取清单；文件不存在、格式不符，或记录的汇总指纹与现有汇总文件不一致（汇总被改动或重新生成过）时返回 null，调用方应整体重建。
+     */
+    static BuildManifest readIfCurrent(File file, File summary) {
+        if (!file.exists() || !summary.exists()) return null;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file.toPath()), 64 * 1024))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) return null;
+            BuildManifest m = new BuildManifest(in.readLong(), in.readLong());
+            if (m.summaryLength != summary.length() || m.summaryModified != summary.lastModified()) {
+                LOGGER.info("汇总文件在上次构建后有变动, 整体重建");
+                return null;
+            }
+            int count = in.readInt();
+            for (int s = 0; s < count; s++) {
+                Source src = new Source(in.readUTF(), in.readLong(), in.readLong());
+                int rows = in.readInt();
+                src.rowKeys = new long[Math.max(16, rows)];
+                src.rowHashes = new long[src.rowKeys.length];
+                src.studentHashes = new long[src.rowKeys.length];
+                for (int i = 0; i < rows; i++) {
+                    src.rowKeys[i] = in.readLong();
+                    src.rowHashes[i] = in.readLong();
+                    src.studentHashes[i] = in.readLong();
+                }
+                src.rows = rows;
+                m.put(src);
+            }
+            return m;
+        } catch (IOException e) {
+            LOGGER.warn("构建清单损坏, 整体重建: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 先写临时文件再原子替换，写到一半崩溃不会留下与汇总不匹配的清单。
+     */
+    void write(File file) throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp.toPath()), 64 * 1024))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(summaryLength);
+            out.writeLong(summaryModified);
+            out.writeInt(sources.size());
+            for (Source s : sources.values()) {
+                out.writeUTF(s.path);
+                out.writeLong(s.length);
+                out.writeLong(s.modified);
+                out.writeInt(s.rows);
+                for (int i = 0; i < s.rows; i++) {
+                    out.writeLong(s.rowKeys[i]);
+                    out.writeLong(s.rowHashes[i]);
+                    out.writeLong(s.studentHashes[i]);
+                }
+            }
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // ================= 哈希 =================
+
+    static long rowKey(int sheet, int row) {
+        return (long) sheet << 32 | (row & 0xFFFFFFFFL);
+    }
+
+    /**
+     * 整行内容哈希（所有单元格，含空单元格位置）。
+     */
+    static long rowHash(String[] cells) {
+        long h = 0xcbf29ce484222325L;
+        for (String c : cells) {
+            h = mix(h, c);
+            h = (h ^ 0x1F) * 0x100000001b3L;
+        }
+        return finish(h);
+    }
+
+    /**
+     * 学号哈希；学号为空的行记为 0（不属于任何学生，但其变化仍会被比较出来）。
+     */
+    static long studentHash(String studentId) {
+        if (studentId == null || studentId.isEmpty()) return 0;
+        return finish(mix(0xcbf29ce484222325L, studentId));
+    }
+
+    // FNV-1a（按 UTF-16 字符）
+    private static long mix(long h, String s) {
+        if (s == null) return (h ^ 0xFF) * 0x100000001b3L;
+        for (int i = 0; i < s.length(); i++) {
+            h = (h ^ s.charAt(i)) * 0x100000001b3L;
+        }
+        return h;
+    }
+
+    // 末尾再散列一次，改善低位分布
+    private static long finish(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private static String pathOf(File file) {
+        return file.getAbsoluteFile().toPath().normalize().toString();
+    }
+}
@@ -1,233 +1,259 @@
 package org.example.build;
 
-import org.apache.poi.ss.usermodel.*;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.example.config.Config;
+import org.example.processing.XlsxStreamReader;
 import org.example.util.LoggerUtil;
 import org.slf4j.Logger;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.nio.file.Files;
-import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
 
 /**
- * 随机数据构建 (逻辑未改)
+ * 随机数据构建：生成问卷导出格式的源文件，用于演示与压测。
+ * <p>
+ * 学生按 {@link Config#RANDOM_GEN_PARTITION_ROWS} 行一个分区在 ForkJoinPool 上并行生成，每个分区用由种子按顺序
+ * split 出的 SplittableRandom，因此同一种子、同一数量的输出与线程数和完成顺序无关；分区按顺序交给 SXSSF 流式写出，
+ * 最多 {@link Config#RANDOM_GEN_WINDOW} 个分区在途，内存占用与学生总数无关，可生成百万级以上的数据。
  */
 public class BuildNull {
     private static final Logger LOGGER = LoggerUtil.getLogger(BuildNull.class.getName());
-    private static final int QUANTITY = Config.QUANTITY;
-    private static final int MAX_AWARDS = Config.MAX_AWARDS;
-    private static final boolean RANDOM_AWARDS_COUNT = Config.RANDOM_AWARDS_COUNT;
     private static final String NULL_FILE = Config.NULL_TEMPLATE_FILE;
     private static final String PATH_FILE = Config.RAW_SOURCE_PATH;
-    private final Random random = new Random();
-    private int dataRowOffset = 0;
-    private Workbook workbook;
-    private Sheet sheet;
+    // 表头中基础列与第一个奖项列的位置（与问卷导出及模板一致）
+    private static final int COL_NAME = 6;
+    private static final int COL_CLASS = 7;
+    private static final int COL_STUDENT_ID = 8;
+    private static final int COL_FIRST_AWARD = 9;
 
-    public static void main(String[] args) {
-        new BuildNull().build();
+    private final int quantity;
+    private final long seed;
+    private final int partitionRows;
+    private final int rowsPerSheet;
+    // 预先拼好的候选值，生成时只做下标抽取
+    private final String[] names;
+    private final String[] awards;
+    private final int[] gradeCumulative;
+
+    public BuildNull() {
+        this(Config.QUANTITY, Config.RANDOM_SEED);
     }
 
-    private void detectHeaderOffset() {
-        Row r0 = sheet.getRow(0);
-        if (r0 == null) {
-            dataRowOffset = 0;
-            return;
-        }
-        String c7 = getCellString(r0.getCell(6));
-        String c8 = getCellString(r0.getCell(7));
-        String c9 = getCellString(r0.getCell(8));
-        if ((c7 != null && c7.contains("姓名")) || (c8 != null && c8.contains("班")) || (c9 != null && c9.contains("学号"))) {
-            dataRowOffset = 1;
-        } else dataRowOffset = 0;
-        LOGGER.debug("dataRowOffset=" + dataRowOffset);
+    /**
+     * @param seed 0 表示随机选取（实际种子写入日志）
+     */
+    public BuildNull(int quantity, long seed) {
+        this(quantity, seed, Config.RANDOM_GEN_PARTITION_ROWS, Config.RANDOM_GEN_ROWS_PER_SHEET);
     }
 
-    private String getCellString(Cell cell) {
-        if (cell == null) return null;
-        switch (cell.getCellType()) {
-            case STRING:
-                return cell.getStringCellValue();
-            case NUMERIC:
-                double d = cell.getNumericCellValue();
-                return d == (long) d ? String.valueOf((long) d) : String.valueOf(d);
-            default:
-                return cell.toString();
+    BuildNull(int quantity, long seed, int partitionRows, int rowsPerSheet) {
+        this.quantity = Math.max(0, quantity);
+        this.seed = seed != 0 ? seed : System.nanoTime() ^ Double.doubleToLongBits(Math.random());
+        this.partitionRows = Math.max(1, partitionRows);
+        this.rowsPerSheet = Math.max(1, rowsPerSheet);
+        String[] first = Config.RANDOM_SURNAME_POOL;
+        String[] last = Config.RANDOM_GIVEN_NAME_POOL;
+        names = new String[first.length * last.length];
+        for (int i = 0; i < first.length; i++) {
+            for (int j = 0; j < last.length; j++) names[i * last.length + j] = first[i] + last[j];
+        }
+        String[] awardList = Config.RANDOM_AWARD_NAME_POOL;
+        String[] gradeList = Config.RANDOM_AWARD_GRADE_POOL;
+        awards = new String[gradeList.length * awardList.length];
+        for (int g = 0; g < gradeList.length; g++) {
+            for (int a = 0; a < awardList.length; a++) awards[g * awardList.length + a] = awardList[a] + gradeList[g];
+        }
+        gradeCumulative = new int[gradeList.length];
+        int sum = 0;
+        for (int g = 0; g < gradeList.length; g++) {
+            sum += g < Config.RANDOM_AWARD_GRADE_WEIGHTS.length ? Math.max(0, Config.RANDOM_AWARD_GRADE_WEIGHTS[g]) : 0;
+            gradeCumulative[g] = sum;
+        }
+        if (sum == 0) {
+            for (int g = 0; g < gradeList.length; g++) gradeCumulative[g] = g + 1;
         }
     }
 
+    /**
+     * 用法：BuildNull [学生数] [种子] [输出文件]
+     */
+    public static void main(String[] args) {
+        int quantity = args.length > 0 ? Integer.parseInt(args[0]) : Config.QUANTITY;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : Config.RANDOM_SEED;
+        BuildNull builder = new BuildNull(quantity, seed);
+        if (args.length > 2) builder.build(new File(args[2]));
+        else builder.build();
+    }
+
     public void build() {
+        build(new File(PATH_FILE));
+    }
+
+    public void build(File target) {
         try {
-            File target = new File(PATH_FILE);
-            if (!target.exists()) {
-                copyTemplateFresh();
-            } else {
-                if (!canOpenWorkbook(target)) {
-                    LOGGER.warn("目标文件已损坏, 删除并重新复制模板: " + PATH_FILE);
-                    if (!target.delete()) LOGGER.warn("无法删除损坏文件, 尝试覆盖写入");
-                    copyTemplateFresh();
-                }
-            }
-            try (FileInputStream fis = new FileInputStream(PATH_FILE)) {
-                workbook = WorkbookFactory.create(fis);
-                sheet = workbook.getNumberOfSheets() > 0 ? workbook.getSheetAt(0) : workbook.createSheet(Config.SHEET_MAIN);
-            } catch (Exception ex) {
-                LoggerUtil.logException(LOGGER, ex, "复制后仍无法打开, 回退创建新工作簿");
-                workbook = new XSSFWorkbook();
-                sheet = workbook.createSheet(Config.SHEET_MAIN);
-                ensureHeader();
-            }
-            ensureHeader();
-            detectHeaderOffset();
-            for (int step = 1; step <= 4; step++) {
-                run(step);
-            }
-            try (FileOutputStream fos = new FileOutputStream(PATH_FILE)) {
-                workbook.write(fos);
-            }
-            workbook.close();
-            LOGGER.info("构建完成: " + PATH_FILE);
+            write(target);
         } catch (Exception e) {
             LoggerUtil.logException(LOGGER, e, "构建流程失败");
         }
     }
 
-    private void copyTemplateFresh() throws IOException {
-        File template = new File(NULL_FILE);
-        if (!template.exists()) {
-            LOGGER.warn("模板文件缺失, 创建空工作簿替代。");
-            workbook = new XSSFWorkbook();
-            sheet = workbook.createSheet(Config.SHEET_MAIN);
-            ensureHeader();
-            try (FileOutputStream fos = new FileOutputStream(PATH_FILE)) {
-                workbook.write(fos);
+    /**
+     * 先写临时文件再替换目标，生成到一半失败不会留下残缺的源文件。
+     */
+    void write(File target) throws IOException {
+        long start = System.nanoTime();
+        String[] header = header();
+        File tmp = new File(target.getPath() + ".tmp");
+        SXSSFWorkbook wb = new SXSSFWorkbook(Config.EXCEL_STREAM_ROW_WINDOW);
+        wb.setCompressTempFiles(true);
+        try {
+            int partitions = (int) ((quantity + (long) partitionRows - 1) / partitionRows);
+            SplittableRandom root = new SplittableRandom(seed);
+            ArrayDeque<CompletableFuture<String[][]>> inflight = new ArrayDeque<>();
+            Sheet sheet = null;
+            int sheetRows = 0;
+            int written = 0;
+            for (int p = 0; p < partitions || !inflight.isEmpty(); ) {
+                if (p < partitions && inflight.size() < Config.RANDOM_GEN_WINDOW) {
+                    // split 在本线程按分区顺序进行，各分区的随机序列与调度无关
+                    SplittableRandom random = root.split();
+                    int rows = (int) Math.min(partitionRows, quantity - (long) p * partitionRows);
+                    inflight.addLast(CompletableFuture.supplyAsync(() -> generate(random, rows), ForkJoinPool.commonPool()));
+                    p++;
+                    continue;
+                }
+                for (String[] student : inflight.pollFirst().join()) {
+                    if (sheet == null || sheetRows == rowsPerSheet) {
+                        sheet = wb.createSheet(wb.getNumberOfSheets() == 0 ? Config.SHEET_MAIN : "Sheet" + (wb.getNumberOfSheets() + 1));
+                        writeHeader(sheet, header);
+                        sheetRows = 0;
+                    }
+                    writeStudent(sheet.createRow(++sheetRows), ++written, student);
+                }
             }
-            workbook.close();
-            return;
-        }
-        Files.copy(Path.of(NULL_FILE), Path.of(PATH_FILE), StandardCopyOption.REPLACE_EXISTING);
-        LOGGER.info("模板复制完成: " + PATH_FILE);
-    }
-
-    private boolean canOpenWorkbook(File f) {
-        try (FileInputStream fis = new FileInputStream(f)) {
-            Workbook wb = WorkbookFactory.create(fis);
+            if (sheet == null) writeHeader(wb.createSheet(Config.SHEET_MAIN), header);
+            try (FileOutputStream fos = new FileOutputStream(tmp)) {
+                wb.write(fos);
+            }
+        } finally {
+            wb.dispose();
             wb.close();
-            return true;
-        } catch (Exception ex) {
-            return false;
         }
+        Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        long ms = (System.nanoTime() - start) / 1_000_000;
+        LOGGER.info("构建完成: " + target.getPath() + ", 学生 " + quantity + " 名, 工作表 " + Math.max(1, (quantity + (long) rowsPerSheet - 1) / rowsPerSheet)
+                + " 个, 种子 " + seed + ", 耗时 " + ms + " ms");
     }
 
-    private void ensureHeader() {
-        if (sheet == null) return;
-        Row r0 = sheet.getRow(0);
-        if (r0 != null) return;
-        r0 = sheet.createRow(0);
-        r0.createCell(6).setCellValue("姓名");
-        r0.createCell(7).setCellValue("班级");
-        r0.createCell(8).setCellValue("学号");
-        int base = 9;
-        for (int i = 1; i <= 40; i++) {
-            r0.createCell(base).setCellValue("奖项" + i);
-            r0.createCell(base + 1).setCellValue("证书图片" + i);
-            base += 2;
-        }
-    }
-
-    private String generateRandomChineseName() {
-        String[] first = Config.RANDOM_SURNAME_POOL;
-        String[] last = Config.RANDOM_GIVEN_NAME_POOL;
-        return first[random.nextInt(first.length)] + last[random.nextInt(last.length)];
-    }
-
-    private String generateRandomChineseClass() {
-        String[] prefixes = Config.RANDOM_CLASS_PREFIX_POOL;
-        return prefixes[random.nextInt(prefixes.length)] + (Config.CLASS_SUFFIX_MIN + random.nextInt(Config.CLASS_SUFFIX_MAX - Config.CLASS_SUFFIX_MIN + 1));
-    }
-
-    private String generateRandomChineseNumber() {
-        long span = Config.STUDENT_ID_MAX - Config.STUDENT_ID_MIN + 1;
-        long val = Config.STUDENT_ID_MIN + (Math.abs(random.nextLong()) % span);
-        return String.valueOf(val);
-    }
+    // ================= 生成 =================
 
-    private String generateRandomChineseAward() {
-        String[] awardList = Config.RANDOM_AWARD_NAME_POOL;
-        String[] gradeList = Config.RANDOM_AWARD_GRADE_POOL;
-        return awardList[random.nextInt(awardList.length)] + gradeList[random.nextInt(gradeList.length)];
+    /**
+     * 一个分区的学生行：{姓名, 班级, 学号, 奖项1, 证书图片1, 奖项2, ...}。
+     */
+    private String[][] generate(SplittableRandom random, int rows) {
+        String[][] out = new String[rows][];
+        for (int i = 0; i < rows; i++) {
+            int n = awardsCount(random);
+            String[] row = new String[3 + n * 2];
+            row[0] = names[random.nextInt(names.length)];
+            String[] prefixes = Config.RANDOM_CLASS_PREFIX_POOL;
+            row[1] = prefixes[random.nextInt(prefixes.length)] + random.nextInt(Config.CLASS_SUFFIX_MIN, Config.CLASS_SUFFIX_MAX + 1);
+            row[2] = String.valueOf(random.nextLong(Config.STUDENT_ID_MIN, Config.STUDENT_ID_MAX + 1));
+            for (int k = 0; k < n; k++) {
+                row[3 + k * 2] = award(random);
+                row[4 + k * 2] = Config.RANDOM_IMAGE_POOL[random.nextInt(Config.RANDOM_IMAGE_POOL.length)];
+            }
+            out[i] = row;
+        }
+        return out;
     }
 
-    private String generateRandomChineseAwardImg() {
-        String[] img = Config.RANDOM_IMAGE_POOL;
-        return img[random.nextInt(img.length)];
+    private int awardsCount(SplittableRandom random) {
+        int max = Config.MAX_AWARDS;
+        if (!Config.RANDOM_AWARDS_COUNT) return max;
+        double mean = Config.RANDOM_AWARDS_MEAN;
+        if (mean <= 0) return 1 + random.nextInt(max);
+        if (mean <= 1) return 1;
+        // 取值 1, 2, 3… 的几何分布，均值为 mean
+        double q = 1 - 1 / mean;
+        long k = 1 + (long) Math.floor(Math.log(1 - random.nextDouble()) / Math.log(q));
+        return (int) Math.min(k, max);
     }
 
-    private List<List<String>> getAwardList() {
-        int n = RANDOM_AWARDS_COUNT ? (1 + random.nextInt(MAX_AWARDS)) : MAX_AWARDS;
-        List<List<String>> awards = new ArrayList<>();
-        for (int i = 0; i < n; i++) {
-            List<String> pair = new ArrayList<>(2);
-            pair.add(generateRandomChineseAward());
-            pair.add(generateRandomChineseAwardImg());
-            awards.add(pair);
+    private String award(SplittableRandom random) {
+        if (Config.RANDOM_CERT_RATIO > 0 && random.nextDouble() < Config.RANDOM_CERT_RATIO) {
+            return Config.RANDOM_CERT_NAME_POOL[random.nextInt(Config.RANDOM_CERT_NAME_POOL.length)];
         }
-        return awards;
+        int pick = random.nextInt(gradeCumulative[gradeCumulative.length - 1]);
+        int grade = 0;
+        while (gradeCumulative[grade] <= pick) grade++;
+        int perGrade = Config.RANDOM_AWARD_NAME_POOL.length;
+        return awards[grade * perGrade + random.nextInt(perGrade)];
     }
 
-    private void coordinateWriting(int index, int G, String value) {
-        if (sheet == null) return;
-        int rowIdx = (index - 1) + dataRowOffset;
-        Row row = sheet.getRow(rowIdx);
-        if (row == null) row = sheet.createRow(rowIdx);
-        int colIdx = G - 1;
-        Cell cell = row.getCell(colIdx);
-        if (cell == null) cell = row.createCell(colIdx);
-        cell.setCellValue(value);
-    }
+    // ================= 写出 =================
 
-    private void awardWriting(int index, int param, List<List<String>> value) {
-        if (sheet == null) return;
-        int rowIdx = (index - 1) + dataRowOffset;
-        Row row = sheet.getRow(rowIdx);
-        if (row == null) row = sheet.createRow(rowIdx);
-        int col = param - 1;
-        for (List<String> pair : value) {
-            Cell awardCell = row.getCell(col);
-            if (awardCell == null) awardCell = row.createCell(col);
-            awardCell.setCellValue(pair.get(0));
-            Cell imgCell = row.getCell(col + 1);
-            if (imgCell == null) imgCell = row.createCell(col + 1);
-            imgCell.setCellValue(pair.get(1));
-            col += 2;
+    /**
+     * 表头取自模板第一行（保留问卷导出的列名），奖项列不足 MAX_AWARDS 对时补齐，否则多出的奖项不会被汇总读到。
+     */
+    private String[] header() {
+        List<String> template = new ArrayList<>();
+        File file = new File(NULL_FILE);
+        if (file.exists()) {
+            try {
+                XlsxStreamReader.readSheet(file, null, (i, cells) -> {
+                    if (i != 0) return;
+                    for (String c : cells) template.add(c == null ? "" : c);
+                });
+            } catch (Exception e) {
+                LoggerUtil.logException(LOGGER, e, "模板无法读取, 使用默认表头");
+                template.clear();
+            }
+        } else {
+            LOGGER.warn("模板文件缺失, 使用默认表头。");
+        }
+        int columns = Math.max(template.size(), COL_FIRST_AWARD + Config.MAX_AWARDS * 2);
+        String[] header = new String[columns];
+        for (int c = 0; c < columns; c++) {
+            String t = c < template.size() ? template.get(c) : "";
+            if (!t.isEmpty()) header[c] = t;
+            else if (c == 0) header[c] = "序号";
+            else if (c == COL_NAME) header[c] = Config.COL_NAME;
+            else if (c == COL_CLASS) header[c] = Config.COL_CLASS;
+            else if (c == COL_STUDENT_ID) header[c] = Config.COL_STUDENT_ID;
+            else if (c >= COL_FIRST_AWARD) {
+                int pair = (c - COL_FIRST_AWARD) / 2 + 1;
+                header[c] = ((c - COL_FIRST_AWARD) % 2 == 0 ? Config.COL_AWARD_LABEL_PREFIX : Config.COL_AWARD_IMAGE_PREFIX) + pair;
+            }
         }
+        return header;
     }
 
-    private void run(int step) {
-        if (step == 1) {
-            for (int i = 1; i <= QUANTITY; i++) coordinateWriting(i, 7, generateRandomChineseName());
-        } else if (step == 2) {
-            for (int i = 1; i <= QUANTITY; i++) coordinateWriting(i, 8, generateRandomChineseClass());
-        } else if (step == 3) {
-            for (int i = 1; i <= QUANTITY; i++) coordinateWriting(i, 9, generateRandomChineseNumber());
-        } else if (step == 4) {
-            for (int i = 1; i <= QUANTITY; i++) awardWriting(i, 10, getAwardList());
+    private static void writeHeader(Sheet sheet, String[] header) {
+        Row r0 = sheet.createRow(0);
+        for (int c = 0; c < header.length; c++) {
+            if (header[c] != null) r0.createCell(c).setCellValue(header[c]);
         }
     }
 
-    private void saveWorkbook() {
-        try (FileOutputStream fos = new FileOutputStream(PATH_FILE)) {
-            workbook.write(fos);
-        } catch (IOException e) {
-            LoggerUtil.logException(LOGGER, e, "保存工作簿失败");
+    private static void writeStudent(Row row, int index, String[] student) {
+        row.createCell(0).setCellValue(index);
+        row.createCell(COL_NAME).setCellValue(student[0]);
+        row.createCell(COL_CLASS).setCellValue(student[1]);
+        row.createCell(COL_STUDENT_ID).setCellValue(student[2]);
+        for (int k = 3; k < student.length; k++) {
+            row.createCell(COL_FIRST_AWARD + k - 3).setCellValue(student[k]);
         }
     }
 }
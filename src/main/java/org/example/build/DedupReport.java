@@ -0,0 +1,86 @@
+package org.example.build;
+
+import org.example.config.Config;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 汇总构建时的奖项去重结果：同一学生的奖项名与证书图片规范化后相同即视为重复提交，只保留第一次出现的。
+ * 明细最多保留 Config.BUILD_DEDUP_DETAIL_LIMIT 条，duplicateCount 为全部重复数；增量构建时只包含本次重新聚合的学生。
+ */
+public final class DedupReport {
+
+    /**
+     * 一条被去掉的重复奖项（原文，未规范化）。
+     */
+    public static final class Duplicate {
+        public final String studentId;
+        public final String studentName;
+        public final String awardName;
+        public final String image;
+
+        Duplicate(String studentId, String studentName, String awardName, String image) {
+            this.studentId = studentId;
+            this.studentName = studentName;
+            this.awardName = awardName;
+            this.image = image;
+        }
+    }
+
+    private final List<Duplicate> duplicates = new ArrayList<>();
+    private int duplicateCount;
+    private int studentCount;
+
+    void add(BuildList.AggregatedStudent s) {
+        if (s.duplicates.isEmpty()) return;
+        studentCount++;
+        for (BuildList.AwardPair p : s.duplicates) {
+            duplicateCount++;
+            if (duplicates.size() < Config.BUILD_DEDUP_DETAIL_LIMIT) duplicates.add(new Duplicate(s.studentId, s.name, p.award, p.image));
+        }
+    }
+
+    public List<Duplicate> getDuplicates() {
+        return Collections.unmodifiableList(duplicates);
+    }
+
+    public int getDuplicateCount() {
+        return duplicateCount;
+    }
+
+    public int getStudentCount() {
+        return studentCount;
+    }
+
+    public String summary() {
+        return "奖项去重: " + studentCount + " 名学生共 " + duplicateCount + " 个重复提交的奖项已合并";
+    }
+
+    /**
+     * 明细写成 CSV（UTF-8 带 BOM，Excel 可直接打开）。
+     */
+    public void writeCsv(File target) throws IOException {
+        try (BufferedWriter w = Files.newBufferedWriter(target.toPath(), StandardCharsets.UTF_8)) {
+            w.write('﻿');
+            w.write(String.join(",", Config.COL_STUDENT_ID, Config.COL_NAME, "奖项", "证书图片"));
+            w.newLine();
+            for (Duplicate d : duplicates) {
+                w.write(csv(d.studentId) + "," + csv(d.studentName) + "," + csv(d.awardName) + "," + csv(d.image));
+                w.newLine();
+            }
+        }
+    }
+
+    private static String csv(String s) {
+        if (s == null) return "";
+        if (s.indexOf(',') < 0 && s.indexOf('"') < 0 && s.indexOf('\n') < 0) return s;
+        return '"' + s.replace("\"", "\"\"") + '"';
+    }
+}
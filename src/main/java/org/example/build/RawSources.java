@@ -0,0 +1,73 @@
+package org.example.build;
+
+import org.example.config.Config;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * 解析汇总构建的源路径：单个文件、目录（其中全部 .xlsx），或通配符（如 exports/*.xlsx，含 ** 时递归子目录）。
+ * 结果按路径排序，保证多文件合并时奖项拼接顺序稳定；程序自己生成的汇总表与学生表被排除。
+ */
+final class RawSources {
+
+    private RawSources() {
+    }
+
+    /**
+     * @return 匹配的源文件；路径不存在或无匹配时为空列表
+     */
+    static List<File> resolve(String sourcePath) throws IOException {
+        File file = new File(sourcePath);
+        if (file.isFile()) return List.of(file);
+        List<File> out = new ArrayList<>();
+        if (file.isDirectory()) {
+            try (Stream<Path> list = Files.list(file.toPath())) {
+                list.filter(p -> isRawSource(p, p.getFileName().toString().toLowerCase().endsWith(".xlsx")))
+                        .forEach(p -> out.add(p.toFile()));
+            }
+        } else {
+            int glob = firstGlobChar(sourcePath);
+            if (glob < 0) return out;
+            int sep = Math.max(sourcePath.lastIndexOf('/', glob), sourcePath.lastIndexOf(File.separatorChar, glob));
+            Path base = sep < 0 ? Paths.get(".") : Paths.get(sourcePath.substring(0, sep + 1));
+            if (!Files.isDirectory(base)) return out;
+            PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + sourcePath);
+            try (Stream<Path> walk = sourcePath.contains("**") ? Files.walk(base) : Files.list(base)) {
+                // 模式不带目录前缀时按文件名匹配（Files.list(".") 给出的是 ./name）
+                walk.filter(p -> isRawSource(p, matcher.matches(sep < 0 ? p.getFileName() : p)))
+                        .forEach(p -> out.add(p.toFile()));
+            }
+        }
+        out.sort(null);
+        return out;
+    }
+
+    private static boolean isRawSource(Path p, boolean matched) {
+        if (!matched || !Files.isRegularFile(p)) return false;
+        String name = p.getFileName().toString();
+        // Excel 打开文件时留下的锁文件
+        if (name.startsWith("~$")) return false;
+        return !isSameFile(p, Config.AWARDS_SUMMARY_PATH) && !isSameFile(p, Config.STUDENT_AWARDS_PATH);
+    }
+
+    private static boolean isSameFile(Path p, String other) {
+        return p.toAbsolutePath().normalize().equals(Paths.get(other).toAbsolutePath().normalize());
+    }
+
+    private static int firstGlobChar(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '*' || c == '?' || c == '[' || c == '{') return i;
+        }
+        return -1;
+    }
+}
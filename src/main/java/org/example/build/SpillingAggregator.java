@@ -0,0 +1,306 @@
+package org.example.build;
+
+import org.example.config.Config;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * 按学号聚合问卷行，内存有预算：已聚合数据的估算大小超过预算时，按学号排序整批溢写到临时文件（一个有序段），
+ * 内存清空后继续聚合；输出时对各段做 k 路归并（段数超过扇入上限时先做中间归并），同一学号在各段中的奖项按段顺序（即源文件行顺序）拼接。
+ * 未发生溢写时按学号首次出现的顺序输出，与原先完全相同；发生溢写时按学号顺序输出。
+ */
+final class SpillingAggregator implements Closeable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SpillingAggregator.class);
+    // 估算用的对象开销（字节）：每名学生（对象 + 映射项 + 列表 + 去重键集合） / 每个奖项（AwardPair + 两个 String 头 + 去重键 String 头与集合项）
+    private static final long STUDENT_OVERHEAD = 320;
+    private static final long AWARD_OVERHEAD = 160;
+    // 学号排序：先比长度再比字典序，纯数字学号即数值顺序
+    static final Comparator<String> ID_ORDER = Comparator.comparingInt(String::length).thenComparing(Comparator.naturalOrder());
+
+    /**
+     * 归并输出的消费者（写汇总表）。
+     */
+    @FunctionalInterface
+    interface StudentSink {
+        void accept(BuildList.AggregatedStudent student) throws IOException;
+    }
+
+    private final long memoryBudget;
+    private final int fanIn;
+    private final Map<String, BuildList.AggregatedStudent> current = new LinkedHashMap<>();
+    private final List<File> runs = new ArrayList<>();
+    private Path spillDir;
+    private final List<Path> adoptedDirs = new ArrayList<>();
+    private int runSeq;
+    private long estimatedBytes;
+
+    SpillingAggregator(long memoryBudget, int fanIn) {
+        this.memoryBudget = memoryBudget;
+        this.fanIn = Math.max(2, fanIn);
+    }
+
+    /**
+     * 取出（必要时创建）学生的聚合项；同一学号保留首次出现时的姓名与班级。
+     */
+    BuildList.AggregatedStudent student(String studentId, String name, String clazz) {
+        BuildList.AggregatedStudent agg = current.get(studentId);
+        if (agg == null) {
+            agg = new BuildList.AggregatedStudent(studentId, name, clazz);
+            current.put(studentId, agg);
+            estimatedBytes += STUDENT_OVERHEAD + 2L * (len(studentId) + len(name) + len(clazz));
+        }
+        return agg;
+    }
+
+    void addAward(BuildList.AggregatedStudent agg, String award, String image) {
+        agg.addAward(award, image);
+        // 开启去重时规范化键另存一份文本
+        estimatedBytes += AWARD_OVERHEAD + (Config.BUILD_DEDUP_AWARDS ? 4L : 2L) * (len(award) + len(image));
+    }
+
+    /**
+     * 一行处理完后调用：超出预算时溢写（行中途不溢写，调用方持有的聚合项始终有效）。
+     */
+    void endRow() throws IOException {
+        if (estimatedBytes > memoryBudget) spill();
+    }
+
+    /**
+     * 把内存中剩余的聚合数据也溢写成段（多个源文件并行聚合后交给 {@link #adoptRuns} 合并前调用）。
+     */
+    void spillAll() throws IOException {
+        if (!current.isEmpty()) spill();
+    }
+
+    /**
+     * 接管另一个聚合器已溢写的全部段，追加在本聚合器的段之后（归并时其奖项排在后面）。
+     * 仅用于只做归并、自身不聚合行的汇总聚合器；被接管方之后 close 不再删除这些文件。
+     */
+    void adoptRuns(SpillingAggregator other) throws IOException {
+        if (!current.isEmpty()) throw new IllegalStateException("接管溢写段前内存中不能有未溢写的数据");
+        other.spillAll();
+        runs.addAll(other.runs);
+        other.runs.clear();
+        if (other.spillDir != null) adoptedDirs.add(other.spillDir);
+        adoptedDirs.addAll(other.adoptedDirs);
+        other.spillDir = null;
+        other.adoptedDirs.clear();
+    }
+
+    /**
+     * 溢写过的段数。
+     */
+    int spilledRuns() {
+        return runs.size();
+    }
+
+    /**
+     * 依次输出全部学生（每个学号一次）。
+     * @return 输出的学生数
+     */
+    int forEach(StudentSink sink) throws IOException {
+        if (runs.isEmpty()) {
+            for (BuildList.AggregatedStudent s : current.values()) sink.accept(s);
+            return current.size();
+        }
+        spillAll();
+        // 段数超过扇入上限时先把相邻段分组归并成更长的段（保持段顺序，奖项顺序不变），同时打开的文件数有界
+        while (runs.size() > fanIn) {
+            LOGGER.debug("中间归并: " + runs.size() + " 段");
+            List<File> merged = new ArrayList<>();
+            int consumed = 0;
+            try {
+                for (int from = 0; from < runs.size(); from += fanIn) {
+                    List<File> group = runs.subList(from, Math.min(from + fanIn, runs.size()));
+                    File run = newRunFile();
+                    merged.add(run);
+                    try (DataOutputStream out = openRun(run)) {
+                        mergeRuns(group, s -> writeStudent(out, s));
+                    }
+                    for (File f : group) deleteRun(f);
+                    consumed = from + group.size();
+                }
+            } finally {
+                // 失败时写了一半的新段也交给 runs，由 close() 删除；已归并删除的旧段移出
+                runs.subList(0, consumed).clear();
+                runs.addAll(merged);
+            }
+        }
+        LOGGER.debug("归并 " + runs.size() + " 个溢写段");
+        return mergeRuns(runs, sink);
+    }
+
+    /**
+     * k 路归并若干有序段；学号相同时按段在列表中的顺序拼接奖项。
+     */
+    private static int mergeRuns(List<File> group, StudentSink sink) throws IOException {
+        List<RunReader> readers = new ArrayList<>();
+        try {
+            PriorityQueue<RunReader> heads = new PriorityQueue<>((a, b) -> {
+                int c = ID_ORDER.compare(a.head.studentId, b.head.studentId);
+                return c != 0 ? c : Integer.compare(a.index, b.index);
+            });
+            for (int i = 0; i < group.size(); i++) {
+                RunReader r = new RunReader(i, group.get(i));
+                readers.add(r);
+                if (r.advance()) heads.add(r);
+            }
+            int count = 0;
+            while (!heads.isEmpty()) {
+                RunReader first = heads.poll();
+                BuildList.AggregatedStudent merged = first.head;
+                if (first.advance()) heads.add(first);
+                // 同一学号的后续段：奖项按段顺序追加
+                while (!heads.isEmpty() && heads.peek().head.studentId.equals(merged.studentId)) {
+                    RunReader r = heads.poll();
+                    // 逐项追加，各段之间的重复在这里去掉
+                    for (BuildList.AwardPair p : r.head.awards) merged.addAward(p.award, p.image);
+                    merged.duplicates.addAll(r.head.duplicates);
+                    if (r.advance()) heads.add(r);
+                }
+                sink.accept(merged);
+                count++;
+            }
+            return count;
+        } finally {
+            for (RunReader r : readers) r.close();
+        }
+    }
+
+    @Override
+    public void close() {
+        for (File f : runs) deleteRun(f);
+        runs.clear();
+        if (spillDir != null) adoptedDirs.add(spillDir);
+        for (Path dir : adoptedDirs) {
+            if (!dir.toFile().delete()) LOGGER.warn("无法删除溢写目录: " + dir);
+        }
+        adoptedDirs.clear();
+        spillDir = null;
+    }
+
+    // ================= 溢写段：按学号排序的学生序列 =================
+
+    private void spill() throws IOException {
+        long start = System.nanoTime();
+        List<BuildList.AggregatedStudent> sorted = new ArrayList<>(current.values());
+        sorted.sort((a, b) -> ID_ORDER.compare(a.studentId, b.studentId));
+        File run = newRunFile();
+        runs.add(run);
+        try (DataOutputStream out = openRun(run)) {
+            for (BuildList.AggregatedStudent s : sorted) writeStudent(out, s);
+        }
+        LOGGER.debug("溢写第 " + runs.size() + " 段: " + sorted.size() + " 名学生, 约 " + estimatedBytes / (1024 * 1024) + " MB, 耗时 "
+                + (System.nanoTime() - start) / 1_000_000 + " ms");
+        current.clear();
+        estimatedBytes = 0;
+    }
+
+    private File newRunFile() throws IOException {
+        if (spillDir == null) spillDir = Files.createTempDirectory("buildlist-");
+        return spillDir.resolve("run-" + runSeq++ + ".bin").toFile();
+    }
+
+    private static DataOutputStream openRun(File run) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(run.toPath()), 64 * 1024));
+    }
+
+    private static void writeStudent(DataOutputStream out, BuildList.AggregatedStudent s) throws IOException {
+        writeString(out, s.studentId);
+        writeString(out, s.name);
+        writeString(out, s.clazz);
+        out.writeInt(s.awards.size());
+        for (BuildList.AwardPair p : s.awards) {
+            writeString(out, p.award);
+            writeString(out, p.image);
+        }
+        out.writeInt(s.duplicates.size());
+        for (BuildList.AwardPair p : s.duplicates) {
+            writeString(out, p.award);
+            writeString(out, p.image);
+        }
+    }
+
+    private static void deleteRun(File f) {
+        if (!f.delete()) LOGGER.warn("无法删除溢写文件: " + f.getAbsolutePath());
+    }
+
+    private static final class RunReader implements Closeable {
+        final int index;
+        final DataInputStream in;
+        BuildList.AggregatedStudent head;
+
+        RunReader(int index, File file) throws IOException {
+            this.index = index;
+            this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file.toPath()), 64 * 1024));
+        }
+
+        boolean advance() throws IOException {
+            String sid = readString(in);
+            if (sid == null) {
+                head = null;
+                return false;
+            }
+            head = new BuildList.AggregatedStudent(sid, readString(in), readString(in));
+            int awards = in.readInt();
+            for (int i = 0; i < awards; i++) head.addAward(readString(in), readString(in));
+            int duplicates = in.readInt();
+            for (int i = 0; i < duplicates; i++) head.addDuplicate(readString(in), readString(in));
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    // 字符串：长度(int, -1 表示 null) + UTF-8 字节；不用 writeUTF，避免 64KB 上限
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(b.length);
+        out.write(b);
+    }
+
+    /**
+     * @return 段结束时（读学号处）返回 null
+     */
+    private static String readString(DataInputStream in) throws IOException {
+        int len;
+        try {
+            len = in.readInt();
+        } catch (EOFException e) {
+            return null;
+        }
+        if (len < 0) return null;
+        byte[] b = new byte[len];
+        in.readFully(b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    private static int len(String s) {
+        return s == null ? 0 : s.length();
+    }
+}
@@ -0,0 +1,253 @@
+package org.example.build;
+
+import org.example.util.LongObjectMap;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * 在 xlsx 包内直接修补汇总工作表：未受影响的 &lt;row&gt; 按字节原样复制，只有受影响学生的行重新生成，
+ * 省去整表的 XML 解析与 SXSSF 序列化。只适用于本程序（SXSSF、内联字符串、单工作表）写出的汇总，
+ * 构建清单核对过汇总指纹，保证文件没被别的程序改写过；格式不符时抛出 IOException，由调用方退回通用的逐行复制。
+ * <p>
+ * 被移除学生的行直接去掉（行号留空缺，读取端按单元格内容处理）；新学生接在最后一行之后。
+ */
+final class SummaryPatcher {
+    private static final String SHEET_ENTRY = "xl/worksheets/sheet1.xml";
+    private static final byte[] SHEET_DATA = ascii("<sheetData>");
+    private static final byte[] ROW_END = ascii("</row>");
+    private static final byte[] ROW_NUMBER = ascii("<row r=\"");
+    private static final byte[] TEXT_START = ascii("<t");
+    private static final byte[] TEXT_END = ascii("</t>");
+
+    private SummaryPatcher() {
+    }
+
+    /**
+     * @param awardsJson 奖项列的 JSON 文本（与整表写出时相同）
+     * @return 被移除的学生学号（非数字学号不计）
+     */
+    static List<Long> patch(File summary, File target, Map<String, BuildList.AggregatedStudent> patch,
+                            LongObjectMap<Boolean> affected, Function<BuildList.AggregatedStudent, String> awardsJson) throws IOException {
+        List<Long> removed = new ArrayList<>();
+        try (ZipFile zip = new ZipFile(summary);
+             ZipOutputStream out = new ZipOutputStream(new BufferedOutputStream(Files.newOutputStream(target.toPath()), 64 * 1024))) {
+            if (zip.getEntry(SHEET_ENTRY) == null) throw new IOException("汇总中没有 " + SHEET_ENTRY);
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry e = entries.nextElement();
+                out.putNextEntry(new ZipEntry(e.getName()));
+                try (InputStream in = zip.getInputStream(e)) {
+                    if (SHEET_ENTRY.equals(e.getName())) {
+                        // 工作表占了汇总的绝大部分字节，用最快的压缩级别
+                        out.setLevel(Deflater.BEST_SPEED);
+                        patchSheet(new RowStream(in), out, patch, affected, awardsJson, removed);
+                        out.setLevel(Deflater.DEFAULT_COMPRESSION);
+                    } else {
+                        in.transferTo(out);
+                    }
+                }
+                out.closeEntry();
+            }
+        }
+        return removed;
+    }
+
+    private static void patchSheet(RowStream rs, OutputStream out, Map<String, BuildList.AggregatedStudent> patch,
+                                   LongObjectMap<Boolean> affected, Function<BuildList.AggregatedStudent, String> awardsJson,
+                                   List<Long> removed) throws IOException {
+        int at = rs.find(SHEET_DATA);
+        if (at < 0) throw new IOException("汇总工作表缺少 sheetData");
+        rs.copyTo(out, at + SHEET_DATA.length);
+        Set<String> written = new HashSet<>();
+        long lastRow = 0;
+        for (int end; (end = rs.find(ROW_END)) >= 0; ) {
+            int len = end + ROW_END.length;
+            long rowNumber = rs.rowNumber(len);
+            if (rowNumber < 0) throw new IOException("汇总行缺少行号");
+            lastRow = Math.max(lastRow, rowNumber);
+            String sid = rowNumber == 1 ? null : rs.firstText(len);
+            if (sid == null || !affected.containsKey(BuildManifest.studentHash(sid))) {
+                rs.copyTo(out, len);
+                continue;
+            }
+            rs.skip(len);
+            BuildList.AggregatedStudent s = patch.get(sid);
+            if (s != null) {
+                writeRow(out, rowNumber, s, awardsJson);
+                written.add(sid);
+            } else {
+                try {
+                    removed.add(Long.parseLong(sid));
+                } catch (NumberFormatException ignored) {
+                    // 非数字学号不进入数据库
+                }
+            }
+        }
+        for (BuildList.AggregatedStudent s : patch.values()) {
+            if (!written.contains(s.studentId)) writeRow(out, ++lastRow, s, awardsJson);
+        }
+        // 剩余部分："\n</sheetData>" 与其后的页面设置
+        rs.copyRest(out);
+    }
+
+    // ================= 生成行（与 SXSSF 的内联字符串写法一致） =================
+
+    private static void writeRow(OutputStream out, long r, BuildList.AggregatedStudent s,
+                                 Function<BuildList.AggregatedStudent, String> awardsJson) throws IOException {
+        StringBuilder b = new StringBuilder(256);
+        b.append("\n<row r=\"").append(r).append("\">\n");
+        inlineCell(b, 'A', r, s.studentId);
+        inlineCell(b, 'B', r, s.name);
+        inlineCell(b, 'C', r, s.clazz);
+        inlineCell(b, 'D', r, awardsJson.apply(s));
+        b.append("<c r=\"E").append(r).append("\" t=\"n\"><v>").append((double) s.awards.size()).append("</v></c></row>");
+        out.write(b.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void inlineCell(StringBuilder b, char col, long r, String value) {
+        if (value == null) return;
+        b.append("<c r=\"").append(col).append(r).append("\" t=\"inlineStr\"><is><t");
+        if (!value.isEmpty() && (Character.isWhitespace(value.charAt(0)) || Character.isWhitespace(value.charAt(value.length() - 1)))) {
+            b.append(" xml:space=\"preserve\"");
+        }
+        b.append('>');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '&' -> b.append("&amp;");
+                case '<' -> b.append("&lt;");
+                case '>' -> b.append("&gt;");
+                case '"' -> b.append("&quot;");
+                default -> b.append(c < 0x20 && c != '\t' && c != '\n' && c != '\r' ? '?' : c);
+            }
+        }
+        b.append("</t></is></c>");
+    }
+
+    private static String unescape(String s) {
+        if (s.indexOf('&') < 0) return s;
+        return s.replace("&lt;", "<").replace("&gt;", ">").replace("&quot;", "\"").replace("&apos;", "'").replace("&amp;", "&");
+    }
+
+    private static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * 工作表 XML 的字节流缓冲：按模式查找、整段复制或跳过，缓冲区只需容纳单行。
+     */
+    private static final class RowStream {
+        private final InputStream in;
+        private byte[] buf = new byte[64 * 1024];
+        private int pos;
+        private int limit;
+        private boolean eof;
+
+        RowStream(InputStream in) {
+            this.in = in;
+        }
+
+        /**
+         * 从当前位置查找模式，返回相对当前位置的偏移；流结束仍未找到返回 -1（此时余下内容都在缓冲区中）。
+         */
+        int find(byte[] p) throws IOException {
+            int searched = 0;
+            while (true) {
+                int i = indexOf(buf, pos + searched, limit, p);
+                if (i >= 0) return i - pos;
+                searched = Math.max(searched, limit - pos - p.length + 1);
+                if (!fill()) return -1;
+            }
+        }
+
+        /**
+         * 行首 &lt;row r="N"&gt; 中的行号；len 为该行（含前导空白）的长度。
+         */
+        long rowNumber(int len) {
+            int i = indexOf(buf, pos, pos + len, ROW_NUMBER);
+            if (i < 0) return -1;
+            long n = 0;
+            int digits = 0;
+            for (i += ROW_NUMBER.length; i < pos + len && buf[i] >= '0' && buf[i] <= '9'; i++, digits++) n = n * 10 + (buf[i] - '0');
+            return digits == 0 ? -1 : n;
+        }
+
+        /**
+         * 行中第一个 &lt;t&gt; 的文本（学号列），没有时返回 null。
+         */
+        String firstText(int len) {
+            int end = pos + len;
+            int i = indexOf(buf, pos, end, TEXT_START);
+            while (i >= 0 && i + TEXT_START.length < end && buf[i + TEXT_START.length] != '>' && buf[i + TEXT_START.length] != ' ') {
+                i = indexOf(buf, i + 1, end, TEXT_START);
+            }
+            if (i < 0) return null;
+            int start = indexOf(buf, i, end, new byte[]{'>'});
+            int close = indexOf(buf, start, end, TEXT_END);
+            if (start < 0 || close < 0) return null;
+            return unescape(new String(buf, start + 1, close - start - 1, StandardCharsets.UTF_8)).trim();
+        }
+
+        void copyTo(OutputStream out, int len) throws IOException {
+            out.write(buf, pos, len);
+            pos += len;
+        }
+
+        void skip(int len) {
+            pos += len;
+        }
+
+        void copyRest(OutputStream out) throws IOException {
+            do {
+                out.write(buf, pos, limit - pos);
+                pos = limit;
+            } while (fill());
+        }
+
+        private boolean fill() throws IOException {
+            if (eof) return false;
+            if (pos > 0) {
+                System.arraycopy(buf, pos, buf, 0, limit - pos);
+                limit -= pos;
+                pos = 0;
+            }
+            if (limit == buf.length) buf = Arrays.copyOf(buf, buf.length * 2);
+            int n = in.read(buf, limit, buf.length - limit);
+            if (n < 0) {
+                eof = true;
+                return false;
+            }
+            limit += n;
+            return true;
+        }
+
+        private static int indexOf(byte[] b, int from, int to, byte[] p) {
+            outer:
+            for (int i = Math.max(from, 0); i + p.length <= to; i++) {
+                for (int k = 0; k < p.length; k++) {
+                    if (b[i + k] != p[k]) continue outer;
+                }
+                return i;
+            }
+            return -1;
+        }
+    }
+}
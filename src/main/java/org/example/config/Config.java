@@ -1,5 +1,8 @@
 package org.example.config;
 
+import java.util.List;
+import java.util.Map;
+
 public final class Config {
     private Config() {
     }
@@ -7,15 +10,71 @@ public final class Config {
     // 文件路径
     public static final String RAW_SOURCE_PATH = "Raw_Source.xlsx";
     public static final String AWARDS_SUMMARY_PATH = "Awards_Summary.xlsx";
+    public static final String BUILD_MANIFEST_PATH = "Awards_Summary.manifest"; // 汇总构建清单（源文件逐行哈希），用于增量构建
     public static final String STUDENT_AWARDS_PATH = "Student_Awards.xlsx";
     public static final String DB_PATH = "student.db";
     public static final String NULL_TEMPLATE_FILE = "null.xlsx"; // 修正与实际文件名一致
 
+    // Excel 写回缓冲：脏行达到阈值或定时器到期时合并落盘
+    public static final long EXCEL_FLUSH_INTERVAL_MS = 2000;
+    public static final int EXCEL_FLUSH_THRESHOLD = 200;
+    // 流式写 Excel (SXSSF) 时内存中保留的行数
+    public static final int EXCEL_STREAM_ROW_WINDOW = 100;
+    // 汇总构建：聚合数据估算超过该字节数（64MB 与最大堆的四分之一取小）时按学号排序溢写到临时文件，最后归并输出
+    public static final long BUILD_AGGREGATE_MEMORY_BUDGET = Math.min(64L * 1024 * 1024, Runtime.getRuntime().maxMemory() / 4);
+    // 溢写段归并的扇入上限（同时打开的段文件数），超出时先分组做中间归并
+    public static final int BUILD_SPILL_MERGE_FAN_IN = 64;
+    // 汇总构建：多个源文件并行解析的线程数
+    public static final int BUILD_PARSE_PARALLELISM = Runtime.getRuntime().availableProcessors();
+    // 汇总构建：同一学生重复提交的奖项（奖项名与证书图片规范化后相同）只保留第一次 / 去重报告中保留明细的条数上限
+    public static final boolean BUILD_DEDUP_AWARDS = true;
+    public static final int BUILD_DEDUP_DETAIL_LIMIT = 10_000;
+
+    // SQLite：WAL 模式下 NORMAL 只在检查点时 fsync，崩溃不会损坏库，最多丢失最后几次提交
+    public static final String DB_SYNCHRONOUS = "NORMAL";
+    public static final int DB_BUSY_TIMEOUT_MS = 5000;
+    public static final int DB_BATCH_SIZE = 1000; // 批量导入每次 executeBatch 的记录数
+
+    // 评分追加日志：文件为数据库路径加该后缀（每个数据库一份）/ 组提交窗口（事件写库后由持久化流水线清空）
+    public static final String JOURNAL_SUFFIX = ".journal";
+    public static final String LEGACY_JOURNAL_PATH = "score_journal.bin"; // 旧版全局 journal，仅用于迁移到默认数据库
+    public static final long JOURNAL_GROUP_COMMIT_MS = 2;
+
+    // 异步持久化流水线：有界队列容量（满时评分阻塞）/ 写线程单批最多取出的变更数
+    public static final int PERSIST_QUEUE_CAPACITY = 1024;
+    public static final int PERSIST_MAX_BATCH = 500;
+
+    // 快照导出：默认紧凑 JSON（缩进会使文件增大约一半）/ 文件写缓冲大小
+    public static final boolean SNAPSHOT_PRETTY_PRINT = false;
+    public static final int SNAPSHOT_IO_BUFFER = 64 * 1024;
+    // 快照流式导入：每批记录数（一批一个事务）/ 解析线程与写库线程之间的队列容量（批）
+    public static final int SNAPSHOT_IMPORT_BATCH = 2000;
+    public static final int SNAPSHOT_IMPORT_QUEUE = 4;
+    // 二进制快照每个校验块包含的记录数
+    public static final int SNAPSHOT_BLOCK_RECORDS = 1000;
+    // 快照分块压缩：每块未压缩字节数 / 同时在途（压缩或解压中）的块数
+    public static final int SNAPSHOT_COMPRESS_BLOCK = 256 * 1024;
+    public static final int SNAPSHOT_COMPRESS_WINDOW = Math.max(2, Runtime.getRuntime().availableProcessors() * 2);
+    // 多快照合并：每个文件的预读批大小 / 预读队列容量（批），合并数十个文件时在途记录数仍有限
+    public static final int SNAPSHOT_MERGE_BATCH = 256;
+    public static final int SNAPSHOT_MERGE_QUEUE = 2;
+    // 合并报告中保留明细的冲突条数上限（总数照常统计）
+    public static final int MERGE_CONFLICT_DETAIL_LIMIT = 10_000;
+
     // 随机生成控制
     public static final boolean USE_RANDOM_DATA = true;
     public static final int QUANTITY = 10;
     public static final int MAX_AWARDS = 20;
     public static final boolean RANDOM_AWARDS_COUNT = true;
+    // 奖项数分布：RANDOM_AWARDS_COUNT 为 false 时固定 MAX_AWARDS；否则均值为 0 时在 1..MAX_AWARDS 均匀分布，大于 0 时按该均值的几何分布（截断到 MAX_AWARDS，少数学生奖项很多的长尾）
+    public static final double RANDOM_AWARDS_MEAN = 0;
+    // 随机种子：0 表示每次不同（实际使用的种子写入日志，可用 BuildNull 命令行参数复现）
+    public static final long RANDOM_SEED = 0L;
+    // 并行生成：每个分区的行数（同一种子下输出只取决于分区大小，与线程数无关）/ 同时在途的分区数
+    public static final int RANDOM_GEN_PARTITION_ROWS = 8192;
+    public static final int RANDOM_GEN_WINDOW = Math.max(2, Runtime.getRuntime().availableProcessors() * 2);
+    // 每个工作表最多写入的学生行数（xlsx 单表上限 1048576 行），超出时续写到 Sheet2、Sheet3…
+    public static final int RANDOM_GEN_ROWS_PER_SHEET = 1_000_000;
 
     // 工作表
     public static final String SHEET_MAIN = "Sheet1";
@@ -59,6 +118,13 @@ public final class Config {
     public static final String[] RANDOM_AWARD_GRADE_POOL = {
             "国奖", "省奖", "校奖", "市奖", "院奖"
     };
+    // 各等级的抽取权重（与 RANDOM_AWARD_GRADE_POOL 一一对应）
+    public static final int[] RANDOM_AWARD_GRADE_WEIGHTS = {1, 1, 1, 1, 1};
+    // 证书类奖项（对应“证书”分类）在全部奖项中的比例
+    public static final double RANDOM_CERT_RATIO = 0.0;
+    public static final String[] RANDOM_CERT_NAME_POOL = {
+            "英语四级证书", "英语六级证书", "计算机二级证书", "软考中级证书", "普通话二甲证书"
+    };
 
     // 分类标签与积分
     public static final String CATEGORY_CERT = "证书";
@@ -74,6 +140,26 @@ public final class Config {
     public static final double SCORE_SCHOOL = 0.3;
     public static final double SCORE_COLLEGE = 0.2;
     public static final double SCORE_NONE = 0.0;
+    // 积分定点化倍数：各分类积分乘以该值后以整数累加（0.2 分 -> 200）
+    public static final int SCORE_SCALE = 1000;
+
+    // 分类 -> 积分 / 菜单显示顺序
+    public static final Map<String, Double> SCORE_MAP = Map.of(
+            CATEGORY_CERT, SCORE_CERT,
+            CATEGORY_NATIONAL, SCORE_NATIONAL,
+            CATEGORY_PROVINCE_CITY, SCORE_PROVINCE_CITY,
+            CATEGORY_SCHOOL, SCORE_SCHOOL,
+            CATEGORY_COLLEGE, SCORE_COLLEGE,
+            CATEGORY_NONE, SCORE_NONE
+    );
+    public static final List<String> CATEGORY_KEYS = List.of(
+            CATEGORY_CERT,
+            CATEGORY_NATIONAL,
+            CATEGORY_PROVINCE_CITY,
+            CATEGORY_SCHOOL,
+            CATEGORY_COLLEGE,
+            CATEGORY_NONE
+    );
 
     // AwardDialog 尺寸与缩放
     public static final double IMAGE_MIN_PADDING = 40.0;
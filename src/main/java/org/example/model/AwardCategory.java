@@ -0,0 +1,93 @@
+package org.example.model;
+
+import org.example.config.Config;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 奖项分类。记录内以 1 字节编码 (code) 保存，标签文本与积分只在枚举中存一份。
+ * 积分以定点整数 (points, 单位 1/Config.SCORE_SCALE 分) 参与累加，总分由各分类计数乘积分得出，不会累积浮点误差。
+ * UNSCORED 表示尚未评分（标签为空串）；OTHER 表示不在配置中的旧/外部标签，文本另存，积分按 0 计。
+ */
+public enum AwardCategory {
+    UNSCORED("", 0.0),
+    CERT(Config.CATEGORY_CERT, Config.SCORE_CERT),
+    NATIONAL(Config.CATEGORY_NATIONAL, Config.SCORE_NATIONAL),
+    PROVINCE_CITY(Config.CATEGORY_PROVINCE_CITY, Config.SCORE_PROVINCE_CITY),
+    SCHOOL(Config.CATEGORY_SCHOOL, Config.SCORE_SCHOOL),
+    COLLEGE(Config.CATEGORY_COLLEGE, Config.SCORE_COLLEGE),
+    NONE(Config.CATEGORY_NONE, Config.SCORE_NONE),
+    OTHER("", 0.0);
+
+    private static final AwardCategory[] BY_CODE = values();
+    private static final Map<String, AwardCategory> BY_LABEL = new HashMap<>();
+
+    static {
+        for (AwardCategory c : BY_CODE) {
+            if (c != OTHER) BY_LABEL.put(c.label, c);
+        }
+    }
+
+    private final String label;
+    private final long points;
+
+    AwardCategory(String label, double score) {
+        this.label = label;
+        this.points = Math.round(score * Config.SCORE_SCALE);
+    }
+
+    /**
+     * 分类总数（计数数组长度）。
+     */
+    public static int count() {
+        return BY_CODE.length;
+    }
+
+    public byte code() {
+        return (byte) ordinal();
+    }
+
+    public String label() {
+        return label;
+    }
+
+    /**
+     * 定点积分（Config.SCORE_SCALE 倍）。
+     */
+    public long points() {
+        return points;
+    }
+
+    public double score() {
+        return toScore(points);
+    }
+
+    public static double toScore(long points) {
+        return points / (double) Config.SCORE_SCALE;
+    }
+
+    public boolean isScored() {
+        return this != UNSCORED;
+    }
+
+    /**
+     * 证书单独计入证书总分，其余分类计入奖项总分。
+     */
+    public boolean isCertificate() {
+        return this == CERT;
+    }
+
+    public static AwardCategory fromCode(byte code) {
+        return BY_CODE[code];
+    }
+
+    /**
+     * 标签 -> 分类；null / 空串为 UNSCORED，未知标签为 OTHER。
+     */
+    public static AwardCategory fromLabel(String label) {
+        if (label == null) return UNSCORED;
+        AwardCategory c = BY_LABEL.get(label);
+        return c != null ? c : OTHER;
+    }
+}
@@ -1,20 +1,32 @@
 package org.example.model;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
 /**
  * 学生奖项记录
+ * 奖项按列存放：名称、图片链接各一个数组，分类为 1 字节编码，修改标签只写一个字节、不分配对象。
+ * 每个分类维护一个计数，证书/奖项总分与已录入数都由计数推导（O(分类数)），不单独存储，因此不会漂移。
  */
 public class StudentAwardRecord {
+    private static final String[] NO_STRINGS = new String[0];
+    private static final byte[] NO_CODES = new byte[0];
+
     private final long studentId;
     private final String name;
     private final String className;
-    private final List<Map<String, String>> awards = new ArrayList<>();
-    private double certTotalPoints = 0.0;
-    private double awardTotalPoints = 0.0;
-    private int recordedAwardCount = 0;
+    private String[] awardNames = NO_STRINGS;
+    private String[] awardImages = NO_STRINGS;
+    private byte[] awardCategories = NO_CODES;
+    private int awardCount;
+    // 不在配置中的标签文本（AwardCategory.OTHER），正常数据中为 null
+    private Map<Integer, String> otherLabels;
+    // 按 AwardCategory.code() 下标的奖项计数
+    private final int[] categoryCounts = new int[AwardCategory.count()];
 
     public StudentAwardRecord(long studentId, String name, String className) {
         this.studentId = studentId;
@@ -23,11 +35,63 @@ public class StudentAwardRecord {
     }
 
     public void addAward(String awardName, String imageUrl, String category) {
-        this.awards.add(Map.of("name", awardName, "image", imageUrl, "category", category));
+        if (awardCount == awardNames.length) {
+            int capacity = Math.max(4, awardCount * 2);
+            awardNames = Arrays.copyOf(awardNames, capacity);
+            awardImages = Arrays.copyOf(awardImages, capacity);
+            awardCategories = Arrays.copyOf(awardCategories, capacity);
+        }
+        awardNames[awardCount] = awardName;
+        awardImages[awardCount] = imageUrl;
+        awardCategories[awardCount] = AwardCategory.UNSCORED.code();
+        categoryCounts[AwardCategory.UNSCORED.ordinal()]++;
+        awardCount++;
+        setAwardLabel(awardCount - 1, category);
+    }
+
+    public int getAwardCount() {
+        return awardCount;
+    }
+
+    public String getAwardName(int i) {
+        return awardNames[checkIndex(i)];
+    }
+
+    public String getAwardImage(int i) {
+        return awardImages[checkIndex(i)];
+    }
+
+    public AwardCategory getAwardCategory(int i) {
+        return AwardCategory.fromCode(awardCategories[checkIndex(i)]);
     }
 
-    public List<Map<String, String>> getAwards() {
-        return awards;
+    /**
+     * 奖项列表的 Map 形式（name / image / category），仅用于 JSON 序列化等需要兼容旧格式的场合，每次调用都会新建。
+     */
+    public List<Map<String, String>> toAwardMaps() {
+        List<Map<String, String>> list = new ArrayList<>(awardCount);
+        for (int i = 0; i < awardCount; i++) {
+            Map<String, String> m = new LinkedHashMap<>(4);
+            m.put("name", awardNames[i]);
+            m.put("image", awardImages[i]);
+            m.put("category", getAwardLabel(i));
+            list.add(m);
+        }
+        return list;
+    }
+
+    /**
+     * 独立副本（奖项数组复制，字符串共享）。
+     */
+    public StudentAwardRecord copy() {
+        StudentAwardRecord r = new StudentAwardRecord(studentId, name, className);
+        r.awardNames = Arrays.copyOf(awardNames, awardCount);
+        r.awardImages = Arrays.copyOf(awardImages, awardCount);
+        r.awardCategories = Arrays.copyOf(awardCategories, awardCount);
+        r.awardCount = awardCount;
+        if (otherLabels != null) r.otherLabels = new HashMap<>(otherLabels);
+        System.arraycopy(categoryCounts, 0, r.categoryCounts, 0, categoryCounts.length);
+        return r;
     }
 
     public long getStudentId() {
@@ -42,58 +106,85 @@ public class StudentAwardRecord {
         return className;
     }
 
-    public double getCertTotalPoints() {
-        return certTotalPoints;
+    public int getCategoryCount(AwardCategory c) {
+        return categoryCounts[c.ordinal()];
     }
 
-    public double getAwardTotalPoints() {
-        return awardTotalPoints;
+    /**
+     * 证书总分（定点）：证书计数 × 证书积分。
+     */
+    public long getCertTotalFixedPoints() {
+        return categoryCounts[AwardCategory.CERT.ordinal()] * AwardCategory.CERT.points();
     }
 
-    public void setCertTotalPoints(double certTotalPoints) {
-        this.certTotalPoints = certTotalPoints;
+    /**
+     * 奖项总分（定点）：除证书外各分类计数 × 积分之和。
+     */
+    public long getAwardTotalFixedPoints() {
+        long sum = 0;
+        for (AwardCategory c : AwardCategory.values()) {
+            if (!c.isCertificate()) sum += categoryCounts[c.ordinal()] * c.points();
+        }
+        return sum;
     }
 
-    public void setAwardTotalPoints(double awardTotalPoints) {
-        this.awardTotalPoints = awardTotalPoints;
+    public double getCertTotalPoints() {
+        return AwardCategory.toScore(getCertTotalFixedPoints());
     }
 
-    public int getRecordedAwardCount() {
-        return recordedAwardCount;
+    public double getAwardTotalPoints() {
+        return AwardCategory.toScore(getAwardTotalFixedPoints());
     }
 
-    public void setRecordedAwardCount(int count) {
-        this.recordedAwardCount = count;
+    public int getRecordedAwardCount() {
+        return awardCount - categoryCounts[AwardCategory.UNSCORED.ordinal()];
     }
 
-    public void addCertTotalPoints(double d) {
-        certTotalPoints += d;
+    /**
+     * 按各奖项的分类编码重建计数（批量一致性校验用，正常增量维护下结果不变）。
+     * @return 重建前后计数是否不同
+     */
+    public boolean recomputeTotals() {
+        int[] fresh = new int[categoryCounts.length];
+        for (int i = 0; i < awardCount; i++) fresh[awardCategories[i]]++;
+        boolean changed = !Arrays.equals(fresh, categoryCounts);
+        System.arraycopy(fresh, 0, categoryCounts, 0, fresh.length);
+        return changed;
     }
 
-    public void addAwardTotalPoints(double d) {
-        awardTotalPoints += d;
+    public String getAwardLabel(int i) {
+        if (i < 0 || i >= awardCount) return "";
+        AwardCategory c = AwardCategory.fromCode(awardCategories[i]);
+        if (c == AwardCategory.OTHER) return otherLabels.get(i);
+        return c.label();
     }
 
-    public void incrementRecordedAwardCount() {
-        recordedAwardCount++;
+    public void setAwardLabel(int i, String l) {
+        if (i < 0 || i >= awardCount) return;
+        AwardCategory c = AwardCategory.fromLabel(l);
+        if (c == AwardCategory.OTHER) {
+            if (otherLabels == null) otherLabels = new HashMap<>();
+            otherLabels.put(i, l);
+        } else if (otherLabels != null) {
+            otherLabels.remove(i);
+        }
+        setCode(i, c);
     }
 
-    public void decrementRecordedAwardCount() {
-        if (recordedAwardCount > 0) recordedAwardCount--;
+    public void setAwardCategory(int i, AwardCategory c) {
+        if (c == AwardCategory.OTHER) throw new IllegalArgumentException("OTHER 需通过 setAwardLabel 指定标签文本");
+        if (otherLabels != null) otherLabels.remove(checkIndex(i));
+        setCode(checkIndex(i), c);
     }
 
-    public String getAwardLabel(int i) {
-        if (i >= 0 && i < awards.size()) {
-            return awards.get(i).get("category");
-        }
-        return "";
+    private void setCode(int i, AwardCategory c) {
+        categoryCounts[awardCategories[i]]--;
+        categoryCounts[c.ordinal()]++;
+        awardCategories[i] = c.code();
     }
 
-    public void setAwardLabel(int i, String l) {
-        if (i >= 0 && i < awards.size()) {
-            Map<String, String> award = new java.util.HashMap<>(awards.get(i));
-            award.put("category", l);
-            awards.set(i, award);
-        }
+    private int checkIndex(int i) {
+        if (i < 0 || i >= awardCount) throw new IndexOutOfBoundsException("奖项序号越界: " + i + " / " + awardCount);
+        return i;
     }
 }
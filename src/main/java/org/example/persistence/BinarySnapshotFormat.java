@@ -0,0 +1,201 @@
+package org.example.persistence;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+
+/**
+ * 二进制快照格式（.snap）的常量与编解码工具。
+ * <pre>
+ * 文件 := "SASN" 格式版本(u8) 头 字典块 记录块* 结束标记(varint 0)
+ * 头   := meta版本(varint) 生成时间(varlong) 记录总数(varint) 每块记录数(varint) 快照编号(字符串) 基准快照编号(字符串, 全量为空)
+ *         （meta 版本 1 没有两个编号字段）
+ * 块   := 条目数(varint) 负载字节数(varint) 负载 CRC32(负载, 大端 u32)
+ * 字典块负载 := 字符串*                       （班级、奖项名称、图片链接、非标准标签，按编号顺序）
+ * 记录       := 学号差值(zigzag varlong, 与块内上一条相比) 姓名(字符串) 班级编号(varint)
+ *               奖项数(varint) { 名称编号(varint) 图片编号(varint) 分类码(u8) [标签编号(varint), 仅 OTHER] }*
+ * 字符串     := UTF-8 字节数(varint) UTF-8 字节
+ * </pre>
+ * 结束标记之后可跟尾部索引（BinarySnapshotIndex），供选择性导入定位记录块。
+ * 汇总字段不写入，导入时按标签推导。每块独立校验，损坏的文件在读到该块时报错。
+ */
+final class BinarySnapshotFormat {
+    static final byte[] MAGIC = {'S', 'A', 'S', 'N'};
+    static final int FORMAT_VERSION = 1;
+    static final int META_VERSION = 2;
+    // 单块负载上限，超出视为文件损坏（避免按错误长度分配数组）
+    static final int MAX_BLOCK_BYTES = 64 * 1024 * 1024;
+
+    private BinarySnapshotFormat() {}
+
+    /**
+     * 文件开头 4 字节是否为二进制快照魔数。
+     */
+    static boolean isBinary(byte[] head) {
+        if (head.length < MAGIC.length) return false;
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (head[i] != MAGIC[i]) return false;
+        }
+        return true;
+    }
+
+    static long zigZag(long v) {
+        return (v << 1) ^ (v >> 63);
+    }
+
+    static long unZigZag(long v) {
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    // ================= 写：可复用的块缓冲 =================
+
+    /**
+     * 块负载缓冲：直接在内部数组上计算 CRC，写出后 reset 复用。
+     */
+    static final class BlockBuffer extends ByteArrayOutputStream {
+        private final CRC32 crc = new CRC32();
+
+        BlockBuffer(int initialSize) {
+            super(initialSize);
+        }
+
+        void writeVarLong(long v) {
+            while ((v & ~0x7FL) != 0) {
+                write((int) ((v & 0x7F) | 0x80));
+                v >>>= 7;
+            }
+            write((int) v);
+        }
+
+        void writeVarInt(int v) {
+            writeVarLong(v & 0xFFFFFFFFL);
+        }
+
+        void writeString(String s) {
+            byte[] bytes = (s == null ? "" : s).getBytes(StandardCharsets.UTF_8);
+            writeVarInt(bytes.length);
+            write(bytes, 0, bytes.length);
+        }
+
+        /**
+         * 以块结构写出当前内容并清空缓冲。
+         */
+        void writeBlockTo(OutputStream out, int itemCount) throws IOException {
+            BinarySnapshotFormat.writeVarLong(out, itemCount);
+            BinarySnapshotFormat.writeVarLong(out, count);
+            out.write(buf, 0, count);
+            crc.reset();
+            crc.update(buf, 0, count);
+            writeInt(out, (int) crc.getValue());
+            reset();
+        }
+    }
+
+    static void writeVarLong(OutputStream out, long v) throws IOException {
+        while ((v & ~0x7FL) != 0) {
+            out.write((int) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        out.write((int) v);
+    }
+
+    static void writeString(OutputStream out, String s) throws IOException {
+        byte[] bytes = (s == null ? "" : s).getBytes(StandardCharsets.UTF_8);
+        writeVarLong(out, bytes.length);
+        out.write(bytes);
+    }
+
+    private static void writeInt(OutputStream out, int v) throws IOException {
+        out.write(v >>> 24);
+        out.write(v >>> 16);
+        out.write(v >>> 8);
+        out.write(v);
+    }
+
+    // ================= 读：流上的块头与块内游标 =================
+
+    static long readVarLong(InputStream in) throws IOException {
+        long v = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.read();
+            if (b < 0) throw new EOFException("快照文件意外结束");
+            v |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return v;
+        }
+        throw new IOException("varint 过长, 快照文件已损坏");
+    }
+
+    static String readString(InputStream in) throws IOException {
+        long len = readVarLong(in);
+        if (len < 0 || len > 1024) throw new IOException("快照头字符串长度异常: " + len);
+        byte[] bytes = in.readNBytes((int) len);
+        if (bytes.length != len) throw new EOFException("快照文件意外结束");
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 读取一个块的负载并校验 CRC。
+     * @param index 块序号（仅用于错误信息）
+     */
+    static Cursor readBlockPayload(InputStream in, int index) throws IOException {
+        long len = readVarLong(in);
+        if (len < 0 || len > MAX_BLOCK_BYTES) throw new IOException("第 " + index + " 块长度异常: " + len);
+        byte[] data = in.readNBytes((int) len);
+        byte[] crcBytes = in.readNBytes(4);
+        if (data.length != len || crcBytes.length != 4) throw new EOFException("快照文件意外结束 (第 " + index + " 块)");
+        int expected = ((crcBytes[0] & 0xFF) << 24) | ((crcBytes[1] & 0xFF) << 16) | ((crcBytes[2] & 0xFF) << 8) | (crcBytes[3] & 0xFF);
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        if ((int) crc.getValue() != expected) throw new IOException("快照数据块校验失败: 第 " + index + " 块");
+        return new Cursor(data);
+    }
+
+    /**
+     * 块负载上的顺序读取游标。
+     */
+    static final class Cursor {
+        private final byte[] data;
+        private int pos;
+
+        Cursor(byte[] data) {
+            this.data = data;
+        }
+
+        boolean hasRemaining() {
+            return pos < data.length;
+        }
+
+        byte readByte() throws IOException {
+            if (pos >= data.length) throw new EOFException("块内数据不足");
+            return data[pos++];
+        }
+
+        long readVarLong() throws IOException {
+            long v = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = readByte();
+                v |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) return v;
+            }
+            throw new IOException("varint 过长, 快照文件已损坏");
+        }
+
+        int readVarInt() throws IOException {
+            long v = readVarLong();
+            if (v < 0 || v > Integer.MAX_VALUE) throw new IOException("数值超出范围: " + v);
+            return (int) v;
+        }
+
+        String readString() throws IOException {
+            int len = readVarInt();
+            if (len > data.length - pos) throw new EOFException("块内字符串越界");
+            String s = new String(data, pos, len, StandardCharsets.UTF_8);
+            pos += len;
+            return s;
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package org.example.persistence;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 二进制快照的尾部索引：每个记录块一项（块在文件中的偏移、块内最小与最大学号、块内出现的班级编号），
+ * 选择性导入据此直接定位到可能命中的块。索引写在结束标记之后，顺序读取时不会读到，旧版读取端不受影响。
+ * <pre>
+ * 索引块负载 := { 块偏移(varlong) 最小学号(varlong) 最大学号-最小学号(varlong) 班级数(varint) 班级编号(varint)* }*
+ * 文件尾     := 索引块起始偏移(u64 大端) "SAIX"
+ * </pre>
+ */
+final class BinarySnapshotIndex {
+    static final byte[] MAGIC = {'S', 'A', 'I', 'X'};
+    static final int TRAILER_LEN = 8 + MAGIC.length;
+
+    /**
+     * 一个记录块的索引项。
+     */
+    static final class Entry {
+        final long offset;
+        final long minId;
+        final long maxId;
+        final int[] classIds;
+
+        Entry(long offset, long minId, long maxId, int[] classIds) {
+            this.offset = offset;
+            this.minId = minId;
+            this.maxId = maxId;
+            this.classIds = classIds;
+        }
+    }
+
+    private final List<Entry> entries = new ArrayList<>();
+
+    void add(long offset, long minId, long maxId, int[] classIds) {
+        entries.add(new Entry(offset, minId, maxId, classIds));
+    }
+
+    List<Entry> entries() {
+        return entries;
+    }
+
+    /**
+     * 以块结构写出索引与文件尾。
+     * @param position 索引块在文件中的起始偏移（即当前已写出的字节数）
+     */
+    void writeTo(OutputStream out, long position) throws IOException {
+        BinarySnapshotFormat.BlockBuffer buf = new BinarySnapshotFormat.BlockBuffer(entries.size() * 16 + 16);
+        for (Entry e : entries) {
+            buf.writeVarLong(e.offset);
+            buf.writeVarLong(e.minId);
+            buf.writeVarLong(e.maxId - e.minId);
+            buf.writeVarInt(e.classIds.length);
+            for (int id : e.classIds) buf.writeVarInt(id);
+        }
+        buf.writeBlockTo(out, entries.size());
+        byte[] trailer = ByteBuffer.allocate(TRAILER_LEN).putLong(position).put(MAGIC).array();
+        out.write(trailer);
+    }
+
+    /**
+     * 读取文件尾的索引；文件没有索引（旧版或其它程序写出）时返回 null。
+     */
+    static BinarySnapshotIndex read(FileChannel ch) throws IOException {
+        long size = ch.size();
+        if (size < TRAILER_LEN) return null;
+        ByteBuffer trailer = ByteBuffer.allocate(TRAILER_LEN);
+        readFully(ch, trailer, size - TRAILER_LEN);
+        trailer.flip();
+        long position = trailer.getLong();
+        for (byte b : MAGIC) {
+            if (trailer.get() != b) return null;
+        }
+        if (position < 0 || position >= size - TRAILER_LEN) throw new IOException("快照索引偏移异常: " + position);
+        long len = size - TRAILER_LEN - position;
+        if (len > BinarySnapshotFormat.MAX_BLOCK_BYTES) throw new IOException("快照索引过大: " + len);
+        ByteBuffer data = ByteBuffer.allocate((int) len);
+        readFully(ch, data, position);
+        ByteArrayInputStream in = new ByteArrayInputStream(data.array());
+        int count = (int) BinarySnapshotFormat.readVarLong(in);
+        BinarySnapshotFormat.Cursor c = BinarySnapshotFormat.readBlockPayload(in, -1);
+        BinarySnapshotIndex index = new BinarySnapshotIndex();
+        for (int i = 0; i < count; i++) {
+            long offset = c.readVarLong();
+            long minId = c.readVarLong();
+            long maxId = minId + c.readVarLong();
+            int[] classIds = new int[c.readVarInt()];
+            for (int k = 0; k < classIds.length; k++) classIds[k] = c.readVarInt();
+            index.add(offset, minId, maxId, classIds);
+        }
+        return index;
+    }
+
+    private static void readFully(FileChannel ch, ByteBuffer buf, long position) throws IOException {
+        while (buf.hasRemaining()) {
+            if (ch.read(buf, position + buf.position()) < 0) throw new IOException("快照索引不完整");
+        }
+    }
+}
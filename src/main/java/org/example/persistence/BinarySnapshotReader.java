@@ -0,0 +1,160 @@
+package org.example.persistence;
+
+import org.example.model.AwardCategory;
+import org.example.model.StudentAwardRecord;
+import org.example.util.StringDictionary;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 逐块读取二进制快照：构造时校验魔数与版本并载入字典块，之后每次解码一整块、逐条返回。
+ * 字典中的字符串经 dict 驻留，导入的记录与其它加载路径共享实例。
+ * openIndexed 打开的读取器只按尾部索引定位读取可能命中筛选条件的块（块内记录仍需调用方逐条过滤）。
+ */
+final class BinarySnapshotReader implements SnapshotRecordReader {
+    private InputStream in;
+    private final String[] strings;
+    private final SnapshotMeta meta;
+
+    // 选择性读取：文件通道与待读块的索引项（顺序读取时均为 null）
+    private FileChannel channel;
+    private List<BinarySnapshotIndex.Entry> selected;
+    private int nextSelected;
+
+    private BinarySnapshotFormat.Cursor block;
+    private int remainingInBlock;
+    private int blockIndex = 1;
+    private long prevId;
+    private boolean finished;
+
+    BinarySnapshotReader(InputStream in, StringDictionary dict) throws IOException {
+        this.in = in;
+        byte[] magic = in.readNBytes(BinarySnapshotFormat.MAGIC.length);
+        if (!BinarySnapshotFormat.isBinary(magic)) throw new IOException("不是二进制快照文件");
+        int version = in.read();
+        if (version != BinarySnapshotFormat.FORMAT_VERSION) throw new IOException("不支持的二进制快照版本: " + version);
+        long metaVersion = BinarySnapshotFormat.readVarLong(in);
+        if (metaVersion < 1 || metaVersion > BinarySnapshotFormat.META_VERSION) throw new IOException("不支持的快照 meta 版本: " + metaVersion);
+        long generatedAt = BinarySnapshotFormat.readVarLong(in);
+        int declaredCount = (int) BinarySnapshotFormat.readVarLong(in);
+        BinarySnapshotFormat.readVarLong(in); // 每块记录数，顺序读取时不需要
+        if (metaVersion >= 2) {
+            String snapshotId = BinarySnapshotFormat.readString(in);
+            this.meta = new SnapshotMeta(snapshotId, BinarySnapshotFormat.readString(in), generatedAt, declaredCount);
+        } else {
+            this.meta = new SnapshotMeta(null, null, generatedAt, declaredCount);
+        }
+
+        int dictSize = (int) BinarySnapshotFormat.readVarLong(in);
+        BinarySnapshotFormat.Cursor c = BinarySnapshotFormat.readBlockPayload(in, 0);
+        this.strings = new String[dictSize];
+        for (int i = 0; i < dictSize; i++) {
+            strings[i] = dict.intern(c.readString());
+        }
+    }
+
+    /**
+     * 按尾部索引只读取 file 中可能含 filter 命中记录的块；文件不是带索引的二进制快照时返回 null，由调用方退回顺序扫描。
+     */
+    static BinarySnapshotReader openIndexed(File file, SnapshotFilter filter, StringDictionary dict) throws IOException {
+        FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            ByteBuffer head = ByteBuffer.allocate(BinarySnapshotFormat.MAGIC.length);
+            ch.read(head, 0);
+            BinarySnapshotIndex index = BinarySnapshotFormat.isBinary(head.array()) ? BinarySnapshotIndex.read(ch) : null;
+            if (index == null) {
+                ch.close();
+                return null;
+            }
+            BinarySnapshotReader reader = new BinarySnapshotReader(new BufferedInputStream(Channels.newInputStream(ch.position(0)), 8 * 1024), dict);
+            reader.channel = ch;
+            reader.selected = new ArrayList<>();
+            List<String> classes = new ArrayList<>();
+            for (BinarySnapshotIndex.Entry e : index.entries()) {
+                classes.clear();
+                for (int id : e.classIds) classes.add(reader.string(id));
+                if (filter.mayContain(e.minId, e.maxId, classes)) reader.selected.add(e);
+            }
+            return reader;
+        } catch (IOException | RuntimeException e) {
+            ch.close();
+            throw e;
+        }
+    }
+
+    /**
+     * 选择性读取时命中的块数（顺序读取时为 -1）。
+     */
+    int selectedBlocks() {
+        return selected == null ? -1 : selected.size();
+    }
+
+    @Override
+    public SnapshotMeta meta() {
+        return meta;
+    }
+
+    @Override
+    public StudentAwardRecord next() throws IOException {
+        if (remainingInBlock == 0 && !nextBlock()) return null;
+        remainingInBlock--;
+        BinarySnapshotFormat.Cursor c = block;
+        long sid = prevId + BinarySnapshotFormat.unZigZag(c.readVarLong());
+        prevId = sid;
+        StudentAwardRecord r = new StudentAwardRecord(sid, c.readString(), string(c.readVarInt()));
+        int awards = c.readVarInt();
+        for (int i = 0; i < awards; i++) {
+            String name = string(c.readVarInt());
+            String image = string(c.readVarInt());
+            byte code = c.readByte();
+            if (code < 0 || code >= AwardCategory.count()) throw new IOException("未知分类码: " + code);
+            AwardCategory category = AwardCategory.fromCode(code);
+            String label = category == AwardCategory.OTHER ? string(c.readVarInt()) : category.label();
+            r.addAward(name, image, label);
+        }
+        if (remainingInBlock == 0 && c.hasRemaining()) throw new IOException("第 " + (blockIndex - 1) + " 块存在多余数据");
+        return r;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+        if (channel != null) channel.close();
+    }
+
+    private boolean nextBlock() throws IOException {
+        if (finished) return false;
+        if (selected != null) {
+            if (nextSelected == selected.size()) {
+                finished = true;
+                return false;
+            }
+            // 定位到下一个命中的块；通道流不能关闭（会关闭通道），直接丢弃
+            channel.position(selected.get(nextSelected++).offset);
+            in = new BufferedInputStream(Channels.newInputStream(channel), 8 * 1024);
+        }
+        int count = (int) BinarySnapshotFormat.readVarLong(in);
+        if (count == 0) {
+            finished = true;
+            return false;
+        }
+        block = BinarySnapshotFormat.readBlockPayload(in, blockIndex++);
+        remainingInBlock = count;
+        prevId = 0;
+        return true;
+    }
+
+    private String string(int id) throws IOException {
+        if (id >= strings.length) throw new IOException("字典编号越界: " + id);
+        return strings[id];
+    }
+}
@@ -0,0 +1,133 @@
+package org.example.persistence;
+
+import org.example.model.AwardCategory;
+import org.example.model.StudentAwardRecord;
+import org.example.util.StringDictionary;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 按 BinarySnapshotFormat 写出二进制快照。先扫描一遍记录建立本文件的字符串字典，再按块编码记录，
+ * 最后在结束标记之后追加尾部索引（见 BinarySnapshotIndex）。
+ */
+final class BinarySnapshotWriter {
+
+    private BinarySnapshotWriter() {}
+
+    /**
+     * 写出快照（不关闭 out）。records 应按学号升序，块内学号差值才足够小；
+     * 乱序时文件仍然正确，索引按块内实际的最小、最大学号记录，只是体积变大、按学号选择时命中的块变多。
+     */
+    static void write(OutputStream target, Collection<StudentAwardRecord> records, SnapshotMeta meta, int blockRecords) throws IOException {
+        CountingOutputStream out = new CountingOutputStream(target);
+        // 每个文件独立编号，与进程级共享字典无关
+        StringDictionary dict = new StringDictionary();
+        for (StudentAwardRecord r : records) {
+            dict.idOf(nullToEmpty(r.getClassName()));
+            for (int i = 0; i < r.getAwardCount(); i++) {
+                dict.idOf(nullToEmpty(r.getAwardName(i)));
+                dict.idOf(nullToEmpty(r.getAwardImage(i)));
+                if (r.getAwardCategory(i) == AwardCategory.OTHER) dict.idOf(r.getAwardLabel(i));
+            }
+        }
+
+        out.write(BinarySnapshotFormat.MAGIC);
+        out.write(BinarySnapshotFormat.FORMAT_VERSION);
+        BinarySnapshotFormat.writeVarLong(out, BinarySnapshotFormat.META_VERSION);
+        BinarySnapshotFormat.writeVarLong(out, meta.generatedAt);
+        BinarySnapshotFormat.writeVarLong(out, records.size());
+        BinarySnapshotFormat.writeVarLong(out, blockRecords);
+        BinarySnapshotFormat.writeString(out, meta.snapshotId);
+        BinarySnapshotFormat.writeString(out, meta.baseId);
+
+        BinarySnapshotFormat.BlockBuffer buf = new BinarySnapshotFormat.BlockBuffer(64 * 1024);
+        List<String> values = dict.values();
+        for (String v : values) buf.writeString(v);
+        buf.writeBlockTo(out, values.size());
+
+        BinarySnapshotIndex index = new BinarySnapshotIndex();
+        Set<Integer> blockClasses = new LinkedHashSet<>();
+        int inBlock = 0;
+        long prevId = 0;
+        long minId = Long.MAX_VALUE;
+        long maxId = Long.MIN_VALUE;
+        for (StudentAwardRecord r : records) {
+            minId = Math.min(minId, r.getStudentId());
+            maxId = Math.max(maxId, r.getStudentId());
+            buf.writeVarLong(BinarySnapshotFormat.zigZag(r.getStudentId() - prevId));
+            prevId = r.getStudentId();
+            buf.writeString(r.getName());
+            int classId = dict.idOf(nullToEmpty(r.getClassName()));
+            blockClasses.add(classId);
+            buf.writeVarInt(classId);
+            buf.writeVarInt(r.getAwardCount());
+            for (int i = 0; i < r.getAwardCount(); i++) {
+                AwardCategory c = r.getAwardCategory(i);
+                buf.writeVarInt(dict.idOf(nullToEmpty(r.getAwardName(i))));
+                buf.writeVarInt(dict.idOf(nullToEmpty(r.getAwardImage(i))));
+                buf.write(c.code());
+                if (c == AwardCategory.OTHER) buf.writeVarInt(dict.idOf(r.getAwardLabel(i)));
+            }
+            if (++inBlock == blockRecords) {
+                index.add(out.count, minId, maxId, toArray(blockClasses));
+                buf.writeBlockTo(out, inBlock);
+                blockClasses.clear();
+                inBlock = 0;
+                prevId = 0;
+                minId = Long.MAX_VALUE;
+                maxId = Long.MIN_VALUE;
+            }
+        }
+        if (inBlock > 0) {
+            index.add(out.count, minId, maxId, toArray(blockClasses));
+            buf.writeBlockTo(out, inBlock);
+        }
+        BinarySnapshotFormat.writeVarLong(out, 0); // 结束标记
+        index.writeTo(out, out.count);
+    }
+
+    private static int[] toArray(Set<Integer> ids) {
+        int[] a = new int[ids.size()];
+        int i = 0;
+        for (int id : ids) a[i++] = id;
+        return a;
+    }
+
+    /**
+     * 统计已写出的字节数，作为索引中的块偏移（out 须从文件开头写起）。
+     */
+    private static final class CountingOutputStream extends FilterOutputStream {
+        long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+
+        @Override
+        public void close() {
+            // 不关闭目标流，由调用方负责
+        }
+    }
+
+    private static String nullToEmpty(String s) {
+        return s == null ? "" : s;
+    }
+}
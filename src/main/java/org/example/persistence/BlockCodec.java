@@ -0,0 +1,279 @@
+package org.example.persistence;
+
+import org.apache.commons.compress.compressors.lz4.FramedLZ4CompressorInputStream;
+import org.apache.commons.compress.compressors.lz4.XXHash32;
+import org.example.util.Lz4Block;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * 分块压缩容器的编解码：每块独立压缩成一个标准 gzip 成员 / LZ4 帧，并带上整块长度，
+ * 读取端无需解压即可切分，从而并行解压。拼接后的文件仍可由 gunzip / lz4 等标准工具直接解压。
+ * <ul>
+ *   <li>GZIP：与 BGZF 相同的思路，块长度放在 gzip 头 FEXTRA 的 "SA" 子字段（u32 小端，含头尾的成员总长）。</li>
+ *   <li>LZ4：每个标准 LZ4 数据帧前放一个可跳过帧（magic 0x184D2A5A, 内容 "SALZ" + u32 小端帧长 + u32 原始长度）。
+ *       压缩用 Lz4Block（commons-compress 的 LZ4 压缩器在重复度高的 JSON 上不足 1 MB/s），外来帧仍由 commons-compress 解码。</li>
+ * </ul>
+ * 遇到不带长度标记的数据（其它工具生成的文件）时，读取端对剩余部分退回顺序解压。
+ */
+enum BlockCodec {
+    GZIP {
+        private static final int HEADER_LEN = 10;
+        private static final int EXTRA_LEN = 8; // SI1 SI2 LEN(2) 成员长度(4)
+        private static final int FEXTRA = 0x04;
+
+        @Override
+        byte[] compress(byte[] data, int len) {
+            Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+            try {
+                deflater.setInput(data, 0, len);
+                deflater.finish();
+                ByteArrayOutputStream out = new ByteArrayOutputStream(len / 4 + 64);
+                out.writeBytes(new byte[]{0x1f, (byte) 0x8b, 8, FEXTRA, 0, 0, 0, 0, 0, (byte) 0xff});
+                writeShortLE(out, EXTRA_LEN);
+                out.writeBytes(new byte[]{'S', 'A'});
+                writeShortLE(out, 4);
+                writeIntLE(out, 0); // 成员长度，压缩完成后回填
+                byte[] chunk = new byte[64 * 1024];
+                while (!deflater.finished()) {
+                    int n = deflater.deflate(chunk);
+                    out.write(chunk, 0, n);
+                }
+                CRC32 crc = new CRC32();
+                crc.update(data, 0, len);
+                writeIntLE(out, (int) crc.getValue());
+                writeIntLE(out, len);
+                byte[] member = out.toByteArray();
+                putIntLE(member, HEADER_LEN + 2 + 4, member.length);
+                return member;
+            } finally {
+                deflater.end();
+            }
+        }
+
+        @Override
+        byte[] decompress(byte[] block) throws IOException {
+            try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(block), 8192)) {
+                return in.readAllBytes();
+            }
+        }
+
+        @Override
+        byte[] readBlock(PushbackInputStream in) throws IOException {
+            byte[] header = in.readNBytes(HEADER_LEN + 2);
+            if (header.length == 0) return null;
+            boolean tagged = header.length == HEADER_LEN + 2
+                    && (header[0] & 0xff) == 0x1f && (header[1] & 0xff) == 0x8b
+                    && (header[3] & FEXTRA) != 0
+                    && getShortLE(header, HEADER_LEN) == EXTRA_LEN;
+            if (!tagged) {
+                in.unread(header);
+                return FOREIGN;
+            }
+            byte[] extra = in.readNBytes(EXTRA_LEN);
+            if (extra.length != EXTRA_LEN || extra[0] != 'S' || extra[1] != 'A' || getShortLE(extra, 2) != 4) {
+                in.unread(extra);
+                in.unread(header);
+                return FOREIGN;
+            }
+            int total = getIntLE(extra, 4);
+            int prefix = HEADER_LEN + 2 + EXTRA_LEN;
+            if (total < prefix + 8 || total > BinarySnapshotFormat.MAX_BLOCK_BYTES) throw new IOException("gzip 块长度异常: " + total);
+            byte[] member = new byte[total];
+            System.arraycopy(header, 0, member, 0, header.length);
+            System.arraycopy(extra, 0, member, header.length, extra.length);
+            if (in.readNBytes(member, prefix, total - prefix) != total - prefix) throw new EOFException("gzip 块不完整");
+            return member;
+        }
+
+        @Override
+        InputStream sequential(InputStream in) throws IOException {
+            return new GZIPInputStream(in, 64 * 1024);
+        }
+    },
+
+    LZ4 {
+        private static final int SKIPPABLE_MAGIC = 0x184D2A5A;
+        private static final int FRAME_MAGIC = 0x184D2204;
+        private static final byte[] TAG = {'S', 'A', 'L', 'Z'};
+        // 可跳过帧：magic(4) 长度(4) TAG(4) 数据帧长度(4) 原始长度(4)
+        private static final int PREFIX_LEN = 20;
+        // 帧描述：版本 01、块独立、无校验与内容长度 / 块最大 64KB
+        private static final byte FLG = 0x60;
+        private static final byte BD = 0x40;
+        private static final int FRAME_BLOCK = 64 * 1024;
+        private static final byte HC = frameHeaderChecksum();
+
+        private static byte frameHeaderChecksum() {
+            XXHash32 xxh = new XXHash32();
+            xxh.update(new byte[]{FLG, BD}, 0, 2);
+            return (byte) (xxh.getValue() >>> 8);
+        }
+
+        @Override
+        byte[] compress(byte[] data, int len) {
+            int blocks = (len + FRAME_BLOCK - 1) / FRAME_BLOCK;
+            byte[] out = new byte[PREFIX_LEN + 7 + blocks * (4 + Lz4Block.maxCompressedLength(FRAME_BLOCK)) + 4];
+            int p = PREFIX_LEN;
+            putIntLE(out, p, FRAME_MAGIC);
+            out[p + 4] = FLG;
+            out[p + 5] = BD;
+            out[p + 6] = HC;
+            p += 7;
+            for (int off = 0; off < len; off += FRAME_BLOCK) {
+                int n = Math.min(FRAME_BLOCK, len - off);
+                int c = Lz4Block.compress(data, off, n, out, p + 4);
+                if (c < n) {
+                    putIntLE(out, p, c);
+                    p += 4 + c;
+                } else {
+                    // 不可压缩：最高位置 1 表示原样存放
+                    putIntLE(out, p, n | 0x80000000);
+                    System.arraycopy(data, off, out, p + 4, n);
+                    p += 4 + n;
+                }
+            }
+            putIntLE(out, p, 0); // EndMark
+            p += 4;
+            putIntLE(out, 0, SKIPPABLE_MAGIC);
+            putIntLE(out, 4, PREFIX_LEN - 8);
+            System.arraycopy(TAG, 0, out, 8, TAG.length);
+            putIntLE(out, 12, p - PREFIX_LEN);
+            putIntLE(out, 16, len);
+            return Arrays.copyOf(out, p);
+        }
+
+        @Override
+        byte[] decompress(byte[] block) throws IOException {
+            int p = PREFIX_LEN;
+            if (block[p + 4] != FLG || block[p + 5] != BD) {
+                // 非本程序写出的帧参数，交给通用解码器
+                try (FramedLZ4CompressorInputStream in = new FramedLZ4CompressorInputStream(new ByteArrayInputStream(block, p, block.length - p))) {
+                    return in.readAllBytes();
+                }
+            }
+            byte[] out = new byte[getIntLE(block, 16)];
+            int d = 0;
+            p += 7;
+            try {
+                while (true) {
+                    int size = getIntLE(block, p);
+                    p += 4;
+                    if (size == 0) break;
+                    int n = size & 0x7fffffff;
+                    if (n > block.length - p) throw new IOException("LZ4 块越界");
+                    if (size < 0) {
+                        System.arraycopy(block, p, out, d, n);
+                        d += n;
+                    } else {
+                        d += Lz4Block.decompress(block, p, n, out, d);
+                    }
+                    p += n;
+                }
+            } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+                throw new IOException("LZ4 块损坏", e);
+            }
+            if (d != out.length) throw new IOException("LZ4 块长度不符: " + d + " != " + out.length);
+            return out;
+        }
+
+        @Override
+        byte[] readBlock(PushbackInputStream in) throws IOException {
+            byte[] head = in.readNBytes(PREFIX_LEN);
+            if (head.length == 0) return null;
+            if (head.length != PREFIX_LEN || getIntLE(head, 0) != SKIPPABLE_MAGIC || getIntLE(head, 4) != PREFIX_LEN - 8
+                    || head[8] != TAG[0] || head[9] != TAG[1] || head[10] != TAG[2] || head[11] != TAG[3]) {
+                in.unread(head);
+                return FOREIGN;
+            }
+            int frameLen = getIntLE(head, 12);
+            int rawLen = getIntLE(head, 16);
+            if (frameLen < 11 || frameLen > BinarySnapshotFormat.MAX_BLOCK_BYTES || rawLen < 0 || rawLen > BinarySnapshotFormat.MAX_BLOCK_BYTES) {
+                throw new IOException("LZ4 块长度异常: " + frameLen + " / " + rawLen);
+            }
+            byte[] block = new byte[PREFIX_LEN + frameLen];
+            System.arraycopy(head, 0, block, 0, PREFIX_LEN);
+            if (in.readNBytes(block, PREFIX_LEN, frameLen) != frameLen) throw new EOFException("LZ4 块不完整");
+            if (getIntLE(block, PREFIX_LEN) != FRAME_MAGIC) throw new IOException("LZ4 帧头无效");
+            return block;
+        }
+
+        @Override
+        InputStream sequential(InputStream in) throws IOException {
+            return new FramedLZ4CompressorInputStream(in, true);
+        }
+    };
+
+    /**
+     * readBlock 遇到不带长度标记的数据时返回的标记值（已读字节已放回）。
+     */
+    static final byte[] FOREIGN = new byte[0];
+    // 识别块头时最多回退的字节数
+    static final int PUSHBACK_BYTES = 32;
+
+    /**
+     * 把 data[0, len) 压缩成一个带长度标记的独立块。
+     */
+    abstract byte[] compress(byte[] data, int len) throws IOException;
+
+    abstract byte[] decompress(byte[] block) throws IOException;
+
+    /**
+     * 读取下一个完整的块（未解压）；流结束返回 null，不带长度标记时返回 FOREIGN。
+     * in 的回退缓冲须不小于 PUSHBACK_BYTES。
+     */
+    abstract byte[] readBlock(PushbackInputStream in) throws IOException;
+
+    /**
+     * 顺序解压 in 的剩余部分（兼容其它工具生成的文件）。
+     */
+    abstract InputStream sequential(InputStream in) throws IOException;
+
+    /**
+     * 按文件开头 4 字节识别容器类型，不是分块压缩格式时返回 null。
+     */
+    static BlockCodec detect(byte[] head) {
+        if (head.length >= 2 && (head[0] & 0xff) == 0x1f && (head[1] & 0xff) == 0x8b) return GZIP;
+        if (head.length >= 4) {
+            int magic = getIntLE(head, 0);
+            if (magic == 0x184D2204 || (magic & 0xFFFFFFF0) == 0x184D2A50) return LZ4;
+        }
+        return null;
+    }
+
+    private static void writeShortLE(ByteArrayOutputStream out, int v) {
+        out.write(v);
+        out.write(v >>> 8);
+    }
+
+    private static void writeIntLE(ByteArrayOutputStream out, int v) {
+        out.write(v);
+        out.write(v >>> 8);
+        out.write(v >>> 16);
+        out.write(v >>> 24);
+    }
+
+    private static void putIntLE(byte[] b, int off, int v) {
+        b[off] = (byte) v;
+        b[off + 1] = (byte) (v >>> 8);
+        b[off + 2] = (byte) (v >>> 16);
+        b[off + 3] = (byte) (v >>> 24);
+    }
+
+    private static int getShortLE(byte[] b, int off) {
+        return (b[off] & 0xff) | (b[off + 1] & 0xff) << 8;
+    }
+
+    private static int getIntLE(byte[] b, int off) {
+        return (b[off] & 0xff) | (b[off + 1] & 0xff) << 8 | (b[off + 2] & 0xff) << 16 | (b[off + 3] & 0xff) << 24;
+    }
+}
@@ -0,0 +1,280 @@
+package org.example.persistence;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.example.config.Config;
+import org.example.processing.XlsxStreamReader;
+import org.example.util.LoggerUtil;
+import org.slf4j.Logger;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Student_Awards.xlsx 写回缓冲 (write-behind)。
+ * 评分时仅登记脏行（同一学号只保留最新值），按数量阈值、定时器或关闭时合并落盘，单次评分的 Excel 开销为一次 Map 写入。
+ * <p>
+ * 不常驻工作簿：落盘时 SAX 流式读取现有文件，逐行经 SXSSF 写到临时文件，学号命中脏行的行被替换，其余脏行追加到末尾，
+ * 最后原子替换目标文件。常驻内存只有脏行与 SXSSF 的 {@link Config#EXCEL_STREAM_ROW_WINDOW} 行窗口，与表的行数无关；
+ * 一次落盘的代价是顺序读写整表一遍，即 O(总行数)，与脏行数无关。落盘在脏行达到 flushThreshold 或定时器到期时才发生，
+ * 高频评分时每次评分分摊到约 总行数 / flushThreshold 行的复制。
+ * 每行登记时附带其写库的变更版本，落盘成功后经 {@link FlushListener} 报告本次写入的最大版本，供调用方维护导出状态。
+ */
+final class ExcelWriteBehindSink implements AutoCloseable {
+    private static final Logger LOGGER = LoggerUtil.getLogger(ExcelWriteBehindSink.class.getName());
+    // 按数值写出的列（与 NewDataManager.toExcelRow 中的 Number 列一致）：学号、证书总分、奖项总分、已评奖项数
+    private static final int[] NUMERIC_COLUMNS = {0, 3, 4, 5};
+
+    /**
+     * 落盘成功回调：本次写入行的最大变更版本，以及替换前文件的长度与修改时间（文件不存在时为 0）。
+     */
+    @FunctionalInterface
+    interface FlushListener {
+        void flushed(long version, long lengthBefore, long modifiedBefore);
+    }
+
+    /**
+     * 整表写出：向空工作表写入表头与全部行。
+     * @return 写出的数据行数
+     */
+    @FunctionalInterface
+    interface TableWriter {
+        int write(Sheet sheet) throws Exception;
+    }
+
+    private final File excelFile;
+    private final int flushThreshold;
+    private final FlushListener listener;
+    private final Object flushLock = new Object();
+    private final ScheduledExecutorService scheduler;
+    private Map<Long, Object[]> pending = new LinkedHashMap<>();
+    private long pendingVersion;
+    private boolean closed;
+
+    ExcelWriteBehindSink(File excelFile, long flushIntervalMs, int flushThreshold, FlushListener listener) {
+        this.excelFile = excelFile;
+        this.flushThreshold = flushThreshold;
+        this.listener = listener;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "excel-write-behind");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 登记一行待写数据（同一学号多次登记只保留最新值）。values 按 Student_Awards 列顺序排列，version 为该行写库时的变更版本。
+     */
+    void markDirty(long studentId, Object[] values, long version) {
+        int size;
+        synchronized (this) {
+            if (closed) return;
+            pending.put(studentId, values);
+            pendingVersion = Math.max(pendingVersion, version);
+            size = pending.size();
+        }
+        if (size >= flushThreshold) {
+            scheduler.execute(this::flushQuietly);
+        }
+    }
+
+    synchronized int pendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * 丢弃待写行。调用方即将整体重写或删除文件时使用（如 saveAll / 清空重建）。
+     */
+    void invalidate() {
+        synchronized (flushLock) {
+            synchronized (this) {
+                pending = new LinkedHashMap<>();
+                pendingVersion = 0;
+            }
+        }
+    }
+
+    /**
+     * 将所有脏行合并进文件：流式复制现有行并替换/追加脏行。
+     */
+    void flush() throws Exception {
+        synchronized (flushLock) {
+            Map<Long, Object[]> batch;
+            long version;
+            synchronized (this) {
+                if (pending.isEmpty()) return;
+                batch = pending;
+                version = pendingVersion;
+                pending = new LinkedHashMap<>();
+                pendingVersion = 0;
+            }
+            long start = System.nanoTime();
+            long lengthBefore = excelFile.length();
+            long modifiedBefore = excelFile.lastModified();
+            int copied;
+            try {
+                copied = rewrite(batch);
+            } catch (Exception ex) {
+                // 写失败：放回队列等待下次重试，已有更新值优先
+                synchronized (this) {
+                    batch.forEach(pending::putIfAbsent);
+                    pendingVersion = Math.max(pendingVersion, version);
+                }
+                throw ex;
+            }
+            listener.flushed(version, lengthBefore, modifiedBefore);
+            LOGGER.debug("Excel 写回 " + batch.size() + " 行（复制 " + copied + " 行）, 耗时 " + (System.nanoTime() - start) / 1_000_000 + " ms");
+        }
+    }
+
+    /**
+     * 整表重写（如 saveAll）：与写回落盘在同一把锁内进行，二者不会同时替换文件；同样先写临时文件再原子替换。
+     * 此前登记的脏行已包含在整表中，一并丢弃；写出期间新登记的脏行留待下次落盘。
+     * written 在文件替换之后、释放锁之前调用（供调用方登记导出状态，期间不会有写回落盘插入）。
+     * @return 写出的数据行数
+     */
+    int rewriteAll(TableWriter writer, Runnable written) throws Exception {
+        synchronized (flushLock) {
+            synchronized (this) {
+                pending = new LinkedHashMap<>();
+                pendingVersion = 0;
+            }
+            int rows = writeAtomically(writer);
+            written.run();
+            return rows;
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (Exception ex) {
+            LoggerUtil.logException(LOGGER, ex, "Excel 写回失败");
+        }
+    }
+
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) return;
+            closed = true;
+        }
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flushQuietly();
+    }
+
+    // ================= 内部：流式重写 =================
+
+    /**
+     * 合并脏行：流式复制现有行，学号命中的行替换为脏行，其余脏行追加到末尾。
+     * @return 从现有文件复制的行数（含表头）
+     */
+    private int rewrite(Map<Long, Object[]> batch) throws Exception {
+        int[] copied = {0};
+        writeAtomically(sheet -> {
+            Set<Long> replaced = new HashSet<>();
+            int[] next = {0};
+            boolean found = excelFile.exists() && XlsxStreamReader.readSheet(excelFile, Config.SHEET_MAIN, (i, cells) -> {
+                Row row = sheet.createRow(i);
+                next[0] = i + 1;
+                Long id = i == 0 ? null : parseId(XlsxStreamReader.cell(cells, 0));
+                Object[] values = id == null ? null : batch.get(id);
+                if (values != null) {
+                    writeRow(row, values);
+                    replaced.add(id);
+                } else {
+                    copyRow(row, cells, i > 0);
+                }
+            });
+            if (!found) {
+                NewDataManager.writeHeaderRow(sheet.createRow(0));
+                next[0] = 1;
+            }
+            copied[0] = next[0];
+            for (Map.Entry<Long, Object[]> e : batch.entrySet()) {
+                if (!replaced.contains(e.getKey())) writeRow(sheet.createRow(next[0]++), e.getValue());
+            }
+            return next[0] - 1;
+        });
+        return copied[0];
+    }
+
+    /**
+     * 经 SXSSF 写到同目录下的临时文件再原子替换，避免写到一半崩溃导致文件损坏。调用方持有 flushLock。
+     */
+    private int writeAtomically(TableWriter writer) throws Exception {
+        File tmp = new File(excelFile.getAbsoluteFile().getParentFile(), excelFile.getName() + ".tmp");
+        SXSSFWorkbook wb = new SXSSFWorkbook(Config.EXCEL_STREAM_ROW_WINDOW);
+        wb.setCompressTempFiles(true);
+        try {
+            int rows = writer.write(wb.createSheet(Config.SHEET_MAIN));
+            try (FileOutputStream fos = new FileOutputStream(tmp)) {
+                wb.write(fos);
+            }
+            Files.move(tmp.toPath(), excelFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return rows;
+        } finally {
+            wb.dispose();
+            wb.close();
+            Files.deleteIfExists(tmp.toPath());
+        }
+    }
+
+    private static void copyRow(Row row, String[] cells, boolean data) {
+        for (int c = 0; c < cells.length; c++) {
+            String v = cells[c];
+            if (v == null) continue;
+            Cell cell = row.createCell(c);
+            Double number = data && isNumericColumn(c) ? parseNumber(v) : null;
+            if (number != null) cell.setCellValue(number);
+            else cell.setCellValue(v);
+        }
+    }
+
+    private static boolean isNumericColumn(int c) {
+        for (int n : NUMERIC_COLUMNS) {
+            if (n == c) return true;
+        }
+        return false;
+    }
+
+    private static Long parseId(String s) {
+        Double d = parseNumber(s);
+        return d == null ? null : d.longValue();
+    }
+
+    private static Double parseNumber(String s) {
+        if (s == null || s.isEmpty()) return null;
+        try {
+            return Double.parseDouble(s);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    static void writeRow(Row row, Object[] values) {
+        for (int i = 0; i < values.length; i++) {
+            Object v = values[i];
+            Cell cell = row.createCell(i);
+            if (v instanceof Number) cell.setCellValue(((Number) v).doubleValue());
+            else cell.setCellValue(v == null ? "" : v.toString());
+        }
+    }
+}
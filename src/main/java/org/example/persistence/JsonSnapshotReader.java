@@ -0,0 +1,141 @@
+package org.example.persistence;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.example.model.StudentAwardRecord;
+import org.example.util.StringDictionary;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 按 token 流式读取 JSON 快照：构造时越过 meta 定位到 records 数组，之后每次 next 只解析一条记录，
+ * 不构建 JsonNode 树。汇总字段（certTotalPoints 等）被跳过，导入方按标签推导。
+ */
+final class JsonSnapshotReader implements SnapshotRecordReader {
+    private static final JsonFactory FACTORY = new JsonFactory();
+
+    private final JsonParser parser;
+    private final StringDictionary dict;
+    private SnapshotMeta meta = new SnapshotMeta(null, null, 0, -1);
+    private boolean inRecords;
+
+    JsonSnapshotReader(InputStream in, StringDictionary dict) throws IOException {
+        this.parser = FACTORY.createParser(in);
+        this.dict = dict;
+        if (parser.nextToken() != JsonToken.START_OBJECT) throw new IOException("快照根节点不是 JSON 对象");
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken t = parser.nextToken();
+            if ("meta".equals(field) && t == JsonToken.START_OBJECT) {
+                readMeta();
+            } else if ("records".equals(field) && t == JsonToken.START_ARRAY) {
+                inRecords = true;
+                return;
+            } else {
+                parser.skipChildren();
+            }
+        }
+        throw new IOException("快照结构无 records 数组");
+    }
+
+    /**
+     * meta 对象（位于 records 之前时可用），缺失时编号为 null、recordCount 为 -1。
+     */
+    @Override
+    public SnapshotMeta meta() {
+        return meta;
+    }
+
+    /**
+     * 读取下一条记录；records 数组结束时返回 null。
+     */
+    @Override
+    public StudentAwardRecord next() throws IOException {
+        if (!inRecords) return null;
+        JsonToken t = parser.nextToken();
+        if (t == JsonToken.END_ARRAY) {
+            inRecords = false;
+            return null;
+        }
+        if (t != JsonToken.START_OBJECT) throw new IOException("records 元素不是对象: " + t);
+        return readRecord();
+    }
+
+    @Override
+    public void close() throws IOException {
+        parser.close();
+    }
+
+    private void readMeta() throws IOException {
+        String snapshotId = null;
+        String baseId = null;
+        long generatedAt = 0;
+        int declaredCount = -1;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            switch (field) {
+                case "snapshotId" -> snapshotId = parser.getValueAsString();
+                case "baseId" -> baseId = parser.getValueAsString();
+                case "generatedAt" -> generatedAt = parser.getValueAsLong();
+                case "recordCount" -> declaredCount = parser.getValueAsInt(-1);
+                default -> parser.skipChildren();
+            }
+        }
+        meta = new SnapshotMeta(snapshotId, baseId, generatedAt, declaredCount);
+    }
+
+    private StudentAwardRecord readRecord() throws IOException {
+        long sid = 0;
+        String name = "";
+        String clazz = "";
+        // 奖项按 name, image, category 三元组暂存，字段顺序不限
+        List<String> awards = new ArrayList<>();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken t = parser.nextToken();
+            switch (field) {
+                case "studentId" -> sid = parser.getValueAsLong();
+                case "name" -> name = parser.getValueAsString("");
+                case "className" -> clazz = parser.getValueAsString("");
+                case "awards" -> {
+                    if (t == JsonToken.START_ARRAY) readAwards(awards);
+                    else parser.skipChildren();
+                }
+                default -> parser.skipChildren();
+            }
+        }
+        StudentAwardRecord r = new StudentAwardRecord(sid, name, dict.intern(clazz));
+        for (int i = 0; i < awards.size(); i += 3) {
+            r.addAward(dict.intern(awards.get(i)), dict.intern(awards.get(i + 1)), awards.get(i + 2));
+        }
+        return r;
+    }
+
+    private void readAwards(List<String> out) throws IOException {
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            if (parser.currentToken() != JsonToken.START_OBJECT) {
+                parser.skipChildren();
+                continue;
+            }
+            String name = null, image = null, category = null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                parser.nextToken();
+                switch (field) {
+                    case "name" -> name = parser.getValueAsString();
+                    case "image" -> image = parser.getValueAsString();
+                    case "category" -> category = parser.getValueAsString();
+                    default -> parser.skipChildren();
+                }
+            }
+            out.add(name);
+            out.add(image);
+            out.add(category);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package org.example.persistence;
+
+import org.example.model.AwardCategory;
+
+/**
+ * 合并多份快照时，同一奖项在两份快照中都已评分但标签不同的取舍规则。
+ * 时间取各快照的生成时间（meta.generatedAt）；已评分的标签总是优先于未评分，无需经过本规则。
+ */
+@FunctionalInterface
+public interface LabelMergePolicy {
+
+    /**
+     * @param kept     目前保留的标签
+     * @param keptAt   其所在快照的生成时间
+     * @param incoming 另一份快照中的标签
+     * @return true 表示改用 incoming
+     */
+    boolean preferIncoming(String kept, long keptAt, String incoming, long incomingAt);
+
+    /**
+     * 较新的快照优先；生成时间相同时保留先读到的。
+     */
+    LabelMergePolicy LAST_WRITER = (kept, keptAt, incoming, incomingAt) -> incomingAt > keptAt;
+
+    /**
+     * 积分较高的标签优先（宁高勿低，留给人工复核），积分相同时较新的快照优先。
+     */
+    LabelMergePolicy HIGHEST_SCORE = (kept, keptAt, incoming, incomingAt) -> {
+        long a = AwardCategory.fromLabel(kept).points();
+        long b = AwardCategory.fromLabel(incoming).points();
+        return b != a ? b > a : incomingAt > keptAt;
+    };
+}
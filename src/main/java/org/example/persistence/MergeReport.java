@@ -0,0 +1,101 @@
+package org.example.persistence;
+
+import org.example.config.Config;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 多快照合并的结果统计与冲突明细。冲突指同一奖项在两份快照中被评为不同的分类；
+ * 明细最多保留 Config.MERGE_CONFLICT_DETAIL_LIMIT 条，conflictCount 为全部冲突数。
+ */
+public final class MergeReport {
+
+    /**
+     * 一次冲突：kept 为合并结果采用的标签，discarded 为被舍弃的标签，source 为各自来源文件名。
+     */
+    public static final class Conflict {
+        public final long studentId;
+        public final String studentName;
+        public final String awardName;
+        public final String keptLabel;
+        public final String keptSource;
+        public final String discardedLabel;
+        public final String discardedSource;
+
+        Conflict(long studentId, String studentName, String awardName,
+                 String keptLabel, String keptSource, String discardedLabel, String discardedSource) {
+            this.studentId = studentId;
+            this.studentName = studentName;
+            this.awardName = awardName;
+            this.keptLabel = keptLabel;
+            this.keptSource = keptSource;
+            this.discardedLabel = discardedLabel;
+            this.discardedSource = discardedSource;
+        }
+    }
+
+    private final List<Conflict> conflicts = new ArrayList<>();
+    private int conflictCount;
+    private int sourceCount;
+    private long recordsRead;
+    private int studentsMerged;
+    private long elapsedMs;
+
+    void addConflict(Conflict c) {
+        conflictCount++;
+        if (conflicts.size() < Config.MERGE_CONFLICT_DETAIL_LIMIT) conflicts.add(c);
+    }
+
+    void finish(int sourceCount, long recordsRead, int studentsMerged, long elapsedMs) {
+        this.sourceCount = sourceCount;
+        this.recordsRead = recordsRead;
+        this.studentsMerged = studentsMerged;
+        this.elapsedMs = elapsedMs;
+    }
+
+    public List<Conflict> getConflicts() {
+        return Collections.unmodifiableList(conflicts);
+    }
+
+    public int getConflictCount() {
+        return conflictCount;
+    }
+
+    public int getStudentsMerged() {
+        return studentsMerged;
+    }
+
+    public String summary() {
+        return "合并 " + sourceCount + " 个快照, 读入 " + recordsRead + " 条记录 -> " + studentsMerged + " 名学生, 冲突 "
+                + conflictCount + " 处, 耗时 " + elapsedMs + " ms";
+    }
+
+    /**
+     * 冲突明细写成 CSV（UTF-8 带 BOM，Excel 可直接打开）。
+     */
+    public void writeCsv(File target) throws IOException {
+        try (BufferedWriter w = Files.newBufferedWriter(target.toPath(), StandardCharsets.UTF_8)) {
+            w.write('\uFEFF');
+            w.write(String.join(",", Config.COL_STUDENT_ID, Config.COL_NAME, "奖项", "采用标签", "采用来源", "舍弃标签", "舍弃来源"));
+            w.newLine();
+            for (Conflict c : conflicts) {
+                w.write(c.studentId + "," + csv(c.studentName) + "," + csv(c.awardName) + "," + csv(c.keptLabel) + ","
+                        + csv(c.keptSource) + "," + csv(c.discardedLabel) + "," + csv(c.discardedSource));
+                w.newLine();
+            }
+        }
+    }
+
+    private static String csv(String s) {
+        if (s == null) return "";
+        if (s.indexOf(',') < 0 && s.indexOf('"') < 0 && s.indexOf('\n') < 0) return s;
+        return '"' + s.replace("\"", "\"\"") + '"';
+    }
+}
@@ -1,22 +1,27 @@
 package org.example.persistence;
 
 import org.apache.poi.ss.usermodel.*;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.example.config.Config;
 import org.example.model.StudentAwardRecord;
+import org.example.processing.XlsxStreamReader;
 import org.example.util.LoggerUtil;
+import org.example.util.LongObjectMap;
+import org.example.util.StringDictionary;
 import org.slf4j.Logger;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
+import java.nio.file.Files;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.Statement;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.Map;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -29,16 +34,62 @@ import java.util.ArrayList;
 public class NewDataManager {
     private static final Logger LOGGER = LoggerUtil.getLogger(NewDataManager.class.getName());
     private static final String[] HEADER = buildHeader();
-    private final Map<Long, StudentAwardRecord> recordMap = new HashMap<>();
+    private static final String UPSERT_STUDENT_SQL = "INSERT INTO students (student_id, name, class_name, cert_total_points, award_total_points, recorded_award_count, change_version) VALUES (?,?,?,?,?,?,?) ON CONFLICT(student_id) DO UPDATE SET name=excluded.name, class_name=excluded.class_name, cert_total_points=excluded.cert_total_points, award_total_points=excluded.award_total_points, recorded_award_count=excluded.recorded_award_count, change_version=excluded.change_version, awards_json=NULL";
+    private static final String UPSERT_AWARD_SQL = "INSERT INTO award_labels (student_id, award_index, name, image, category) VALUES (?,?,?,?,?) ON CONFLICT(student_id, award_index) DO UPDATE SET name=excluded.name, image=excluded.image, category=excluded.category";
+    private static final String TRIM_AWARDS_SQL = "DELETE FROM award_labels WHERE student_id = ? AND award_index >= ?";
+    private static final String UPDATE_LABEL_SQL = "UPDATE award_labels SET category = ? WHERE student_id = ? AND award_index = ?";
+    private static final String UPDATE_TOTALS_SQL = "UPDATE students SET cert_total_points = ?, award_total_points = ?, recorded_award_count = ?, change_version = ? WHERE student_id = ?";
+    private static final String SELECT_STUDENTS_SQL = "SELECT student_id, name, class_name, cert_total_points, award_total_points, recorded_award_count FROM students ORDER BY student_id";
+    private static final String SELECT_AWARDS_SQL = "SELECT student_id, award_index, name, image, category FROM award_labels ORDER BY student_id, award_index";
+    private static final String NEXT_VERSION_SQL = "SELECT COALESCE(MAX(change_version), 0) + 1 FROM students";
+    private static final String RECORD_EXPORT_SQL = "INSERT OR REPLACE INTO export_state (target, change_version, file_length, file_modified) VALUES (?,?,?,?)";
+    private static final String ADVANCE_EXPORT_SQL = "UPDATE export_state SET change_version = MAX(change_version, ?), file_length = ?, file_modified = ? WHERE target = ? AND file_length = ? AND file_modified = ?";
+    private static final String INVALIDATE_EXPORT_SQL = "DELETE FROM export_state WHERE target = ?";
+    private static final String SELECT_EXPORT_SQL = "SELECT change_version, file_length, file_modified FROM export_state WHERE target = ?";
+    private static final String SUMMARY_SYNCED_KEY = "summary_synced";
+    private final LongObjectMap<StudentAwardRecord> recordMap = new LongObjectMap<>();
     private final File excelFile;
     private final File dbFile;
     private final ObjectMapper mapper = new ObjectMapper();
+    private final StringDictionary dict = StringDictionary.shared();
+    private final ExcelWriteBehindSink excelSink;
+    private final SqliteConnectionHolder db;
+    private final ScoreJournal journal;
+    private final PersistencePipeline pipeline;
+    // journal 追加与已提交/已写入计数一起由 journalLock 保护：两者相等时 journal 中的事件都已写库，可以清空
+    private final Object journalLock = new Object();
+    private long deltaSeq;
+    private long submittedDeltas;
+    private long persistedDeltas;
+    private boolean closed;
 
     public NewDataManager(String excelPath, String dbPath) {
         this.excelFile = new File(excelPath);
         this.dbFile = new File(dbPath);
-        initDb(dbPath);
-        if (!excelFile.exists()) saveAll();
+        this.excelSink = new ExcelWriteBehindSink(excelFile, Config.EXCEL_FLUSH_INTERVAL_MS, Config.EXCEL_FLUSH_THRESHOLD, this::excelFlushed);
+        this.db = SqliteConnectionHolder.forPath(dbPath);
+        if (db.claimSchemaInit()) initDb();
+        this.journal = openJournal(dbPath);
+        this.pipeline = new PersistencePipeline(Config.PERSIST_QUEUE_CAPACITY, Config.PERSIST_MAX_BATCH, this::writeDeltas);
+    }
+
+    /**
+     * 每个数据库一份 journal（数据库路径 + Config.JOURNAL_SUFFIX），重放只会作用于产生这些事件的数据库。
+     * 旧版本的全局 journal 只属于默认数据库，首次打开默认数据库时改名接管。
+     */
+    private ScoreJournal openJournal(String dbPath) {
+        File file = new File(dbPath + Config.JOURNAL_SUFFIX);
+        try {
+            File legacy = new File(Config.LEGACY_JOURNAL_PATH);
+            if (!file.exists() && legacy.exists() && dbFile.getAbsoluteFile().equals(new File(Config.DB_PATH).getAbsoluteFile())) {
+                Files.move(legacy.toPath(), file.toPath());
+                LOGGER.info("旧版评分 journal 已迁移: " + legacy.getName() + " -> " + file.getName());
+            }
+            return new ScoreJournal(file, Config.JOURNAL_GROUP_COMMIT_MS);
+        } catch (Exception e) {
+            LoggerUtil.logException(LOGGER, e, "打开评分 journal 失败, 评分将直接写库");
+            return null;
+        }
     }
 
     private static String[] buildHeader() {
@@ -62,57 +113,407 @@ public class NewDataManager {
         return recordMap.get(studentId);
     }
 
-    public void persistRecord(StudentAwardRecord record) {
-        // 写数据库 + 写 Excel 行，保证界面操作立即落盘
-        writeDb(record);
-        flushRecordToExcel(record);
+    // ================= 评分：journal + 异步持久化流水线 =================
+
+    /**
+     * 评分：更新内存中的标签与总分，追加一条 journal 事件（组提交 fsync），再把记录快照交给持久化流水线。
+     * 标签、journal 写入与变更序号在锁内完成（事件顺序与内存一致），等待 fsync 在锁外进行，并发评分可共用一次 fsync。
+     * 返回的 future 在 SQLite 写入完成后完成；队列满时本方法阻塞（背压）。
+     */
+    public CompletableFuture<Void> scoreAward(StudentAwardRecord record, int awardIndex, String newLabel) {
+        RecordDelta delta;
+        long journalSeq = -1;
+        synchronized (this) {
+            String previousLabel = record.getAwardLabel(awardIndex);
+            applyLabel(record, awardIndex, newLabel);
+            synchronized (journalLock) {
+                if (journal != null) {
+                    try {
+                        journalSeq = journal.write(new ScoreJournal.ScoreEvent(record.getStudentId(), awardIndex, previousLabel, newLabel, System.currentTimeMillis()));
+                    } catch (Exception e) {
+                        LoggerUtil.logException(LOGGER, e, "写入评分 journal 失败, 该次评分仅由持久化流水线保存");
+                    }
+                }
+                delta = RecordDelta.labelChange(++deltaSeq, record, awardIndex);
+                submittedDeltas++;
+            }
+        }
+        if (journalSeq >= 0) {
+            try {
+                journal.awaitDurable(journalSeq);
+            } catch (Exception e) {
+                LoggerUtil.logException(LOGGER, e, "评分 journal 落盘失败, 该次评分仅由持久化流水线保存");
+            }
+        }
+        return submit(delta);
     }
 
-    public void saveAll() {
-        try (Workbook wb = new XSSFWorkbook()) {
-            Sheet sheet = wb.createSheet(Config.SHEET_MAIN);
-            Row headerRow = sheet.createRow(0);
-            headerRow.createCell(0).setCellValue(Config.COL_STUDENT_ID);
-            headerRow.createCell(1).setCellValue(Config.COL_NAME);
-            headerRow.createCell(2).setCellValue(Config.COL_CLASS);
-            headerRow.createCell(3).setCellValue(Config.COL_CERT_TOTAL);
-            headerRow.createCell(4).setCellValue(Config.COL_AWARD_TOTAL);
-            headerRow.createCell(5).setCellValue(Config.COL_RECORDED_COUNT);
-            headerRow.createCell(6).setCellValue("awards_json");
-
-            int rowIndex = 1;
-            for (StudentAwardRecord r : recordMap.values()) {
-                Row row = sheet.createRow(rowIndex++);
-                row.createCell(0).setCellValue(r.getStudentId());
-                row.createCell(1).setCellValue(r.getName());
-                row.createCell(2).setCellValue(r.getClassName());
-                row.createCell(3).setCellValue(r.getCertTotalPoints());
-                row.createCell(4).setCellValue(r.getAwardTotalPoints());
-                row.createCell(5).setCellValue(r.getRecordedAwardCount());
-                row.createCell(6).setCellValue(mapper.writeValueAsString(r.getAwards()));
+    /**
+     * 写入新标签；总分与已录入数由记录内的分类计数推导，随标签一起更新。
+     */
+    private static void applyLabel(StudentAwardRecord record, int awardIndex, String newLabel) {
+        record.setAwardLabel(awardIndex, newLabel);
+    }
+
+    /**
+     * 启动时重放 journal 中尚未合并的评分（在记录加载、与汇总同步之后调用），并等待受影响的记录写库。
+     * 以“目标标签”为准重放，已包含该标签的记录跳过，因此重复重放是幂等的。
+     */
+    public synchronized int replayJournal() {
+        if (journal == null) return 0;
+        Set<Long> dirty = new LinkedHashSet<>();
+        int[] applied = {0};
+        try {
+            int total = journal.replay(e -> {
+                StudentAwardRecord r = recordMap.get(e.studentId);
+                if (r == null || e.awardIndex < 0 || e.awardIndex >= r.getAwardCount()) return;
+                if (e.newLabel.equals(r.getAwardLabel(e.awardIndex))) return;
+                applyLabel(r, e.awardIndex, e.newLabel);
+                dirty.add(e.studentId);
+                applied[0]++;
+            });
+            if (total > 0) LOGGER.info("journal 重放: 事件 " + total + " 条, 生效 " + applied[0] + " 条");
+        } catch (Exception e) {
+            LoggerUtil.logException(LOGGER, e, "重放评分 journal 失败");
+        }
+        List<RecordDelta> deltas = new ArrayList<>(dirty.size());
+        synchronized (journalLock) {
+            for (Long id : dirty) {
+                deltas.add(RecordDelta.fullRecord(++deltaSeq, recordMap.get(id)));
+                submittedDeltas++;
             }
-            try (FileOutputStream fos = new FileOutputStream(excelFile)) {
-                wb.write(fos);
+            if (deltas.isEmpty()) resetJournalIfCaughtUp();
+        }
+        deltas.forEach(this::submit);
+        flush();
+        return applied[0];
+    }
+
+    /**
+     * 整条记录交给持久化流水线（DB 与 Excel 行均由写线程处理）。
+     */
+    public CompletableFuture<Void> persistRecord(StudentAwardRecord record) {
+        RecordDelta delta;
+        synchronized (this) {
+            synchronized (journalLock) {
+                delta = RecordDelta.fullRecord(++deltaSeq, record);
+                submittedDeltas++;
             }
+        }
+        return submit(delta);
+    }
+
+    /**
+     * 屏障：等待此前提交给流水线的全部变更写入 SQLite，再把 Excel 写回缓冲刷盘（导出快照、退出前调用）。
+     * @return 流水线写入全部成功时返回 true
+     */
+    public boolean flush() {
+        boolean ok = true;
+        try {
+            pipeline.flush().join();
+        } catch (Exception ex) {
+            LoggerUtil.logException(LOGGER, ex, "等待持久化流水线失败");
+            ok = false;
+        }
+        flushExcel();
+        return ok;
+    }
+
+    /**
+     * 立即把写回缓冲中的脏行刷入 Excel（导出、退出前调用）。
+     */
+    public void flushExcel() {
+        try {
+            excelSink.flush();
+        } catch (Exception ex) {
+            LoggerUtil.logException(LOGGER, ex, "刷新 Excel 失败");
+        }
+    }
+
+    /**
+     * 关闭：写完流水线中剩余的变更、刷新 Excel 脏行、停止后台线程并关闭数据库连接。重复调用无副作用。
+     */
+    public void close() {
+        synchronized (this) {
+            if (closed) return;
+            closed = true;
+        }
+        pipeline.close();
+        if (journal != null) journal.close();
+        excelSink.close();
+        db.close();
+    }
+
+    // ================= SQLite 为权威数据源，Excel 为派生导出 =================
+
+    /**
+     * 从 SQLite 载入全部记录：students 与 award_labels 各一次按主键顺序扫描，按学号归并。
+     * @return 载入的记录数（库为空或读取失败时为 0，内存记录被清空）
+     */
+    public synchronized int reloadFromDb() {
+        long start = System.nanoTime();
+        recordMap.clear();
+        // 库中持久化的汇总列，载入后与按标签推导的值比对
+        LongObjectMap<long[]> storedTotals = new LongObjectMap<>();
+        int awards = 0;
+        synchronized (db) {
+            try (Statement st = db.connection().createStatement()) {
+                try (ResultSet rs = st.executeQuery(SELECT_STUDENTS_SQL)) {
+                    while (rs.next()) {
+                        StudentAwardRecord rec = new StudentAwardRecord(rs.getLong(1), nullToEmpty(rs.getString(2)), dict.intern(nullToEmpty(rs.getString(3))));
+                        storedTotals.put(rec.getStudentId(), new long[]{toFixed(rs.getDouble(4)), toFixed(rs.getDouble(5)), rs.getInt(6)});
+                        recordMap.put(rec.getStudentId(), rec);
+                    }
+                }
+                try (ResultSet rs = st.executeQuery(SELECT_AWARDS_SQL)) {
+                    StudentAwardRecord current = null;
+                    while (rs.next()) {
+                        long sid = rs.getLong(1);
+                        if (current == null || current.getStudentId() != sid) current = recordMap.get(sid);
+                        if (current == null) continue; // 无对应学生的孤立行
+                        current.addAward(dict.intern(nullToEmpty(rs.getString(3))), dict.intern(nullToEmpty(rs.getString(4))), rs.getString(5));
+                        awards++;
+                    }
+                }
+            } catch (Exception e) {
+                LoggerUtil.logException(LOGGER, e, "从数据库加载记录失败");
+                recordMap.clear();
+                return 0;
+            }
+        }
+        LOGGER.debug("从数据库载入 " + recordMap.size() + " 名学生 / " + awards + " 个奖项, 耗时 " + (System.nanoTime() - start) / 1_000_000 + " ms");
+        recomputeAllTotals();
+        int drifted = 0;
+        for (StudentAwardRecord r : recordMap.valuesInKeyOrder()) {
+            long[] stored = storedTotals.get(r.getStudentId());
+            if (stored[0] != r.getCertTotalFixedPoints() || stored[1] != r.getAwardTotalFixedPoints() || stored[2] != r.getRecordedAwardCount()) {
+                persistRecord(r);
+                drifted++;
+            }
+        }
+        if (drifted > 0) LOGGER.warn("数据库中 " + drifted + " 名学生的汇总列与奖项标签不一致, 已按标签重算并回写");
+        return recordMap.size();
+    }
+
+    /**
+     * 并行按奖项标签重建全部记录的分类计数（总分由计数推导），载入与导入后调用以保证一致。
+     * @return 计数发生变化的记录数
+     */
+    public synchronized int recomputeAllTotals() {
+        long start = System.nanoTime();
+        int changed = (int) recordMap.valuesInKeyOrder().parallelStream().filter(StudentAwardRecord::recomputeTotals).count();
+        LOGGER.debug("重算 " + recordMap.size() + " 名学生的总分, 变化 " + changed + " 名, 耗时 " + (System.nanoTime() - start) / 1_000_000 + " ms");
+        return changed;
+    }
+
+    private static long toFixed(double score) {
+        return Math.round(score * Config.SCORE_SCALE);
+    }
+
+    /**
+     * 数据库最后写入时间（取主文件与 -wal 文件中较新者；文件不存在时为 0）。
+     * 需在创建 NewDataManager 之前读取，建表/迁移本身也会改动文件。
+     */
+    public static long dbLastModified(String dbPath) {
+        return Math.max(new File(dbPath).lastModified(), new File(dbPath + "-wal").lastModified());
+    }
+
+    /**
+     * Student_Awards.xlsx 是否需要重新导出。导出状态记在库中 export_state 表：导出时的变更版本与文件长度、修改时间。
+     * 文件缺失、没有导出记录、文件已被替换或改动（长度/修改时间与记录不符），或库中有更新的变更版本时视为过期。
+     */
+    public boolean isExcelStale() {
+        if (!excelFile.exists()) return true;
+        synchronized (db) {
+            try {
+                PreparedStatement ps = db.prepare(SELECT_EXPORT_SQL);
+                ps.setString(1, excelFile.getAbsolutePath());
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (!rs.next() || rs.getLong(2) != excelFile.length() || rs.getLong(3) != excelFile.lastModified()) return true;
+                    return rs.getLong(1) < currentChangeVersion();
+                }
+            } catch (Exception e) {
+                LoggerUtil.logException(LOGGER, e, "查询导出状态失败");
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Excel 过期时整表重新导出。
+     * @return 是否执行了导出
+     */
+    public boolean exportExcelIfStale() {
+        if (!isExcelStale()) return false;
+        LOGGER.info("Excel 导出已过期或缺失, 从当前记录重新生成: " + excelFile.getName());
+        saveAll();
+        return true;
+    }
+
+    /**
+     * 登记一次整表导出：导出内容对应的变更版本与写出后的文件长度、修改时间。
+     */
+    private void recordExport(long version) {
+        synchronized (db) {
+            try {
+                PreparedStatement ps = db.prepare(RECORD_EXPORT_SQL);
+                ps.setString(1, excelFile.getAbsolutePath());
+                ps.setLong(2, version);
+                ps.setLong(3, excelFile.length());
+                ps.setLong(4, excelFile.lastModified());
+                ps.executeUpdate();
+            } catch (Exception e) {
+                LoggerUtil.logException(LOGGER, e, "登记导出状态失败");
+            }
+        }
+    }
+
+    /**
+     * 写回缓冲落盘后的回调：落盘前的文件正是登记过的导出时，导出版本前移到本次写入的最大版本。
+     * 其他路径的写库会删除导出记录，因此记录仍在即说明其后的变更都经由写回缓冲进入了 Excel。
+     */
+    private void excelFlushed(long version, long lengthBefore, long modifiedBefore) {
+        synchronized (db) {
+            try {
+                PreparedStatement ps = db.prepare(ADVANCE_EXPORT_SQL);
+                ps.setLong(1, version);
+                ps.setLong(2, excelFile.length());
+                ps.setLong(3, excelFile.lastModified());
+                ps.setString(4, excelFile.getAbsolutePath());
+                ps.setLong(5, lengthBefore);
+                ps.setLong(6, modifiedBefore);
+                ps.executeUpdate();
+            } catch (Exception e) {
+                LoggerUtil.logException(LOGGER, e, "更新导出状态失败");
+            }
+        }
+    }
+
+    /**
+     * 学生名单是否已与汇总完整同步过。旧版本只在评分时写库，其数据库只含评过分或导入过的学生，不能直接当作完整名单。
+     */
+    public boolean isSummarySynced() {
+        synchronized (db) {
+            try {
+                PreparedStatement ps = db.prepare("SELECT 1 FROM db_state WHERE key = ?");
+                ps.setString(1, SUMMARY_SYNCED_KEY);
+                try (ResultSet rs = ps.executeQuery()) {
+                    return rs.next();
+                }
+            } catch (Exception e) {
+                LoggerUtil.logException(LOGGER, e, "查询同步状态失败");
+                return false;
+            }
+        }
+    }
+
+    /**
+     * 记下汇总中的全部学生均已入库（一次性迁移标记）。
+     */
+    public void markSummarySynced() {
+        synchronized (db) {
+            try {
+                PreparedStatement ps = db.prepare("INSERT OR REPLACE INTO db_state (key, value) VALUES (?, ?)");
+                ps.setString(1, SUMMARY_SYNCED_KEY);
+                ps.setString(2, String.valueOf(System.currentTimeMillis()));
+                ps.executeUpdate();
+            } catch (Exception e) {
+                LoggerUtil.logException(LOGGER, e, "登记同步状态失败");
+            }
+        }
+    }
+
+    /**
+     * 不经写回缓冲的写库（批量写入、导入、源数据修补）使导出失效，在写库事务内调用（调用方持有 db 锁）。
+     */
+    private void invalidateExport() throws Exception {
+        PreparedStatement ps = db.prepare(INVALIDATE_EXPORT_SQL);
+        ps.setString(1, excelFile.getAbsolutePath());
+        ps.executeUpdate();
+    }
+
+    /**
+     * 批量写入一组记录到数据库（不重写 Excel，由 exportExcelIfStale 按需导出）。
+     * @return 写库成功返回 true（失败时已整体回滚）
+     */
+    public boolean persistRecords(Collection<StudentAwardRecord> records) {
+        return writeDbBatch(records, null);
+    }
+
+    static void writeHeaderRow(Row headerRow) {
+        headerRow.createCell(0).setCellValue(Config.COL_STUDENT_ID);
+        headerRow.createCell(1).setCellValue(Config.COL_NAME);
+        headerRow.createCell(2).setCellValue(Config.COL_CLASS);
+        headerRow.createCell(3).setCellValue(Config.COL_CERT_TOTAL);
+        headerRow.createCell(4).setCellValue(Config.COL_AWARD_TOTAL);
+        headerRow.createCell(5).setCellValue(Config.COL_RECORDED_COUNT);
+        headerRow.createCell(6).setCellValue("awards_json");
+    }
+
+    private Object[] toExcelRow(StudentAwardRecord r) throws Exception {
+        return new Object[]{
+                r.getStudentId(),
+                r.getName(),
+                r.getClassName(),
+                r.getCertTotalPoints(),
+                r.getAwardTotalPoints(),
+                r.getRecordedAwardCount(),
+                mapper.writeValueAsString(r.toAwardMaps())
+        };
+    }
+
+    /**
+     * 整表导出 Excel：经写回缓冲在其落盘锁内流式写出（内存中只保留 EXCEL_STREAM_ROW_WINDOW 行），原子替换目标文件，
+     * 替换后立即登记导出状态。
+     */
+    public void saveAll() {
+        long start = System.nanoTime();
+        long[] version = {0};
+        try {
+            int rows = excelSink.rewriteAll(sheet -> {
+                // 内存记录不落后于库，导出内容至少包含此版本
+                version[0] = currentChangeVersion();
+                writeHeaderRow(sheet.createRow(0));
+                int rowIndex = 1;
+                for (StudentAwardRecord r : recordMap.valuesInKeyOrder()) {
+                    ExcelWriteBehindSink.writeRow(sheet.createRow(rowIndex++), toExcelRow(r));
+                }
+                return rowIndex - 1;
+            }, () -> recordExport(version[0]));
+            LOGGER.debug("saveAll 写出 " + rows + " 行, 耗时 " + (System.nanoTime() - start) / 1_000_000 + " ms");
         } catch (Exception ex) {
             LoggerUtil.logException(LOGGER, ex, "写入 Excel 失败");
         }
     }
 
-    private void initDb(String dbPath) {
-        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + dbPath); Statement st = conn.createStatement()) {
-            st.execute("CREATE TABLE IF NOT EXISTS students (student_id INTEGER PRIMARY KEY, name TEXT, class_name TEXT, cert_total_points REAL DEFAULT 0.0, award_total_points REAL DEFAULT 0.0, recorded_award_count INTEGER DEFAULT 0, awards_json TEXT)");
-            st.execute("DROP TABLE IF EXISTS award_labels"); // Drop obsolete table
-            st.execute("DROP TABLE IF EXISTS student_history"); // Drop obsolete table
-            st.execute("DROP VIEW IF EXISTS v_student_points"); // Drop obsolete view
+    private void initDb() {
+        synchronized (db) {
+            try (Statement st = db.connection().createStatement()) {
+                st.execute("CREATE TABLE IF NOT EXISTS students (student_id INTEGER PRIMARY KEY, name TEXT, class_name TEXT, cert_total_points REAL DEFAULT 0.0, award_total_points REAL DEFAULT 0.0, recorded_award_count INTEGER DEFAULT 0, awards_json TEXT, change_version INTEGER DEFAULT 0)");
+                st.execute("DROP TABLE IF EXISTS student_history"); // Drop obsolete table
+                st.execute("DROP VIEW IF EXISTS v_student_points"); // Drop obsolete view
 
-            // Check and add columns if they don't exist (for migration)
-            addColumnIfNotExists(st, "students", "name", "TEXT");
-            addColumnIfNotExists(st, "students", "class_name", "TEXT");
-            addColumnIfNotExists(st, "students", "awards_json", "TEXT");
+                // Check and add columns if they don't exist (for migration)
+                addColumnIfNotExists(st, "students", "name", "TEXT");
+                addColumnIfNotExists(st, "students", "class_name", "TEXT");
+                addColumnIfNotExists(st, "students", "awards_json", "TEXT");
+                addColumnIfNotExists(st, "students", "change_version", "INTEGER DEFAULT 0");
+                st.execute("CREATE INDEX IF NOT EXISTS idx_students_change_version ON students (change_version)");
+                st.execute("CREATE TABLE IF NOT EXISTS snapshot_log (snapshot_id TEXT PRIMARY KEY, base_id TEXT, change_version INTEGER NOT NULL, direction TEXT NOT NULL, created_at INTEGER NOT NULL)");
+                st.execute("CREATE TABLE IF NOT EXISTS export_state (target TEXT PRIMARY KEY, change_version INTEGER NOT NULL, file_length INTEGER NOT NULL, file_modified INTEGER NOT NULL)");
+                st.execute("CREATE TABLE IF NOT EXISTS db_state (key TEXT PRIMARY KEY, value TEXT)");
 
-        } catch (Exception e) {
-            LoggerUtil.logException(LOGGER, e, "初始化数据库失败");
+                // 旧版 award_labels 结构不同（无 award_index），直接丢弃后按新结构重建
+                if (!columnExists(st, "award_labels", "award_index")) {
+                    st.execute("DROP TABLE IF EXISTS award_labels");
+                }
+                st.execute("CREATE TABLE IF NOT EXISTS award_labels (student_id INTEGER NOT NULL, award_index INTEGER NOT NULL, name TEXT, image TEXT, category TEXT NOT NULL DEFAULT '', PRIMARY KEY (student_id, award_index))");
+                st.execute("CREATE INDEX IF NOT EXISTS idx_award_labels_category ON award_labels (category)");
+            } catch (Exception e) {
+                LoggerUtil.logException(LOGGER, e, "初始化数据库失败");
+                return;
+            }
+            migrateAwardsJson();
         }
     }
 
@@ -128,106 +529,372 @@ public class NewDataManager {
         }
     }
 
+    private boolean columnExists(Statement st, String tableName, String columnName) {
+        try (ResultSet rs = st.executeQuery("PRAGMA table_info(" + tableName + ")")) {
+            while (rs.next()) {
+                if (columnName.equalsIgnoreCase(rs.getString("name"))) return true;
+            }
+        } catch (Exception ignore) {
+            // 表不存在
+        }
+        return false;
+    }
+
+    /**
+     * 迁移：把旧版 students.awards_json 拆成 award_labels 行，迁移后清空该列。
+     */
+    private void migrateAwardsJson() {
+        try {
+            Connection conn = db.connection();
+            conn.setAutoCommit(false);
+            int migrated = 0;
+            try (Statement st = conn.createStatement();
+                 ResultSet rs = st.executeQuery("SELECT student_id, awards_json FROM students WHERE awards_json IS NOT NULL AND awards_json <> ''")) {
+                PreparedStatement ps = db.prepare(UPSERT_AWARD_SQL);
+                while (rs.next()) {
+                    long sid = rs.getLong(1);
+                    List<Map<String, String>> awards = mapper.readValue(rs.getString(2), new TypeReference<>() {});
+                    for (int i = 0; i < awards.size(); i++) {
+                        Map<String, String> a = awards.get(i);
+                        bindAward(ps, sid, i, a.get("name"), a.get("image"), a.get("category"));
+                        ps.addBatch();
+                    }
+                    migrated++;
+                }
+                ps.executeBatch();
+            }
+            if (migrated > 0) {
+                try (Statement st = conn.createStatement()) {
+                    st.executeUpdate("UPDATE students SET awards_json = NULL WHERE awards_json IS NOT NULL");
+                }
+                LOGGER.info("已将 " + migrated + " 名学生的 awards_json 迁移到 award_labels");
+            }
+            conn.commit();
+        } catch (Exception e) {
+            LoggerUtil.logException(LOGGER, e, "迁移 awards_json 失败");
+            rollbackQuietly(db);
+        } finally {
+            restoreAutoCommit(db);
+        }
+    }
 
     // 公开 writeDb 以支持批量重建使用
     public void writeDb(StudentAwardRecord r) {
-        String sql = "INSERT INTO students (student_id, name, class_name, cert_total_points, award_total_points, recorded_award_count, awards_json) VALUES (?,?,?,?,?,?,?) ON CONFLICT(student_id) DO UPDATE SET name=excluded.name, class_name=excluded.class_name, cert_total_points=excluded.cert_total_points, award_total_points=excluded.award_total_points, recorded_award_count=excluded.recorded_award_count, awards_json=excluded.awards_json";
-        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + dbFile.getPath()); PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setLong(1, r.getStudentId());
-            ps.setString(2, r.getName());
-            ps.setString(3, r.getClassName());
-            ps.setDouble(4, r.getCertTotalPoints());
-            ps.setDouble(5, r.getAwardTotalPoints());
-            ps.setInt(6, r.getRecordedAwardCount());
-            ps.setString(7, mapper.writeValueAsString(r.getAwards()));
-            ps.executeUpdate();
+        synchronized (db) {
+            try {
+                db.connection().setAutoCommit(false);
+                addStudentBatch(r, nextChangeVersion());
+                executeStudentBatch();
+                invalidateExport();
+                db.connection().commit();
+            } catch (Exception e) {
+                LoggerUtil.logException(LOGGER, e, "写入数据库失败");
+                rollbackQuietly(db);
+            } finally {
+                restoreAutoCommit(db);
+            }
+        }
+    }
+
+    // ================= 持久化流水线：写线程回调 =================
+
+    private CompletableFuture<Void> submit(RecordDelta delta) {
+        try {
+            return pipeline.submit(delta);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return CompletableFuture.failedFuture(e);
+        } catch (IllegalStateException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * 写一批已合并的快照：标签变更只更新对应 award_labels 行与汇总列，行不存在或整条写入时走 upsert；
+     * 全部在一个事务内完成，之后登记 Excel 写回，并在 journal 事件全部落库后清空 journal。
+     */
+    private void writeDeltas(List<RecordDelta> deltas, int submitted) throws Exception {
+        long version;
+        synchronized (db) {
+            try {
+                db.connection().setAutoCommit(false);
+                version = nextChangeVersion();
+                PreparedStatement label = db.prepare(UPDATE_LABEL_SQL);
+                PreparedStatement totals = db.prepare(UPDATE_TOTALS_SQL);
+                Set<RecordDelta> upserts = new LinkedHashSet<>();
+                List<RecordDelta> totalOwners = new ArrayList<>();
+                List<RecordDelta> labelOwners = new ArrayList<>();
+                for (RecordDelta d : deltas) {
+                    if (d.isFullWrite()) {
+                        upserts.add(d);
+                        continue;
+                    }
+                    totals.setDouble(1, d.record.getCertTotalPoints());
+                    totals.setDouble(2, d.record.getAwardTotalPoints());
+                    totals.setInt(3, d.record.getRecordedAwardCount());
+                    totals.setLong(4, version);
+                    totals.setLong(5, d.studentId);
+                    totals.addBatch();
+                    totalOwners.add(d);
+                    for (int idx : d.changedIndices) {
+                        label.setString(1, nullToEmpty(d.record.getAwardLabel(idx)));
+                        label.setLong(2, d.studentId);
+                        label.setInt(3, idx);
+                        label.addBatch();
+                        labelOwners.add(d);
+                    }
+                }
+                if (!totalOwners.isEmpty()) {
+                    int[] counts = totals.executeBatch();
+                    for (int i = 0; i < counts.length; i++) if (counts[i] == 0) upserts.add(totalOwners.get(i));
+                    counts = label.executeBatch();
+                    for (int i = 0; i < counts.length; i++) if (counts[i] == 0) upserts.add(labelOwners.get(i));
+                }
+                for (RecordDelta d : upserts) addStudentBatch(d.record, version);
+                if (!upserts.isEmpty()) executeStudentBatch();
+                db.connection().commit();
+            } catch (Exception e) {
+                rollbackQuietly(db);
+                throw e;
+            } finally {
+                restoreAutoCommit(db);
+            }
+        }
+        for (RecordDelta d : deltas) {
+            excelSink.markDirty(d.studentId, toExcelRow(d.record), version);
+        }
+        synchronized (journalLock) {
+            persistedDeltas += submitted;
+            resetJournalIfCaughtUp();
+        }
+    }
+
+    // 调用方持有 journalLock
+    private void resetJournalIfCaughtUp() {
+        if (journal == null || persistedDeltas != submittedDeltas || journal.eventCount() == 0) return;
+        try {
+            journal.reset();
         } catch (Exception e) {
-            LoggerUtil.logException(LOGGER, e, "写入数据库失败");
-        }
-    }
-
-    public void reloadFromExcel() {
-        if (!excelFile.exists()) return;
-        try (FileInputStream fis = new FileInputStream(excelFile); Workbook wb = new XSSFWorkbook(fis)) {
-            Sheet sheet = wb.getSheet(Config.SHEET_MAIN);
-            if (sheet == null) return;
-            Row header = sheet.getRow(0);
-            if (header == null) return;
-            recordMap.clear();
-            int colId = 0, colName = 1, colClass = 2, colCert = 3, colAward = 4, colCount = 5, colJson = 6;
-            for (int r = 1; r <= sheet.getLastRowNum(); r++) {
-                Row row = sheet.getRow(r);
-                if (row == null) continue;
-                Cell cId = row.getCell(colId);
-                if (cId == null) continue;
-                long sid = (long) cId.getNumericCellValue();
-                String name = getString(row.getCell(colName));
-                String clazz = getString(row.getCell(colClass));
-                StudentAwardRecord rec = new StudentAwardRecord(sid, name, clazz);
-
-                rec.setCertTotalPoints(getNumeric(row.getCell(colCert)));
-                rec.setAwardTotalPoints(getNumeric(row.getCell(colAward)));
-                rec.setRecordedAwardCount((int) getNumeric(row.getCell(colCount)));
-
-                String json = getString(row.getCell(colJson));
-                if (json != null && !json.isEmpty()) {
-                    List<Map<String, String>> awards = mapper.readValue(json, new TypeReference<>() {});
-                    awards.forEach(award -> rec.addAward(award.get("name"), award.get("image"), award.get("category")));
+            LoggerUtil.logException(LOGGER, e, "清空评分 journal 失败, 下次启动将重放");
+        }
+    }
+
+    /**
+     * 批量写库：单个事务内按 Config.DB_BATCH_SIZE 分块 addBatch/executeBatch，失败整体回滚。
+     * @return 写库成功返回 true；失败时已记录日志，调用方不应再导出 Excel（导出内容将没有数据库支撑）
+     */
+    public boolean writeDbBatch(Collection<StudentAwardRecord> records, ProgressListener listener) {
+        int total = records.size();
+        if (total == 0) return true;
+        long start = System.nanoTime();
+        try {
+            writeStudents(records, listener);
+        } catch (Exception e) {
+            LoggerUtil.logException(LOGGER, e, "批量写入数据库失败");
+            return false;
+        }
+        long elapsedMs = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+        LOGGER.info("批量写库完成: " + total + " 条, 耗时 " + elapsedMs + " ms, " + (total * 1000L / elapsedMs) + " 条/秒");
+        return true;
+    }
+
+    private void writeStudents(Collection<StudentAwardRecord> records, ProgressListener listener) throws Exception {
+        int total = records.size();
+        synchronized (db) {
+            try {
+                db.connection().setAutoCommit(false);
+                long version = nextChangeVersion();
+                int done = 0;
+                for (StudentAwardRecord r : records) {
+                    addStudentBatch(r, version);
+                    if (++done % Config.DB_BATCH_SIZE == 0) {
+                        executeStudentBatch();
+                        if (listener != null) listener.onProgress(done, total);
+                    }
                 }
-                recordMap.put(sid, rec);
+                executeStudentBatch();
+                invalidateExport();
+                db.connection().commit();
+                if (listener != null) listener.onProgress(done, total);
+            } catch (Exception e) {
+                rollbackQuietly(db);
+                throw e;
+            } finally {
+                restoreAutoCommit(db);
             }
-        } catch (Exception ex) {
-            LoggerUtil.logException(LOGGER, ex, "重新加载 Excel 失败");
         }
     }
 
-    private String getString(Cell c) {
-        return c == null ? "" : c.getCellType() == CellType.STRING ? c.getStringCellValue() : c.toString();
+    /**
+     * 按学号、奖项序号返回所有未评分奖项（走 category 索引，不解析 JSON）。
+     */
+    public Map<Long, List<Integer>> queryUnscoredAwards() {
+        Map<Long, List<Integer>> result = new LinkedHashMap<>();
+        synchronized (db) {
+            try {
+                PreparedStatement ps = db.prepare("SELECT student_id, award_index FROM award_labels WHERE category = '' ORDER BY student_id, award_index");
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        result.computeIfAbsent(rs.getLong(1), k -> new ArrayList<>()).add(rs.getInt(2));
+                    }
+                }
+            } catch (Exception e) {
+                LoggerUtil.logException(LOGGER, e, "查询未评分奖项失败");
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 各分类的奖项数量（未评分记为空串）。
+     */
+    public Map<String, Integer> countAwardsByCategory() {
+        Map<String, Integer> result = new LinkedHashMap<>();
+        synchronized (db) {
+            try {
+                PreparedStatement ps = db.prepare("SELECT category, COUNT(*) FROM award_labels GROUP BY category");
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) result.put(rs.getString(1), rs.getInt(2));
+                }
+            } catch (Exception e) {
+                LoggerUtil.logException(LOGGER, e, "统计奖项分类失败");
+            }
+        }
+        return result;
+    }
+
+    private void addStudentBatch(StudentAwardRecord r, long version) throws Exception {
+        PreparedStatement ps = db.prepare(UPSERT_STUDENT_SQL);
+        ps.setLong(1, r.getStudentId());
+        ps.setString(2, r.getName());
+        ps.setString(3, r.getClassName());
+        ps.setDouble(4, r.getCertTotalPoints());
+        ps.setDouble(5, r.getAwardTotalPoints());
+        ps.setInt(6, r.getRecordedAwardCount());
+        ps.setLong(7, version);
+        ps.addBatch();
+
+        PreparedStatement award = db.prepare(UPSERT_AWARD_SQL);
+        for (int i = 0; i < r.getAwardCount(); i++) {
+            bindAward(award, r.getStudentId(), i, r.getAwardName(i), r.getAwardImage(i), r.getAwardLabel(i));
+            award.addBatch();
+        }
+        PreparedStatement trim = db.prepare(TRIM_AWARDS_SQL);
+        trim.setLong(1, r.getStudentId());
+        trim.setInt(2, r.getAwardCount());
+        trim.addBatch();
+    }
+
+    /**
+     * 本事务写入的学生行使用的变更版本：库中最大版本 + 1（走 change_version 索引）。调用方持有 db 锁并已开启事务。
+     */
+    private long nextChangeVersion() throws Exception {
+        try (ResultSet rs = db.prepare(NEXT_VERSION_SQL).executeQuery()) {
+            return rs.next() ? rs.getLong(1) : 1;
+        }
     }
 
-    private double getNumeric(Cell c) {
-        return c == null || c.getCellType() != CellType.NUMERIC ? 0.0 : c.getNumericCellValue();
+    private void executeStudentBatch() throws Exception {
+        db.prepare(UPSERT_STUDENT_SQL).executeBatch();
+        db.prepare(UPSERT_AWARD_SQL).executeBatch();
+        db.prepare(TRIM_AWARDS_SQL).executeBatch();
     }
 
-    private synchronized void flushRecordToExcel(StudentAwardRecord r) {
+    private static void bindAward(PreparedStatement ps, long sid, int index, String name, String image, String category) throws Exception {
+        ps.setLong(1, sid);
+        ps.setInt(2, index);
+        ps.setString(3, nullToEmpty(name));
+        ps.setString(4, nullToEmpty(image));
+        ps.setString(5, nullToEmpty(category));
+    }
+
+    private static String nullToEmpty(String s) {
+        return s == null ? "" : s;
+    }
+
+    private void rollbackQuietly(SqliteConnectionHolder holder) {
         try {
-            if (!excelFile.exists()) { saveAll(); return; }
-            try (FileInputStream fis = new FileInputStream(excelFile); Workbook wb = new XSSFWorkbook(fis)) {
-                Sheet sheet = wb.getSheet(org.example.config.Config.SHEET_MAIN);
-                if (sheet == null) { saveAll(); return; }
-                int idCol = 0; int targetRowIndex = -1;
-                for (int i = 1; i <= sheet.getLastRowNum(); i++) {
-                    Row row = sheet.getRow(i); if (row == null) continue;
-                    Cell c = row.getCell(idCol);
-                    if (c != null && c.getCellType() == CellType.NUMERIC && (long)c.getNumericCellValue() == r.getStudentId()) { targetRowIndex = i; break; }
+            holder.connection().rollback();
+        } catch (Exception ex) {
+            LoggerUtil.logException(LOGGER, ex, "回滚失败");
+        }
+    }
+
+    private void restoreAutoCommit(SqliteConnectionHolder holder) {
+        try {
+            holder.connection().setAutoCommit(true);
+        } catch (Exception ex) {
+            LoggerUtil.logException(LOGGER, ex, "恢复自动提交失败");
+        }
+    }
+
+    /**
+     * 从 Student_Awards.xlsx 载入记录（旧版本只有 Excel 数据时的退路），只更新内存，调用方负责写库。
+     * @return 载入的记录数
+     */
+    public int reloadFromExcel() {
+        if (!excelFile.exists()) return 0;
+        final int colId = 0, colName = 1, colClass = 2, colJson = 6;
+        try {
+            XlsxStreamReader.readSheet(excelFile, Config.SHEET_MAIN, (r, cells) -> {
+                if (r == 0) {
+                    recordMap.clear();
+                    return;
                 }
-                Row row = (targetRowIndex == -1) ? sheet.createRow(sheet.getLastRowNum() + 1) : sheet.getRow(targetRowIndex);
-                row.createCell(0).setCellValue(r.getStudentId());
-                row.createCell(1).setCellValue(r.getName());
-                row.createCell(2).setCellValue(r.getClassName());
-                row.createCell(3).setCellValue(r.getCertTotalPoints());
-                row.createCell(4).setCellValue(r.getAwardTotalPoints());
-                row.createCell(5).setCellValue(r.getRecordedAwardCount());
-                row.createCell(6).setCellValue(mapper.writeValueAsString(r.getAwards()));
-
-                try (FileOutputStream fos = new FileOutputStream(excelFile)) { wb.write(fos); }
-            }
+                String idStr = XlsxStreamReader.cell(cells, colId);
+                if (idStr == null || idStr.isEmpty()) return;
+                long sid;
+                try {
+                    sid = (long) Double.parseDouble(idStr);
+                } catch (NumberFormatException ex) {
+                    return;
+                }
+                String name = getString(XlsxStreamReader.cell(cells, colName));
+                String clazz = getString(XlsxStreamReader.cell(cells, colClass));
+                // 总分 / 已录入数列由标签推导，不再读取
+                StudentAwardRecord rec = new StudentAwardRecord(sid, name, dict.intern(clazz));
+
+                String json = getString(XlsxStreamReader.cell(cells, colJson));
+                if (!json.isEmpty()) {
+                    List<Map<String, String>> awards = mapper.readValue(json, new TypeReference<>() {});
+                    awards.forEach(award -> rec.addAward(dict.intern(award.get("name")), dict.intern(award.get("image")), award.get("category")));
+                }
+                recordMap.put(sid, rec);
+            });
         } catch (Exception ex) {
-            LoggerUtil.logException(LOGGER, ex, "刷新 Excel 行失败");
+            LoggerUtil.logException(LOGGER, ex, "重新加载 Excel 失败");
         }
+        recomputeAllTotals();
+        return recordMap.size();
+    }
+
+    private String getString(String v) {
+        return v == null ? "" : v;
+    }
+
+    /**
+     * 全部记录，按学号升序（有序视图缓存在映射内，记录增删后首次调用时重建）。
+     */
+    public List<StudentAwardRecord> getAllRecords() {
+        return recordMap.valuesInKeyOrder();
     }
 
-    public Collection<StudentAwardRecord> getAllRecords() {
-        return recordMap.values();
+    public boolean importRecords(Collection<StudentAwardRecord> records, boolean overwriteExisting) {
+        return importRecords(records, overwriteExisting, null);
     }
 
-    public synchronized void importRecords(Collection<StudentAwardRecord> records, boolean overwriteExisting) {
+    /**
+     * 导入记录：单事务批量写 DB，成功后整表写一次 Excel。
+     * @return 写库成功返回 true；失败时不导出 Excel（记录仍保留在内存中）
+     */
+    public synchronized boolean importRecords(Collection<StudentAwardRecord> records, boolean overwriteExisting, ProgressListener listener) {
+        flush(); // 先写完排队中的评分，避免其在导入之后覆盖导入的数据
         if (overwriteExisting) recordMap.clear();
         for (StudentAwardRecord r : records) {
             recordMap.put(r.getStudentId(), r);
-            // 直接持久化（写 DB + Excel）
-            persistRecord(r);
         }
+        recomputeAllTotals();
+        return writeAndExport(records, listener);
     }
 
     // ================= 新增：为快照重建提供的辅助方法 =================
@@ -239,24 +906,251 @@ public class NewDataManager {
      * 清空内存 + 删除现有文件并重新初始化数据库（不生成 Excel，调用者再写入）。
      */
     public synchronized void clearAndRecreateStorage() {
+        flush();
         recordMap.clear();
+        excelSink.invalidate();
+        synchronized (journalLock) {
+            if (journal != null) {
+                try {
+                    journal.reset();
+                } catch (Exception e) {
+                    LoggerUtil.logException(LOGGER, e, "清空评分 journal 失败");
+                }
+            }
+        }
         if (excelFile.exists() && !excelFile.delete()) {
             LOGGER.warn("Excel 文件删除失败: " + excelFile.getAbsolutePath());
         }
-        if (dbFile.exists() && !dbFile.delete()) {
+        if (!db.closeAndDelete()) {
             LOGGER.warn("数据库文件删除失败: " + dbFile.getAbsolutePath());
         }
-        initDb(dbFile.getPath());
+        db.claimSchemaInit();
+        initDb();
     }
 
     /**
      * 批量加载记录（仅写入 DB，最后一次性写 Excel），用于快照导入效率。现有内容应已通过 clearAndRecreateStorage 清空。
      */
-    public synchronized void bulkLoadRecords(Collection<StudentAwardRecord> records) {
+    public boolean bulkLoadRecords(Collection<StudentAwardRecord> records) {
+        return bulkLoadRecords(records, null);
+    }
+
+    /**
+     * @return 写库成功返回 true；失败时不导出 Excel
+     */
+    public synchronized boolean bulkLoadRecords(Collection<StudentAwardRecord> records, ProgressListener listener) {
+        flush();
         for (StudentAwardRecord r : records) {
             recordMap.put(r.getStudentId(), r);
-            writeDb(r);
         }
+        recomputeAllTotals();
+        return writeAndExport(records, listener);
+    }
+
+    /**
+     * 写库成功后才整表导出 Excel：清空重建后写库失败时若照常导出，Excel 将没有数据库支撑，下次启动即丢失这些数据。
+     */
+    private boolean writeAndExport(Collection<StudentAwardRecord> records, ProgressListener listener) {
+        if (!writeDbBatch(records, listener)) {
+            LOGGER.error("写库失败, 未导出 Excel, 共 " + records.size() + " 条记录未持久化");
+            return false;
+        }
+        saveAll();
+        return true;
+    }
+
+    // ================= 流式导入：按批写入 =================
+
+    /**
+     * 流式导入开始：先写完排队中的评分，overwriteExisting 时清空内存记录。之后依次调用 importBatch，最后 finishImport。
+     */
+    public synchronized void beginImport(boolean overwriteExisting) {
+        flush();
+        if (overwriteExisting) recordMap.clear();
+    }
+
+    /**
+     * 导入一批记录：按标签推导汇总、并入内存，并在单个事务内写库；Excel 留给 finishImport 一次导出。
+     * @return 写库成功返回 true（失败时本批已回滚，但记录仍保留在内存中）
+     */
+    public synchronized boolean importBatch(List<StudentAwardRecord> batch) {
+        for (StudentAwardRecord r : batch) {
+            r.recomputeTotals();
+            recordMap.put(r.getStudentId(), r);
+        }
+        try {
+            writeStudents(batch, null);
+            return true;
+        } catch (Exception e) {
+            LoggerUtil.logException(LOGGER, e, "导入批次写库失败, 本批 " + batch.size() + " 条");
+            return false;
+        }
+    }
+
+    /**
+     * 流式导入结束：整表导出一次 Excel。
+     */
+    public synchronized void finishImport() {
         saveAll();
     }
+
+    // ================= 源数据增量修补 =================
+
+    /**
+     * 用汇总增量构建得到的学生奖项修补记录：新学生直接加入；已有学生按 (奖项名, 图片, 第几次出现) 对应奖项，
+     * 对应上的保留原评分标签，新出现的待评分，源中已不存在的去掉。只写内容确有变化的学生（单事务），Excel 留待按需导出。
+     * 奖项序号可能因此改变，调用前应先 replayJournal。
+     * @param sourceRecords 由源数据聚合出的记录（标签为空）
+     * @return 写入的学生数；写库失败返回 -1（内存中的记录已更新）
+     */
+    public synchronized int applySourceChanges(Collection<StudentAwardRecord> sourceRecords) {
+        flush();
+        List<StudentAwardRecord> changed = new ArrayList<>();
+        for (StudentAwardRecord src : sourceRecords) {
+            StudentAwardRecord old = recordMap.get(src.getStudentId());
+            if (old != null) {
+                carryLabels(old, src);
+                if (sameContent(old, src)) continue;
+            }
+            src.recomputeTotals();
+            recordMap.put(src.getStudentId(), src);
+            changed.add(src);
+        }
+        if (changed.isEmpty()) return 0;
+        try {
+            writeStudents(changed, null);
+            return changed.size();
+        } catch (Exception e) {
+            LoggerUtil.logException(LOGGER, e, "增量修补写库失败, " + changed.size() + " 名学生");
+            return -1;
+        }
+    }
+
+    private static void carryLabels(StudentAwardRecord from, StudentAwardRecord to) {
+        Map<String, String> labels = new HashMap<>();
+        Map<String, Integer> seen = new HashMap<>();
+        for (int i = 0; i < from.getAwardCount(); i++) {
+            labels.put(occurrenceKey(from, i, seen), from.getAwardLabel(i));
+        }
+        seen.clear();
+        for (int i = 0; i < to.getAwardCount(); i++) {
+            String label = labels.get(occurrenceKey(to, i, seen));
+            if (label != null && !label.isEmpty()) to.setAwardLabel(i, label);
+        }
+    }
+
+    private static String occurrenceKey(StudentAwardRecord r, int i, Map<String, Integer> seen) {
+        String key = r.getAwardName(i) + '\u0001' + r.getAwardImage(i);
+        return key + '\u0001' + seen.merge(key, 1, Integer::sum);
+    }
+
+    private static boolean sameContent(StudentAwardRecord a, StudentAwardRecord b) {
+        if (!Objects.equals(a.getName(), b.getName()) || !Objects.equals(a.getClassName(), b.getClassName())
+                || a.getAwardCount() != b.getAwardCount()) return false;
+        for (int i = 0; i < a.getAwardCount(); i++) {
+            if (!Objects.equals(a.getAwardName(i), b.getAwardName(i)) || !Objects.equals(a.getAwardImage(i), b.getAwardImage(i))
+                    || !Objects.equals(a.getAwardLabel(i), b.getAwardLabel(i))) return false;
+        }
+        return true;
+    }
+
+    // ================= 增量快照：变更版本与快照日志 =================
+
+    /**
+     * 当前已提交的最大变更版本（空库为 0）。调用前应先 flush，排队中的评分尚未分配版本。
+     */
+    public long currentChangeVersion() {
+        synchronized (db) {
+            try (ResultSet rs = db.prepare("SELECT COALESCE(MAX(change_version), 0) FROM students").executeQuery()) {
+                return rs.next() ? rs.getLong(1) : 0;
+            } catch (Exception e) {
+                LoggerUtil.logException(LOGGER, e, "查询变更版本失败");
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * 变更版本大于 version 的学生记录，按学号升序（走 change_version 索引）。
+     * @return 查询失败时返回 null，与“没有变更”区分
+     */
+    public synchronized List<StudentAwardRecord> recordsChangedSince(long version) {
+        List<StudentAwardRecord> result = new ArrayList<>();
+        synchronized (db) {
+            try {
+                PreparedStatement ps = db.prepare("SELECT student_id FROM students WHERE change_version > ? ORDER BY student_id");
+                ps.setLong(1, version);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        StudentAwardRecord r = recordMap.get(rs.getLong(1));
+                        if (r != null) result.add(r);
+                    }
+                }
+            } catch (Exception e) {
+                LoggerUtil.logException(LOGGER, e, "查询增量记录失败");
+                return null;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 登记一次快照导出/导入：记下当时的变更版本，之后相对该快照的增量即版本更大的记录。
+     * @param baseId 增量快照的基准快照，全量快照为 null
+     * @param direction "export" 或 "import"
+     */
+    public void logSnapshot(String snapshotId, String baseId, long version, String direction) {
+        synchronized (db) {
+            try {
+                PreparedStatement ps = db.prepare("INSERT OR REPLACE INTO snapshot_log (snapshot_id, base_id, change_version, direction, created_at) VALUES (?,?,?,?,?)");
+                ps.setString(1, snapshotId);
+                ps.setString(2, baseId);
+                ps.setLong(3, version);
+                ps.setString(4, direction);
+                ps.setLong(5, System.currentTimeMillis());
+                ps.executeUpdate();
+            } catch (Exception e) {
+                LoggerUtil.logException(LOGGER, e, "登记快照失败: " + snapshotId);
+            }
+        }
+    }
+
+    /**
+     * 快照登记时的变更版本；本库未导出/导入过该快照时返回 -1。
+     */
+    public long snapshotVersion(String snapshotId) {
+        synchronized (db) {
+            try {
+                PreparedStatement ps = db.prepare("SELECT change_version FROM snapshot_log WHERE snapshot_id = ?");
+                ps.setString(1, snapshotId);
+                try (ResultSet rs = ps.executeQuery()) {
+                    return rs.next() ? rs.getLong(1) : -1;
+                }
+            } catch (Exception e) {
+                LoggerUtil.logException(LOGGER, e, "查询快照登记失败");
+                return -1;
+            }
+        }
+    }
+
+    /**
+     * 最近一次导出或导入的快照编号，没有时返回 null。
+     */
+    public String latestSnapshotId() {
+        synchronized (db) {
+            try (ResultSet rs = db.prepare("SELECT snapshot_id FROM snapshot_log ORDER BY created_at DESC, rowid DESC LIMIT 1").executeQuery()) {
+                return rs.next() ? rs.getString(1) : null;
+            } catch (Exception e) {
+                LoggerUtil.logException(LOGGER, e, "查询快照登记失败");
+                return null;
+            }
+        }
+    }
+
+    /**
+     * 批量写库进度回调（每提交一个分块调用一次）。
+     */
+    public interface ProgressListener {
+        void onProgress(int done, int total);
+    }
 }
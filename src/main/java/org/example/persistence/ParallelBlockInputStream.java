@@ -0,0 +1,102 @@
+package org.example.persistence;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * 分块并行解压输入流：按 BlockCodec 的长度标记切出压缩块，提前在 ForkJoinPool 上解压最多 window 块，
+ * 按原顺序交给读取方。遇到不带长度标记的数据时，等已提交的块读完后对剩余部分顺序解压。
+ */
+final class ParallelBlockInputStream extends InputStream {
+    private final PushbackInputStream in;
+    private final BlockCodec codec;
+    private final int window;
+    private final ArrayDeque<CompletableFuture<byte[]>> inflight = new ArrayDeque<>();
+    private byte[] current = new byte[0];
+    private int pos;
+    private boolean sourceDone;
+    private boolean foreign;
+    private InputStream tail;
+
+    ParallelBlockInputStream(InputStream in, BlockCodec codec, int window) {
+        this.in = new PushbackInputStream(in, BlockCodec.PUSHBACK_BYTES);
+        this.codec = codec;
+        this.window = Math.max(1, window);
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (tail != null) return tail.read();
+        if (pos == current.length && !nextBlock()) return tail != null ? tail.read() : -1;
+        return current[pos++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) return 0;
+        if (tail != null) return tail.read(b, off, len);
+        if (pos == current.length && !nextBlock()) return tail != null ? tail.read(b, off, len) : -1;
+        int n = Math.min(len, current.length - pos);
+        System.arraycopy(current, pos, b, off, n);
+        pos += n;
+        return n;
+    }
+
+    @Override
+    public void close() throws IOException {
+        inflight.forEach(f -> f.cancel(false));
+        inflight.clear();
+        if (tail != null) tail.close();
+        in.close();
+    }
+
+    /**
+     * 取下一块已解压数据；没有更多块时返回 false（此时若为外来数据则已切换到 tail）。
+     */
+    private boolean nextBlock() throws IOException {
+        while (true) {
+            fillWindow();
+            if (inflight.isEmpty()) {
+                if (foreign) tail = codec.sequential(in);
+                return false;
+            }
+            current = join(inflight.pollFirst());
+            pos = 0;
+            if (current.length > 0) return true;
+        }
+    }
+
+    private void fillWindow() throws IOException {
+        while (!sourceDone && !foreign && inflight.size() < window) {
+            byte[] block = codec.readBlock(in);
+            if (block == null) {
+                sourceDone = true;
+            } else if (block == BlockCodec.FOREIGN) {
+                foreign = true;
+            } else {
+                inflight.addLast(CompletableFuture.supplyAsync(() -> {
+                    try {
+                        return codec.decompress(block);
+                    } catch (IOException e) {
+                        throw new CompletionException(e);
+                    }
+                }, ForkJoinPool.commonPool()));
+            }
+        }
+    }
+
+    private static byte[] join(CompletableFuture<byte[]> f) throws IOException {
+        try {
+            return f.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException io) throw io;
+            throw new IOException("解压块失败", cause);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package org.example.persistence;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * 分块并行压缩输出流：写入的数据按 blockSize 切块，每块在 ForkJoinPool 上独立压缩（见 BlockCodec），
+ * 按原顺序写出。最多 window 个块同时在途，内存占用约为 window × blockSize。
+ */
+final class ParallelBlockOutputStream extends OutputStream {
+    private final OutputStream out;
+    private final BlockCodec codec;
+    private final int window;
+    private final ArrayDeque<CompletableFuture<byte[]>> inflight = new ArrayDeque<>();
+    private byte[] buf;
+    private int count;
+    private boolean wroteAny;
+    private boolean closed;
+
+    ParallelBlockOutputStream(OutputStream out, BlockCodec codec, int blockSize, int window) {
+        this.out = out;
+        this.codec = codec;
+        this.window = Math.max(1, window);
+        this.buf = new byte[blockSize];
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (count == buf.length) submitBlock();
+        buf[count++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            if (count == buf.length) submitBlock();
+            int n = Math.min(len, buf.length - count);
+            System.arraycopy(b, off, buf, count, n);
+            count += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    /**
+     * 只把已压缩完成的块写出；未满的块留在缓冲中，避免产生过小的块。
+     */
+    @Override
+    public void flush() throws IOException {
+        while (!inflight.isEmpty() && inflight.peekFirst().isDone()) {
+            writeHead();
+        }
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        try {
+            // 空输入也写出一个空块，保证文件本身是合法的 gzip / LZ4
+            if (count > 0 || !wroteAny) submitBlock();
+            while (!inflight.isEmpty()) writeHead();
+        } finally {
+            out.close();
+        }
+    }
+
+    private void submitBlock() throws IOException {
+        byte[] data = buf;
+        int len = count;
+        inflight.addLast(CompletableFuture.supplyAsync(() -> {
+            try {
+                return codec.compress(data, len);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, ForkJoinPool.commonPool()));
+        wroteAny = true;
+        buf = new byte[buf.length];
+        count = 0;
+        while (inflight.size() >= window) writeHead();
+    }
+
+    private void writeHead() throws IOException {
+        try {
+            out.write(inflight.pollFirst().join());
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException io) throw io;
+            throw new IOException("压缩块失败", cause);
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package org.example.persistence;
+
+import org.example.util.LoggerUtil;
+import org.slf4j.Logger;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 异步持久化流水线：调用方把 RecordDelta 放入有界队列后立即拿到 CompletableFuture，
+ * 单个写线程批量取出、按学号合并后交给 BatchWriter 一次写入，成功后完成对应的 future。
+ * 队列满时 submit 阻塞（背压）；flush 放入屏障，等待此前提交的全部变更写完。
+ */
+final class PersistencePipeline implements AutoCloseable {
+    private static final Logger LOGGER = LoggerUtil.getLogger(PersistencePipeline.class.getName());
+
+    /**
+     * 批量写入回调。deltas 已按学号合并；submitted 为本批覆盖的原始提交数。
+     */
+    interface BatchWriter {
+        void write(List<RecordDelta> deltas, int submitted) throws Exception;
+    }
+
+    private static final class Entry {
+        final RecordDelta delta; // null 表示屏障
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        Entry(RecordDelta delta) {
+            this.delta = delta;
+        }
+    }
+
+    private static final Entry STOP = new Entry(null);
+
+    private final BlockingQueue<Entry> queue;
+    private final int maxBatch;
+    private final BatchWriter writer;
+    private final Thread thread;
+    private volatile boolean closed;
+
+    PersistencePipeline(int capacity, int maxBatch, BatchWriter writer) {
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.maxBatch = maxBatch;
+        this.writer = writer;
+        this.thread = new Thread(this::run, "persistence-writer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * 提交一条变更；队列已满时阻塞直到写线程腾出空间。
+     */
+    CompletableFuture<Void> submit(RecordDelta delta) throws InterruptedException {
+        if (closed) throw new IllegalStateException("持久化流水线已关闭");
+        Entry e = new Entry(delta);
+        queue.put(e);
+        return e.done;
+    }
+
+    /**
+     * 屏障：返回的 future 在此前提交的全部变更写完（或失败）后完成。
+     */
+    CompletableFuture<Void> flush() {
+        if (closed || !thread.isAlive()) return CompletableFuture.completedFuture(null);
+        Entry barrier = new Entry(null);
+        try {
+            queue.put(barrier);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return CompletableFuture.failedFuture(ex);
+        }
+        return barrier.done;
+    }
+
+    int pendingCount() {
+        return queue.size();
+    }
+
+    /**
+     * 写完队列中剩余变更后停止写线程。重复调用无副作用。
+     */
+    @Override
+    public void close() {
+        if (closed) return;
+        closed = true;
+        try {
+            queue.put(STOP);
+            thread.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // ================= 内部：写线程 =================
+    private void run() {
+        List<Entry> batch = new ArrayList<>(maxBatch);
+        while (true) {
+            try {
+                batch.add(queue.take());
+                queue.drainTo(batch, maxBatch - 1);
+            } catch (InterruptedException ex) {
+                return;
+            }
+            boolean stop = batch.remove(STOP);
+            writeBatch(batch);
+            batch.clear();
+            if (stop) {
+                // STOP 之后不会再有提交，但 drainTo 可能把它和更早的变更一起取出，此时已一并写完
+                return;
+            }
+        }
+    }
+
+    private void writeBatch(List<Entry> batch) {
+        Map<Long, RecordDelta> merged = new LinkedHashMap<>();
+        int submitted = 0;
+        for (Entry e : batch) {
+            if (e.delta == null) continue;
+            submitted++;
+            merged.merge(e.delta.studentId, e.delta, RecordDelta::mergeOlder);
+        }
+        Exception failure = null;
+        if (!merged.isEmpty()) {
+            long start = System.nanoTime();
+            try {
+                writer.write(new ArrayList<>(merged.values()), submitted);
+                LOGGER.debug("持久化批次: 提交 " + submitted + " 条, 合并为 " + merged.size() + " 名学生, 耗时 " + (System.nanoTime() - start) / 1_000_000 + " ms");
+            } catch (Exception ex) {
+                failure = ex;
+                LoggerUtil.logException(LOGGER, ex, "持久化批次写入失败, 涉及 " + merged.size() + " 名学生");
+            }
+        }
+        for (Entry e : batch) {
+            if (failure == null) e.done.complete(null);
+            else e.done.completeExceptionally(failure);
+        }
+    }
+}
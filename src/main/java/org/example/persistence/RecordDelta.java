@@ -0,0 +1,57 @@
+package org.example.persistence;
+
+import org.example.model.StudentAwardRecord;
+
+import java.util.Arrays;
+
+/**
+ * 一次变更后的记录快照（不可变），由评分线程生成、持久化写线程消费，两边不共享可变状态。
+ * changedIndices 为空表示整条记录写入（新增 / 重放），否则只更新这些奖项标签与汇总列。
+ */
+final class RecordDelta {
+    private static final int[] FULL = new int[0];
+
+    final long seq;
+    final long studentId;
+    // 私有副本，生成后不再修改
+    final StudentAwardRecord record;
+    final int[] changedIndices;
+
+    private RecordDelta(long seq, StudentAwardRecord record, int[] changedIndices) {
+        this.seq = seq;
+        this.studentId = record.getStudentId();
+        this.record = record;
+        this.changedIndices = changedIndices;
+    }
+
+    /**
+     * 单个奖项标签变更的快照。
+     */
+    static RecordDelta labelChange(long seq, StudentAwardRecord r, int awardIndex) {
+        return new RecordDelta(seq, r.copy(), new int[]{awardIndex});
+    }
+
+    static RecordDelta fullRecord(long seq, StudentAwardRecord r) {
+        return new RecordDelta(seq, r.copy(), FULL);
+    }
+
+    boolean isFullWrite() {
+        return changedIndices.length == 0;
+    }
+
+    /**
+     * 与同一学生更早的快照合并：记录取较新者，变更奖项取并集；任一方为整条写入则结果也是整条写入。
+     */
+    RecordDelta mergeOlder(RecordDelta older) {
+        RecordDelta latest = seq >= older.seq ? this : older;
+        if (isFullWrite() || older.isFullWrite()) return latest.isFullWrite() ? latest : new RecordDelta(latest.seq, latest.record, FULL);
+        int[] union = Arrays.stream(concat(changedIndices, older.changedIndices)).distinct().sorted().toArray();
+        return new RecordDelta(latest.seq, latest.record, union);
+    }
+
+    private static int[] concat(int[] a, int[] b) {
+        int[] out = Arrays.copyOf(a, a.length + b.length);
+        System.arraycopy(b, 0, out, a.length, b.length);
+        return out;
+    }
+}
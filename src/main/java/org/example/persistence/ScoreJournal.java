@@ -0,0 +1,247 @@
+package org.example.persistence;
+
+import org.example.util.LoggerUtil;
+import org.slf4j.Logger;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * 评分追加日志 (append-only journal)。
+ * 每条事件格式：[int 负载长度][int CRC32][负载: studentId, awardIndex, oldLabel, newLabel, timestamp]。
+ * 写入为顺序追加；fsync 由后台提交线程按组合并 (group commit)，append 返回时事件已落盘。
+ * 启动时 replay 到第一条损坏/不完整事件为止，并截断其后的残缺尾部。
+ */
+public final class ScoreJournal implements AutoCloseable {
+    private static final Logger LOGGER = LoggerUtil.getLogger(ScoreJournal.class.getName());
+    private static final int HEADER_BYTES = 8;
+    private static final int MAX_PAYLOAD_BYTES = 64 * 1024;
+
+    private final File file;
+    private final long groupCommitMs;
+    private final FileChannel channel;
+    private final Thread committer;
+    private long writtenSeq;
+    private long forcedSeq;
+    private int eventCount;
+    private boolean closed;
+    private IOException forceFailure;
+
+    public ScoreJournal(File file, long groupCommitMs) throws IOException {
+        this.file = file;
+        this.groupCommitMs = groupCommitMs;
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        channel.position(channel.size()); // 追加写；truncate 会把越界的 position 拉回文件末尾
+        this.committer = new Thread(this::commitLoop, "score-journal-commit");
+        committer.setDaemon(true);
+        committer.start();
+    }
+
+    /**
+     * 评分事件（不可变）。
+     */
+    public static final class ScoreEvent {
+        public final long studentId;
+        public final int awardIndex;
+        public final String oldLabel;
+        public final String newLabel;
+        public final long timestamp;
+
+        public ScoreEvent(long studentId, int awardIndex, String oldLabel, String newLabel, long timestamp) {
+            this.studentId = studentId;
+            this.awardIndex = awardIndex;
+            this.oldLabel = oldLabel == null ? "" : oldLabel;
+            this.newLabel = newLabel == null ? "" : newLabel;
+            this.timestamp = timestamp;
+        }
+    }
+
+    /**
+     * 追加一条事件并等待其所在的提交组 fsync 完成。
+     */
+    public void append(ScoreEvent event) throws IOException {
+        awaitDurable(write(event));
+    }
+
+    /**
+     * 只把事件写入文件（不等待 fsync），返回其序号；调用方之后用 {@link #awaitDurable} 等待落盘。
+     * 调用方可以在自己的锁内写入以固定事件顺序，再在锁外等待，使并发评分能共用一次 fsync。
+     */
+    public long write(ScoreEvent event) throws IOException {
+        ByteBuffer buf = encode(event);
+        synchronized (this) {
+            if (closed) throw new IOException("journal 已关闭: " + file);
+            while (buf.hasRemaining()) channel.write(buf);
+            eventCount++;
+            notifyAll();
+            return ++writtenSeq;
+        }
+    }
+
+    public synchronized int eventCount() {
+        return eventCount;
+    }
+
+    /**
+     * 从头重放全部完整事件；遇到长度/CRC 不符的尾部时截断（崩溃时写到一半的事件）。
+     */
+    public synchronized int replay(Consumer<ScoreEvent> consumer) throws IOException {
+        long size = channel.size();
+        long pos = 0;
+        int count = 0;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        while (pos + HEADER_BYTES <= size) {
+            header.clear();
+            readFully(header, pos);
+            header.flip();
+            int len = header.getInt();
+            int crc = header.getInt();
+            if (len <= 0 || len > MAX_PAYLOAD_BYTES || pos + HEADER_BYTES + len > size) break;
+            ByteBuffer payload = ByteBuffer.allocate(len);
+            readFully(payload, pos + HEADER_BYTES);
+            CRC32 crc32 = new CRC32();
+            crc32.update(payload.array());
+            if ((int) crc32.getValue() != crc) break;
+            consumer.accept(decode(payload.array()));
+            pos += HEADER_BYTES + len;
+            count++;
+        }
+        if (pos < size) {
+            LOGGER.warn("journal 尾部存在不完整事件, 截断 " + (size - pos) + " 字节: " + file.getAbsolutePath());
+            channel.truncate(pos);
+            channel.force(true);
+        }
+        eventCount = count;
+        return count;
+    }
+
+    /**
+     * 清空日志（事件已全部合并进 SQLite/Excel 之后调用）。
+     */
+    public synchronized void reset() throws IOException {
+        channel.truncate(0);
+        channel.force(true);
+        eventCount = 0;
+        forcedSeq = writtenSeq;
+        notifyAll();
+    }
+
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) return;
+            closed = true;
+            notifyAll();
+        }
+        try {
+            committer.join(1000);
+            channel.force(true);
+            channel.close();
+        } catch (Exception e) {
+            LoggerUtil.logException(LOGGER, e, "关闭 journal 失败");
+        }
+    }
+
+    // ================= 内部：组提交 =================
+    private void commitLoop() {
+        while (true) {
+            long target;
+            synchronized (this) {
+                while (!closed && forcedSeq == writtenSeq) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (closed) return;
+            }
+            try {
+                // 等待一个短窗口，让并发的 append 合并到同一次 fsync
+                if (groupCommitMs > 0) Thread.sleep(groupCommitMs);
+            } catch (InterruptedException e) {
+                return;
+            }
+            synchronized (this) {
+                target = writtenSeq;
+            }
+            IOException failure = null;
+            try {
+                channel.force(false);
+            } catch (IOException e) {
+                failure = e;
+            }
+            synchronized (this) {
+                if (failure != null) forceFailure = failure;
+                else forcedSeq = Math.max(forcedSeq, target);
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * 等待序号不超过 seq 的事件落盘（或已被 reset 清空）。
+     */
+    public synchronized void awaitDurable(long seq) throws IOException {
+        while (forcedSeq < seq && !closed) {
+            if (forceFailure != null) {
+                IOException e = forceFailure;
+                forceFailure = null;
+                throw e;
+            }
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("等待 journal 落盘被中断", e);
+            }
+        }
+    }
+
+    private void readFully(ByteBuffer buf, long position) throws IOException {
+        long pos = position;
+        while (buf.hasRemaining()) {
+            int n = channel.read(buf, pos);
+            if (n < 0) throw new IOException("journal 意外结束");
+            pos += n;
+        }
+    }
+
+    private static ByteBuffer encode(ScoreEvent e) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bos)) {
+            out.writeLong(e.studentId);
+            out.writeInt(e.awardIndex);
+            out.writeUTF(e.oldLabel);
+            out.writeUTF(e.newLabel);
+            out.writeLong(e.timestamp);
+        }
+        byte[] payload = bos.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        ByteBuffer buf = ByteBuffer.allocate(HEADER_BYTES + payload.length);
+        buf.putInt(payload.length).putInt((int) crc.getValue()).put(payload);
+        buf.flip();
+        return buf;
+    }
+
+    private static ScoreEvent decode(byte[] payload) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload))) {
+            long sid = in.readLong();
+            int index = in.readInt();
+            String oldLabel = in.readUTF();
+            String newLabel = in.readUTF();
+            long ts = in.readLong();
+            return new ScoreEvent(sid, index, oldLabel, newLabel, ts);
+        }
+    }
+}
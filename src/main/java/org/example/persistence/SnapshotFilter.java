@@ -0,0 +1,46 @@
+package org.example.persistence;
+
+import org.example.model.StudentAwardRecord;
+
+import java.util.Collection;
+
+/**
+ * 选择性导入的筛选条件：某个班级，或学号闭区间。
+ * 二进制快照的尾部索引按块记录学号范围与班级集合，据此跳过不可能命中的块。
+ */
+public final class SnapshotFilter {
+    private final String className;
+    private final long fromId;
+    private final long toId;
+
+    private SnapshotFilter(String className, long fromId, long toId) {
+        this.className = className;
+        this.fromId = fromId;
+        this.toId = toId;
+    }
+
+    public static SnapshotFilter byClass(String className) {
+        return new SnapshotFilter(className, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    public static SnapshotFilter byIdRange(long fromId, long toId) {
+        return new SnapshotFilter(null, Math.min(fromId, toId), Math.max(fromId, toId));
+    }
+
+    public boolean matches(StudentAwardRecord r) {
+        return r.getStudentId() >= fromId && r.getStudentId() <= toId
+                && (className == null || className.equals(r.getClassName()));
+    }
+
+    /**
+     * 学号落在 [minId, maxId] 内、班级集合为 classes 的块中是否可能有命中的记录。
+     */
+    boolean mayContain(long minId, long maxId, Collection<String> classes) {
+        return maxId >= fromId && minId <= toId && (className == null || classes.contains(className));
+    }
+
+    @Override
+    public String toString() {
+        return className != null ? "班级 " + className : "学号 " + fromId + " ~ " + toId;
+    }
+}
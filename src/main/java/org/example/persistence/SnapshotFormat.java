@@ -0,0 +1,23 @@
+package org.example.persistence;
+
+/**
+ * 快照导出格式。导入时按文件头自动识别，不依赖扩展名。
+ */
+public enum SnapshotFormat {
+    JSON(".json"),
+    // 分块并行压缩，仍是标准 gzip / LZ4 帧格式，见 BlockCodec
+    JSON_GZIP(".json.gz"),
+    JSON_LZ4(".json.lz4"),
+    // 字典编码 + varint + 分块 CRC，见 BinarySnapshotFormat
+    BINARY(".snap");
+
+    private final String extension;
+
+    SnapshotFormat(String extension) {
+        this.extension = extension;
+    }
+
+    public String extension() {
+        return extension;
+    }
+}
@@ -1,23 +1,29 @@
 package org.example.persistence;
 
-import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ArrayNode;
-import com.fasterxml.jackson.databind.node.ObjectNode;
 import org.example.model.StudentAwardRecord;
 import org.example.util.LoggerUtil;
+import org.example.util.LongObjectMap;
+import org.example.util.StringDictionary;
 import org.slf4j.Logger;
 import org.example.config.Config;
-import com.fasterxml.jackson.core.type.TypeReference;
 
 import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.*;
-import java.util.zip.GZIPOutputStream;
-import java.util.zip.GZIPInputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Predicate;
 
 /**
  * 单文件快照导出/导入，实现“一份文件共享进度”。
- * 格式：JSON 包含 meta + records (每条含学生基础信息、积分、计数、标签数组)
+ * 格式：JSON 包含 meta + records (每条含学生基础信息、积分、计数、标签数组)，导出时逐条流式写出；
+ * 另有二进制格式 (.snap, 见 BinarySnapshotFormat)。导入时按文件头自动识别格式。
+ * 每个快照带编号；增量快照只含相对基准快照变更过的记录，导入时按 baseId 串成链依次应用，也可压缩回一个全量快照。
  */
 public final class SnapshotManager {
     private static final Logger LOGGER = LoggerUtil.getLogger(SnapshotManager.class.getName());
@@ -26,72 +32,372 @@ public final class SnapshotManager {
     private SnapshotManager() {}
 
     // ================= 基础导出 =================
+    /**
+     * 逐条记录经 JsonGenerator 流式写入文件，不在内存中构建整棵 JSON 树，内存占用与记录数无关。
+     * 默认输出紧凑 JSON（见 Config.SNAPSHOT_PRETTY_PRINT）。records 的顺序不影响导入结果。
+     */
     public static void exportSnapshot(File target, Collection<StudentAwardRecord> records) {
-        try {
-            ObjectNode root = buildSnapshotRoot(records);
-            byte[] data = MAPPER.writerWithDefaultPrettyPrinter().writeValueAsBytes(root);
-            try (FileOutputStream fos = new FileOutputStream(target)) { fos.write(data); }
-            LOGGER.info("导出快照成功 -> " + target.getAbsolutePath());
-        } catch (Exception e) {
-            LoggerUtil.logException(LOGGER, e, "导出快照失败");
-        }
+        exportSnapshot(target, records, SnapshotFormat.JSON);
     }
 
+    /**
+     * gzip 压缩的 JSON：按块在 ForkJoinPool 上并行压缩，输出为多个 gzip 成员拼接，gunzip 可直接解压。
+     */
     public static void exportSnapshotCompressed(File target, Collection<StudentAwardRecord> records) {
         File realTarget = target.getName().endsWith(".gz") ? target : new File(target.getParentFile(), target.getName() + ".gz");
+        exportSnapshot(realTarget, records, SnapshotFormat.JSON_GZIP);
+    }
+
+    /**
+     * 二进制快照：体积与编解码耗时均明显小于 JSON，格式见 BinarySnapshotFormat。
+     * records 宜按学号升序：学号按差值编码，索引也按块记录学号范围；乱序输入仍能正确导入（含按学号选择），
+     * 但文件更大，按学号选择时要读的块更多。
+     */
+    public static void exportSnapshotBinary(File target, Collection<StudentAwardRecord> records) {
+        exportSnapshot(target, records, SnapshotFormat.BINARY);
+    }
+
+    public static void exportSnapshot(File target, Collection<StudentAwardRecord> records, SnapshotFormat format) {
+        export(target, records, format, SnapshotMeta.full(records.size()));
+    }
+
+    private static boolean export(File target, Collection<StudentAwardRecord> records, SnapshotFormat format, SnapshotMeta meta) {
         try {
-            ObjectNode root = buildSnapshotRoot(records);
-            byte[] data = MAPPER.writerWithDefaultPrettyPrinter().writeValueAsBytes(root);
-            try (GZIPOutputStream gos = new GZIPOutputStream(new BufferedOutputStream(new FileOutputStream(realTarget)))) {
-                gos.write(data);
-            }
-            LOGGER.info("导出压缩快照成功 -> " + realTarget.getAbsolutePath());
+            writeSnapshotFile(target, records, format, meta);
+            LOGGER.info("导出" + (meta.isDelta() ? "增量" : "") + "快照成功 (" + format + ") -> " + target.getAbsolutePath());
+            return true;
         } catch (Exception e) {
-            LoggerUtil.logException(LOGGER, e, "导出压缩快照失败");
+            LoggerUtil.logException(LOGGER, e, "导出快照失败 (" + format + ")");
+            return false;
         }
     }
 
     // ================= 高层：导出当前全部进度 =================
     /**
-     * 导出全部进度：传入 manager 直接获取其所有记录。
+     * 导出全部进度：先等待持久化流水线写完，再从 manager 获取其所有记录。
      */
     public static void exportAllProgress(File target, NewDataManager manager, boolean compressed) {
+        exportAllProgress(target, manager, compressed ? SnapshotFormat.JSON_GZIP : SnapshotFormat.JSON);
+    }
+
+    public static void exportAllProgress(File target, NewDataManager manager, SnapshotFormat format) {
+        // 屏障：导出前等待排队中的评分写完，保证快照与 SQLite 一致
+        manager.flush();
+        long version = manager.currentChangeVersion();
         Collection<StudentAwardRecord> all = manager.getAllRecords();
-        if (compressed) {
-            exportSnapshotCompressed(target, all);
-        } else {
-            exportSnapshot(target, all);
+        SnapshotMeta meta = SnapshotMeta.full(all.size());
+        if (export(target, all, format, meta)) manager.logSnapshot(meta.snapshotId, null, version, "export");
+    }
+
+    /**
+     * 增量导出：只写出 baseId 快照之后变更过的记录（按学号升序），文件大小与变更量成正比而与总人数无关。
+     * baseId 须是本库导出或导入过的快照（见 NewDataManager.latestSnapshotId）。
+     * @return 是否导出成功
+     */
+    public static boolean exportDelta(File target, NewDataManager manager, String baseId, SnapshotFormat format) {
+        long baseVersion = manager.snapshotVersion(baseId);
+        if (baseVersion < 0) {
+            LOGGER.error("本库没有快照 " + baseId + " 的导出/导入记录, 无法生成增量");
+            return false;
+        }
+        manager.flush();
+        // 先取版本再查询：之后提交的变更版本更大，必然落入下一次增量
+        long version = manager.currentChangeVersion();
+        List<StudentAwardRecord> changed = manager.recordsChangedSince(baseVersion);
+        if (changed == null) return false;
+        SnapshotMeta meta = SnapshotMeta.delta(baseId, changed.size());
+        if (!export(target, changed, format, meta)) return false;
+        manager.logSnapshot(meta.snapshotId, baseId, version, "export");
+        LOGGER.info("增量快照: 相对 " + baseId + " 变更 " + changed.size() + " 名学生");
+        return true;
+    }
+
+    /**
+     * 压缩快照链：全量快照与其后的增量按学号合并（后者覆盖前者），写出一个新的全量快照。
+     * 结果沿用链尾快照的编号，之后基于链尾的增量仍可直接应用在它上面。不访问数据库。
+     * @param sources 一个全量快照加若干增量，顺序不限
+     * @return 是否写出成功
+     */
+    public static boolean compactChain(List<File> sources, File target, SnapshotFormat format) {
+        try {
+            List<ChainLink> chain = orderChain(sources, id -> false);
+            LongObjectMap<StudentAwardRecord> merged = new LongObjectMap<>();
+            for (ChainLink link : chain) {
+                try (SnapshotRecordReader reader = openReader(link.file)) {
+                    for (StudentAwardRecord r; (r = reader.next()) != null; ) {
+                        r.recomputeTotals();
+                        merged.put(r.getStudentId(), r);
+                    }
+                }
+            }
+            List<StudentAwardRecord> records = merged.valuesInKeyOrder();
+            SnapshotMeta last = chain.get(chain.size() - 1).meta;
+            writeSnapshotFile(target, records, format, new SnapshotMeta(last.snapshotId, null, System.currentTimeMillis(), records.size()));
+            LOGGER.info("快照链已压缩: " + chain.size() + " 个文件 -> " + records.size() + " 条记录, " + target.getAbsolutePath());
+            return true;
+        } catch (Exception e) {
+            LoggerUtil.logException(LOGGER, e, "压缩快照链失败");
+            return false;
         }
     }
 
+    // ================= 多位评分人的快照合并 =================
+    /**
+     * 合并多份快照（文件顺序不限）为一个新的全量快照：同一学生的奖项逐个合并，未评分的不覆盖已评分的，
+     * 两份快照评分不同时由 policy 决定（以快照生成时间作为评分时间）并计入返回报告。不访问数据库。
+     * @return 合并报告；任一文件无法读取或写出失败时返回 null，不写出目标文件
+     */
+    public static MergeReport mergeSnapshots(List<File> sources, File target, SnapshotFormat format, LabelMergePolicy policy) {
+        if (sources.isEmpty()) {
+            LOGGER.warn("未指定要合并的快照文件");
+            return null;
+        }
+        MergeReport report = new MergeReport();
+        try {
+            List<StudentAwardRecord> merged = SnapshotMerger.merge(sources, policy, report);
+            writeSnapshotFile(target, merged, format, SnapshotMeta.full(merged.size()));
+        } catch (Exception e) {
+            LoggerUtil.logException(LOGGER, e, "合并快照失败");
+            return null;
+        }
+        LOGGER.info(report.summary() + " -> " + target.getAbsolutePath());
+        return report;
+    }
+
     // ================= 基础导入（不清空重建，仅追加/覆盖行） =================
-    public static void importSnapshot(File source, NewDataManager manager, boolean overwrite) {
-        Optional<List<StudentAwardRecord>> opt = readSnapshotRecords(source);
-        if (opt.isEmpty()) return;
-        List<StudentAwardRecord> list = opt.get();
-        manager.importRecords(list, overwrite);
-        LOGGER.info("导入快照完成: 总计 " + list.size());
+    public static boolean importSnapshot(File source, NewDataManager manager, boolean overwrite) {
+        return importSnapshot(source, manager, overwrite, null);
+    }
+
+    /**
+     * 流式导入：边解析边按批写库，快照大小不影响导入时的额外内存。
+     * 中途读取失败时已写入的批次保留（均为完整记录）。增量快照也可用本方法直接合并，但不校验基准，见 importChain。
+     * @return 是否完整导入
+     */
+    public static boolean importSnapshot(File source, NewDataManager manager, boolean overwrite, NewDataManager.ProgressListener listener) {
+        if (!source.exists()) {
+            LOGGER.warn("快照文件不存在: " + source.getAbsolutePath());
+            return false;
+        }
+        manager.beginImport(overwrite);
+        int count = applyToManager(source, manager, listener);
+        manager.finishImport();
+        LOGGER.info(StringDictionary.shared().summary());
+        return count >= 0;
+    }
+
+    /**
+     * 导入快照链：至多一个全量快照加若干增量快照，文件顺序不限，按 baseId 串成链后依次应用。
+     * 含全量快照时先按 importAndRebuild 清空重建；否则链首增量的基准快照须已在本库登记。
+     * 链不完整（缺文件、分叉、基准未知）时在改动任何数据之前拒绝。
+     * @return 整条链是否全部应用
+     */
+    public static boolean importChain(List<File> sources, NewDataManager manager, NewDataManager.ProgressListener listener) {
+        List<ChainLink> chain;
+        try {
+            chain = orderChain(sources, id -> manager.snapshotVersion(id) >= 0);
+        } catch (IOException e) {
+            LoggerUtil.logException(LOGGER, e, "快照链无效, 现有数据未改动");
+            return false;
+        }
+        int i = 0;
+        if (!chain.get(0).meta.isDelta()) {
+            if (!importAndRebuild(chain.get(0).file, manager, listener)) return false;
+            i = 1;
+        }
+        if (i == chain.size()) return true;
+        // 增量依次合并，最后只导出一次 Excel
+        manager.beginImport(false);
+        try {
+            for (; i < chain.size(); i++) {
+                ChainLink link = chain.get(i);
+                if (applyToManager(link.file, manager, listener) < 0) {
+                    LOGGER.error("快照链在 " + link.file.getName() + " 处中断, 此前的快照已应用");
+                    return false;
+                }
+            }
+        } finally {
+            manager.finishImport();
+        }
+        LOGGER.info("快照链导入完成: " + chain.size() + " 个文件");
+        return true;
+    }
+
+    /**
+     * 逐批写入 manager（调用方负责 beginImport / finishImport），成功时登记快照编号。
+     * @return 写入的记录数，失败为 -1
+     */
+    private static int applyToManager(File source, NewDataManager manager, NewDataManager.ProgressListener listener) {
+        AtomicReference<SnapshotMeta> meta = new AtomicReference<>();
+        int count = streamSnapshot(source, null, meta, (batch, done, total) -> {
+            boolean ok = manager.importBatch(batch);
+            if (listener != null) listener.onProgress(done, total);
+            return ok;
+        });
+        if (count >= 0) {
+            LOGGER.info("导入快照完成: " + source.getName() + " 总计 " + count);
+            recordImport(manager, meta.get());
+        } else {
+            LOGGER.error("导入快照未完成, 已写入的批次保留");
+        }
+        return count;
+    }
+
+    private static void recordImport(NewDataManager manager, SnapshotMeta meta) {
+        if (meta != null && meta.snapshotId != null) {
+            manager.logSnapshot(meta.snapshotId, meta.baseId, manager.currentChangeVersion(), "import");
+        }
+    }
+
+    /**
+     * 链中的一个快照文件及其头信息。
+     */
+    private static final class ChainLink {
+        final File file;
+        final SnapshotMeta meta;
+
+        ChainLink(File file, SnapshotMeta meta) {
+            this.file = file;
+            this.meta = meta;
+        }
+    }
+
+    /**
+     * 只读各文件的头信息，按 baseId 排成一条链：有全量快照时以它为链首，否则以基准快照满足 knownBase 的增量为链首。
+     * @throws IOException 文件无法读取，或不能恰好串成一条链
+     */
+    private static List<ChainLink> orderChain(List<File> sources, Predicate<String> knownBase) throws IOException {
+        if (sources.isEmpty()) throw new IOException("未指定快照文件");
+        ChainLink head = null;
+        Map<String, ChainLink> byBase = new LinkedHashMap<>();
+        Set<String> ids = new HashSet<>();
+        for (File f : sources) {
+            SnapshotMeta meta;
+            try (SnapshotRecordReader reader = openReader(f)) {
+                meta = reader.meta();
+            }
+            ChainLink link = new ChainLink(f, meta);
+            if (meta.snapshotId != null) ids.add(meta.snapshotId);
+            if (!meta.isDelta()) {
+                if (head != null) throw new IOException("快照链中有多个全量快照: " + head.file.getName() + ", " + f.getName());
+                head = link;
+            } else if (byBase.put(meta.baseId, link) != null) {
+                throw new IOException("多个增量快照基于同一快照 " + meta.baseId);
+            }
+        }
+        String cursor;
+        if (head != null) {
+            cursor = head.meta.snapshotId;
+        } else {
+            List<String> roots = new ArrayList<>();
+            for (String base : byBase.keySet()) if (!ids.contains(base)) roots.add(base);
+            if (roots.size() != 1) throw new IOException("增量快照无法串成一条链 (起点 " + roots + ")");
+            cursor = roots.get(0);
+            if (!knownBase.test(cursor)) throw new IOException("缺少基准快照 " + cursor + ", 请与对应的全量快照一起导入");
+        }
+        List<ChainLink> chain = new ArrayList<>();
+        if (head != null) chain.add(head);
+        ChainLink next;
+        while (cursor != null && (next = byBase.remove(cursor)) != null) {
+            chain.add(next);
+            cursor = next.meta.snapshotId;
+        }
+        if (!byBase.isEmpty()) {
+            List<String> names = new ArrayList<>();
+            for (ChainLink l : byBase.values()) names.add(l.file.getName());
+            throw new IOException("快照链不连续, 无法衔接: " + names);
+        }
+        return chain;
+    }
+
+    // ================= 选择性导入（按班级 / 学号范围） =================
+    /**
+     * 选择性导入：只把 filter 命中的记录按 upsert 并入 manager，不清空现有数据，也不删除 Excel 源文件。
+     * 带尾部索引的二进制快照直接定位到可能命中的块，其余块不读取；其它格式顺序扫描后过滤。
+     * 只导入了部分记录，不登记快照编号。
+     * @return 是否完整导入
+     */
+    public static boolean importSelected(File source, NewDataManager manager, SnapshotFilter filter, NewDataManager.ProgressListener listener) {
+        if (!source.exists()) {
+            LOGGER.warn("快照文件不存在: " + source.getAbsolutePath());
+            return false;
+        }
+        manager.beginImport(false);
+        int count = streamSnapshot(source, filter, new AtomicReference<>(), (batch, done, total) -> {
+            boolean ok = manager.importBatch(batch);
+            if (listener != null) listener.onProgress(done, total);
+            return ok;
+        });
+        manager.finishImport();
+        if (count < 0) {
+            LOGGER.error("选择性导入未完成 (" + filter + "), 已写入的批次保留");
+            return false;
+        }
+        LOGGER.info("选择性导入完成 (" + filter + "): " + count + " 条");
+        return true;
     }
 
     // ================= 高层：清空并重建（提示覆盖风险） =================
     /**
      * 完整重建：删除原 Excel 与 DB，重新写入。适用于需要“单文件共享所有数据”的场景。
      * 调用方应在界面弹窗提示：此操作将覆盖并丢失现有进度。
-     * @param source 快照文件（支持 .json 或 .json.gz）
+     * 第一批记录解析成功后才清空现有数据，格式错误的文件不会破坏当前进度。
+     * @param source 快照文件（.json / .json.gz / .snap）
      */
-    public static void importAndRebuild(File source, NewDataManager manager) {
-        Optional<List<StudentAwardRecord>> opt = readSnapshotRecords(source);
-        if (opt.isEmpty()) return;
-        List<StudentAwardRecord> list = opt.get();
-        LOGGER.warn("即将覆盖所有现有数据并用快照重建 (记录数=" + list.size() + ")");
+    public static boolean importAndRebuild(File source, NewDataManager manager) {
+        return importAndRebuild(source, manager, null);
+    }
+
+    /**
+     * @return 是否完整重建（增量快照、无法读取的文件返回 false 且不改动现有数据）
+     */
+    public static boolean importAndRebuild(File source, NewDataManager manager, NewDataManager.ProgressListener listener) {
+        if (!source.exists()) {
+            LOGGER.warn("快照文件不存在: " + source.getAbsolutePath());
+            return false;
+        }
+        AtomicReference<SnapshotMeta> meta = new AtomicReference<>();
+        boolean[] cleared = {false};
+        int count = streamSnapshot(source, null, meta, (batch, done, total) -> {
+            if (meta.get().isDelta()) return false;
+            if (!cleared[0]) {
+                clearForRebuild(manager, total);
+                cleared[0] = true;
+            }
+            boolean ok = manager.importBatch(batch);
+            if (listener != null) listener.onProgress(done, total);
+            return ok;
+        });
+        if (!cleared[0]) {
+            if (meta.get() != null && meta.get().isDelta()) {
+                LOGGER.error("增量快照不能单独用于重建, 请与基准快照一起按快照链导入; 现有数据未改动");
+                return false;
+            }
+            if (count < 0) {
+                LOGGER.error("快照无法读取, 现有数据未改动");
+                return false;
+            }
+            clearForRebuild(manager, 0); // 空快照
+        }
+        manager.finishImport();
+        if (count < 0) {
+            LOGGER.error("重建未完成: 快照读取中断, 仅写入了此前的批次");
+            return false;
+        }
+        LOGGER.info("重建完成: 写入记录 " + count);
+        recordImport(manager, meta.get());
+        return true;
+    }
+
+    private static void clearForRebuild(NewDataManager manager, int expected) {
+        LOGGER.warn("即将覆盖所有现有数据并用快照重建 (记录数=" + expected + ")");
 
         // 清理旧文件
         deleteFileIfExists(new File(Config.RAW_SOURCE_PATH));
         deleteFileIfExists(new File(Config.AWARDS_SUMMARY_PATH));
 
         manager.clearAndRecreateStorage();
-        manager.bulkLoadRecords(list); // 快速批量写入
-        LOGGER.info("重建完成: 写入记录 " + list.size());
+        manager.beginImport(true);
     }
 
     private static void deleteFileIfExists(File file) {
@@ -104,66 +410,223 @@ public final class SnapshotManager {
         }
     }
 
-    // ================= 内部：读取快照 =================
-    private static Optional<List<StudentAwardRecord>> readSnapshotRecords(File source) {
-        if (!source.exists()) {
-            LOGGER.warn("快照文件不存在: " + source.getAbsolutePath());
-            return Optional.empty();
-        }
-        boolean gz = source.getName().endsWith(".gz");
-        try (InputStream is = gz ? new GZIPInputStream(new BufferedInputStream(new FileInputStream(source))) : new FileInputStream(source)) {
-            JsonNode root = MAPPER.readTree(is);
-            JsonNode recordsNode = root.get("records");
-            if (recordsNode == null || !recordsNode.isArray()) {
-                LOGGER.error("快照结构无 records 数组");
-                return Optional.empty();
+    // ================= 内部：流式读取快照 =================
+    /**
+     * 按批消费读出的记录：done 为累计条数，total 为 meta 声明的总数（未知时同 done）。返回 false 中止导入。
+     */
+    private interface BatchSink {
+        boolean accept(List<StudentAwardRecord> batch, int done, int total);
+    }
+
+    // 读取线程放入队列的结束标记（正常结束与出错都会放入）
+    static final List<StudentAwardRecord> END_OF_SNAPSHOT = Collections.emptyList();
+
+    /**
+     * snapshot-reader 线程负责逐条解析（压缩快照的各块由 ForkJoinPool 提前并行解压），每凑满 Config.SNAPSHOT_IMPORT_BATCH 条放入有界队列；
+     * 调用线程取出后交给 sink 写库，解析与写库重叠进行，内存中最多驻留 队列容量 + 2 批记录。
+     * @param filter 只交付命中的记录，null 为全部
+     * @param meta 读到的快照头信息（在第一批交给 sink 之前已设置；文件无法打开时保持 null）
+     * @return 交付给 sink 的记录数；文件无法解析、读取中途出错或 sink 中止时为 -1
+     */
+    private static int streamSnapshot(File source, SnapshotFilter filter, AtomicReference<SnapshotMeta> meta, BatchSink sink) {
+        BlockingQueue<List<StudentAwardRecord>> queue = new ArrayBlockingQueue<>(Config.SNAPSHOT_IMPORT_QUEUE);
+        AtomicReference<Exception> failure = new AtomicReference<>();
+        Thread reader = new Thread(() -> readBatches(source, filter, queue, failure, meta, Config.SNAPSHOT_IMPORT_BATCH), "snapshot-reader");
+        reader.setDaemon(true);
+        reader.start();
+
+        int done = 0;
+        try {
+            List<StudentAwardRecord> batch;
+            while ((batch = queue.take()) != END_OF_SNAPSHOT) {
+                done += batch.size();
+                if (!sink.accept(batch, done, Math.max(meta.get().recordCount, done))) {
+                    reader.interrupt();
+                    LOGGER.error("导入中止: 已处理 " + done + " 条");
+                    return -1;
+                }
             }
-            List<StudentAwardRecord> list = new ArrayList<>();
-            for (JsonNode n : recordsNode) {
-                long sid = n.path("studentId").asLong();
-                String name = n.path("name").asText("");
-                String clazz = n.path("className").asText("");
-                StudentAwardRecord r = new StudentAwardRecord(sid, name, clazz);
-                r.setCertTotalPoints(n.path("certTotalPoints").asDouble(0.0));
-                r.setAwardTotalPoints(n.path("awardTotalPoints").asDouble(0.0));
-                r.setRecordedAwardCount(n.path("recordedAwardCount").asInt(0));
-
-                JsonNode awardsNode = n.path("awards");
-                if (awardsNode.isArray()) {
-                    List<Map<String, String>> awards = MAPPER.convertValue(awardsNode, new TypeReference<>() {});
-                    awards.forEach(award -> r.addAward(award.get("name"), award.get("image"), award.get("category")));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            reader.interrupt();
+            return -1;
+        }
+        if (failure.get() != null) {
+            LoggerUtil.logException(LOGGER, failure.get(), "读取快照失败, 已处理 " + done + " 条");
+            return -1;
+        }
+        return done;
+    }
+
+    /**
+     * 读取线程主体：按 batchSize 条一批放入 queue，最后放入 END_OF_SNAPSHOT；出错时异常记入 failure。
+     */
+    static void readBatches(File source, SnapshotFilter filter, BlockingQueue<List<StudentAwardRecord>> queue,
+                            AtomicReference<Exception> failure, AtomicReference<SnapshotMeta> meta, int batchSize) {
+        try (SnapshotRecordReader reader = openReader(source, filter)) {
+            meta.set(reader.meta());
+            List<StudentAwardRecord> batch = new ArrayList<>(batchSize);
+            StudentAwardRecord r;
+            while ((r = reader.next()) != null) {
+                batch.add(r);
+                if (batch.size() == batchSize) {
+                    queue.put(batch);
+                    batch = new ArrayList<>(batchSize);
                 }
-                list.add(r);
             }
-            return Optional.of(list);
+            if (!batch.isEmpty()) queue.put(batch);
+        } catch (InterruptedException e) {
+            return; // 消费端已中止
         } catch (Exception e) {
-            LoggerUtil.logException(LOGGER, e, "读取快照失败");
-            return Optional.empty();
-        }
-    }
-
-    // ================= 构建 JSON 根对象 =================
-    private static ObjectNode buildSnapshotRoot(Collection<StudentAwardRecord> records) {
-        ObjectNode root = MAPPER.createObjectNode();
-        ObjectNode meta = root.putObject("meta");
-        meta.put("version", 1);
-        meta.put("generatedAt", System.currentTimeMillis());
-        meta.put("recordCount", records.size());
-        ArrayNode arr = root.putArray("records");
-        for (StudentAwardRecord r : records) {
-            ObjectNode node = arr.addObject();
-            node.put("studentId", r.getStudentId());
-            node.put("name", r.getName());
-            node.put("className", r.getClassName());
-            node.put("certTotalPoints", r.getCertTotalPoints());
-            node.put("awardTotalPoints", r.getAwardTotalPoints());
-            node.put("recordedAwardCount", r.getRecordedAwardCount());
-            ArrayNode awardsNode = node.putArray("awards");
-            r.getAwards().forEach(awardMap -> {
-                ObjectNode awardNode = awardsNode.addObject();
-                awardMap.forEach(awardNode::put);
-            });
-        }
-        return root;
+            failure.set(e);
+        }
+        try {
+            queue.put(END_OF_SNAPSHOT);
+        } catch (InterruptedException ignored) {
+            // 消费端已中止
+        }
+    }
+
+    /**
+     * 按文件头识别格式并打开逐条读取器：二进制魔数；gzip / LZ4 魔数（压缩的 JSON，分块并行解压）；其余按 JSON 解析。
+     */
+    static SnapshotRecordReader openReader(File source) throws IOException {
+        InputStream in = new BufferedInputStream(Files.newInputStream(source.toPath()), Config.SNAPSHOT_IO_BUFFER);
+        try {
+            in.mark(BinarySnapshotFormat.MAGIC.length);
+            byte[] head = in.readNBytes(BinarySnapshotFormat.MAGIC.length);
+            in.reset();
+            if (BinarySnapshotFormat.isBinary(head)) return new BinarySnapshotReader(in, StringDictionary.shared());
+            BlockCodec codec = BlockCodec.detect(head);
+            if (codec != null) in = new ParallelBlockInputStream(in, codec, Config.SNAPSHOT_COMPRESS_WINDOW);
+            return new JsonSnapshotReader(in, StringDictionary.shared());
+        } catch (IOException | RuntimeException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    /**
+     * 只返回 filter 命中记录的读取器（filter 为 null 时同 openReader）：带尾部索引的二进制快照只读索引命中的块，
+     * 其余格式顺序扫描后过滤。筛选后的记录数未知，meta 中 recordCount 为 -1。
+     */
+    static SnapshotRecordReader openReader(File source, SnapshotFilter filter) throws IOException {
+        if (filter == null) return openReader(source);
+        SnapshotRecordReader reader = BinarySnapshotReader.openIndexed(source, filter, StringDictionary.shared());
+        if (reader != null) {
+            LOGGER.debug("按快照索引读取 " + ((BinarySnapshotReader) reader).selectedBlocks() + " 个块 (" + filter + ")");
+        } else {
+            LOGGER.debug("快照无索引, 顺序扫描并过滤 (" + filter + ")");
+            reader = openReader(source);
+        }
+        return new FilteredReader(reader, filter);
+    }
+
+    private static final class FilteredReader implements SnapshotRecordReader {
+        private final SnapshotRecordReader delegate;
+        private final SnapshotFilter filter;
+        private final SnapshotMeta meta;
+
+        FilteredReader(SnapshotRecordReader delegate, SnapshotFilter filter) {
+            this.delegate = delegate;
+            this.filter = filter;
+            SnapshotMeta m = delegate.meta();
+            this.meta = new SnapshotMeta(m.snapshotId, m.baseId, m.generatedAt, -1);
+        }
+
+        @Override
+        public SnapshotMeta meta() {
+            return meta;
+        }
+
+        @Override
+        public StudentAwardRecord next() throws IOException {
+            StudentAwardRecord r;
+            do {
+                r = delegate.next();
+            } while (r != null && !filter.matches(r));
+            return r;
+        }
+
+        @Override
+        public void close() throws IOException {
+            delegate.close();
+        }
+    }
+
+    // ================= 内部：流式写出 =================
+
+    /**
+     * 先写到同目录下的临时文件，完整写出后原子替换目标：失败或崩溃时目标保持原样，不会留下半个快照。
+     */
+    static void writeSnapshotFile(File target, Collection<StudentAwardRecord> records, SnapshotFormat format, SnapshotMeta meta) throws IOException {
+        long start = System.nanoTime();
+        File tmp = new File(target.getAbsoluteFile().getParentFile(), target.getName() + ".tmp");
+        try {
+            OutputStream os = new BufferedOutputStream(Files.newOutputStream(tmp.toPath()), Config.SNAPSHOT_IO_BUFFER);
+            if (format == SnapshotFormat.JSON_GZIP) {
+                os = new ParallelBlockOutputStream(os, BlockCodec.GZIP, Config.SNAPSHOT_COMPRESS_BLOCK, Config.SNAPSHOT_COMPRESS_WINDOW);
+            } else if (format == SnapshotFormat.JSON_LZ4) {
+                os = new ParallelBlockOutputStream(os, BlockCodec.LZ4, Config.SNAPSHOT_COMPRESS_BLOCK, Config.SNAPSHOT_COMPRESS_WINDOW);
+            }
+            try (OutputStream out = os) {
+                if (format == SnapshotFormat.BINARY) {
+                    BinarySnapshotWriter.write(out, records, meta, Config.SNAPSHOT_BLOCK_RECORDS);
+                } else {
+                    writeSnapshot(out, records, meta, Config.SNAPSHOT_PRETTY_PRINT);
+                }
+            }
+            Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp.toPath());
+        }
+        double seconds = Math.max(System.nanoTime() - start, 1) / 1e9;
+        double mb = target.length() / (1024.0 * 1024.0);
+        LOGGER.debug(String.format("快照写出: %d 条记录, %.1f MB, %.0f ms, %.1f MB/s", records.size(), mb, seconds * 1000, mb / seconds));
+    }
+
+    /**
+     * 把快照写入 out：meta 在前、records 数组在后，字段与旧版树形导出一致，导入端无需区分。
+     * meta 版本 2 增加 snapshotId 与 baseId（仅增量快照），旧版读取端会忽略这两个字段。不关闭 out。
+     */
+    static void writeSnapshot(OutputStream out, Collection<StudentAwardRecord> records, SnapshotMeta meta, boolean pretty) throws IOException {
+        try (JsonGenerator g = MAPPER.getFactory().createGenerator(out, JsonEncoding.UTF8)) {
+            g.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            if (pretty) g.useDefaultPrettyPrinter();
+            g.writeStartObject();
+            g.writeObjectFieldStart("meta");
+            g.writeNumberField("version", 2);
+            g.writeStringField("snapshotId", meta.snapshotId);
+            if (meta.isDelta()) g.writeStringField("baseId", meta.baseId);
+            g.writeNumberField("generatedAt", meta.generatedAt);
+            g.writeNumberField("recordCount", records.size());
+            g.writeEndObject();
+            g.writeArrayFieldStart("records");
+            for (StudentAwardRecord r : records) {
+                writeRecord(g, r);
+            }
+            g.writeEndArray();
+            g.writeEndObject();
+        }
+    }
+
+    private static void writeRecord(JsonGenerator g, StudentAwardRecord r) throws IOException {
+        g.writeStartObject();
+        g.writeNumberField("studentId", r.getStudentId());
+        g.writeStringField("name", r.getName());
+        g.writeStringField("className", r.getClassName());
+        g.writeNumberField("certTotalPoints", r.getCertTotalPoints());
+        g.writeNumberField("awardTotalPoints", r.getAwardTotalPoints());
+        g.writeNumberField("recordedAwardCount", r.getRecordedAwardCount());
+        g.writeArrayFieldStart("awards");
+        for (int i = 0; i < r.getAwardCount(); i++) {
+            g.writeStartObject();
+            g.writeStringField("name", r.getAwardName(i));
+            g.writeStringField("image", r.getAwardImage(i));
+            g.writeStringField("category", r.getAwardLabel(i));
+            g.writeEndObject();
+        }
+        g.writeEndArray();
+        g.writeEndObject();
     }
 }
@@ -0,0 +1,227 @@
+package org.example.persistence;
+
+import org.example.config.Config;
+import org.example.model.StudentAwardRecord;
+import org.example.util.LoggerUtil;
+import org.slf4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 多份快照按奖项标签合并（多位评分人分别评分后汇总）。
+ * 每个文件一个读取线程并行解码、按小批预读；合并线程对各文件（均按学号升序写出）做 k 路归并，
+ * 同一学号的多条记录按奖项（名称 + 图片 + 同名序号）对齐后逐个取舍标签：已评分优先于未评分，
+ * 两边评分不同时按 LabelMergePolicy 决定并记为冲突。内存中只有合并结果与每个文件的少量预读批次。
+ */
+final class SnapshotMerger {
+    private static final Logger LOGGER = LoggerUtil.getLogger(SnapshotMerger.class.getName());
+
+    private final List<Source> sources = new ArrayList<>();
+    private final LabelMergePolicy policy;
+    private final MergeReport report;
+
+    private SnapshotMerger(LabelMergePolicy policy, MergeReport report) {
+        this.policy = policy;
+        this.report = report;
+    }
+
+    /**
+     * 合并 files，返回按学号升序的合并结果，冲突与统计写入 report。
+     * @throws IOException 任一文件无法读取或未按学号升序排列（此时不产生部分结果）
+     */
+    static List<StudentAwardRecord> merge(List<File> files, LabelMergePolicy policy, MergeReport report) throws IOException {
+        SnapshotMerger merger = new SnapshotMerger(policy, report);
+        long start = System.nanoTime();
+        try {
+            for (int i = 0; i < files.size(); i++) merger.sources.add(new Source(i, files.get(i)));
+            List<StudentAwardRecord> merged = merger.run();
+            long read = 0;
+            for (Source s : merger.sources) read += s.read;
+            report.finish(files.size(), read, merged.size(), (System.nanoTime() - start) / 1_000_000);
+            return merged;
+        } finally {
+            for (Source s : merger.sources) s.reader.interrupt();
+        }
+    }
+
+    private List<StudentAwardRecord> run() throws IOException {
+        PriorityQueue<Source> heads = new PriorityQueue<>((a, b) -> a.current.getStudentId() != b.current.getStudentId()
+                ? Long.compare(a.current.getStudentId(), b.current.getStudentId())
+                : Integer.compare(a.index, b.index));
+        for (Source s : sources) {
+            if (s.advance()) heads.add(s);
+        }
+        List<StudentAwardRecord> merged = new ArrayList<>();
+        List<Source> group = new ArrayList<>();
+        while (!heads.isEmpty()) {
+            group.clear();
+            long id = heads.peek().current.getStudentId();
+            while (!heads.isEmpty() && heads.peek().current.getStudentId() == id) group.add(heads.poll());
+            merged.add(mergeStudent(group));
+            for (Source s : group) {
+                if (s.advance()) heads.add(s);
+            }
+        }
+        return merged;
+    }
+
+    // ================= 单个学生的合并 =================
+
+    private StudentAwardRecord mergeStudent(List<Source> group) {
+        Source newest = group.get(0);
+        for (Source s : group) if (s.generatedAt > newest.generatedAt) newest = s;
+        if (group.size() == 1 || sameAwards(group)) {
+            StudentAwardRecord r = newest.current;
+            r.recomputeTotals();
+            return r;
+        }
+        StudentAwardRecord base = newest.current;
+        List<Slot> slots = new ArrayList<>();
+        Map<String, Slot> byKey = new HashMap<>();
+        for (Source s : group) {
+            StudentAwardRecord r = s.current;
+            Map<String, Integer> seen = new HashMap<>();
+            for (int i = 0; i < r.getAwardCount(); i++) {
+                String name = r.getAwardName(i);
+                String image = r.getAwardImage(i);
+                String awardKey = name + '\u0001' + image;
+                int occurrence = seen.merge(awardKey, 1, Integer::sum);
+                String key = awardKey + '\u0001' + occurrence;
+                String label = r.getAwardLabel(i);
+                Slot slot = byKey.get(key);
+                if (slot == null) {
+                    slot = new Slot(name, image, label, s);
+                    byKey.put(key, slot);
+                    slots.add(slot);
+                } else {
+                    resolve(base, slot, label, s);
+                }
+            }
+        }
+        StudentAwardRecord merged = new StudentAwardRecord(base.getStudentId(), base.getName(), base.getClassName());
+        for (Slot slot : slots) merged.addAward(slot.name, slot.image, slot.label);
+        merged.recomputeTotals();
+        return merged;
+    }
+
+    private void resolve(StudentAwardRecord student, Slot slot, String incoming, Source from) {
+        if (incoming == null || incoming.isEmpty() || incoming.equals(slot.label)) return;
+        if (slot.label == null || slot.label.isEmpty()) {
+            slot.label = incoming;
+            slot.source = from;
+            return;
+        }
+        boolean useIncoming = policy.preferIncoming(slot.label, slot.source.generatedAt, incoming, from.generatedAt);
+        String keptLabel = useIncoming ? incoming : slot.label;
+        Source keptSource = useIncoming ? from : slot.source;
+        String discardedLabel = useIncoming ? slot.label : incoming;
+        Source discardedSource = useIncoming ? slot.source : from;
+        report.addConflict(new MergeReport.Conflict(student.getStudentId(), student.getName(), slot.name,
+                keptLabel, keptSource.file.getName(), discardedLabel, discardedSource.file.getName()));
+        slot.label = keptLabel;
+        slot.source = keptSource;
+    }
+
+    /**
+     * 各文件中该学生的奖项与标签完全相同（最常见的情况），不必逐个对齐。
+     */
+    private static boolean sameAwards(List<Source> group) {
+        StudentAwardRecord first = group.get(0).current;
+        for (int g = 1; g < group.size(); g++) {
+            StudentAwardRecord r = group.get(g).current;
+            if (r.getAwardCount() != first.getAwardCount()) return false;
+            for (int i = 0; i < r.getAwardCount(); i++) {
+                if (r.getAwardCategory(i) != first.getAwardCategory(i)
+                        || !Objects.equals(r.getAwardLabel(i), first.getAwardLabel(i))
+                        || !Objects.equals(r.getAwardName(i), first.getAwardName(i))
+                        || !Objects.equals(r.getAwardImage(i), first.getAwardImage(i))) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 合并结果中的一个奖项：当前采用的标签及其来源。
+     */
+    private static final class Slot {
+        final String name;
+        final String image;
+        String label;
+        Source source;
+
+        Slot(String name, String image, String label, Source source) {
+            this.name = name;
+            this.image = image;
+            this.label = label;
+            this.source = source;
+        }
+    }
+
+    // ================= 每个文件一个预读线程 =================
+
+    private static final class Source {
+        final int index;
+        final File file;
+        final BlockingQueue<List<StudentAwardRecord>> queue = new ArrayBlockingQueue<>(Config.SNAPSHOT_MERGE_QUEUE);
+        final AtomicReference<Exception> failure = new AtomicReference<>();
+        final AtomicReference<SnapshotMeta> meta = new AtomicReference<>();
+        final Thread reader;
+        long generatedAt;
+        List<StudentAwardRecord> batch = List.of();
+        int pos;
+        StudentAwardRecord current;
+        long read;
+
+        Source(int index, File file) {
+            this.index = index;
+            this.file = file;
+            this.reader = new Thread(() -> SnapshotManager.readBatches(file, null, queue, failure, meta, Config.SNAPSHOT_MERGE_BATCH),
+                    "snapshot-merge-" + index);
+            reader.setDaemon(true);
+            reader.start();
+        }
+
+        /**
+         * 移到下一条记录；读完返回 false。
+         */
+        boolean advance() throws IOException {
+            if (pos == batch.size()) {
+                try {
+                    batch = queue.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("合并被中断", e);
+                }
+                pos = 0;
+                if (batch == SnapshotManager.END_OF_SNAPSHOT) {
+                    if (failure.get() != null) throw new IOException("读取快照失败: " + file.getName(), failure.get());
+                    current = null;
+                    return false;
+                }
+                if (read == 0) {
+                    generatedAt = meta.get().generatedAt;
+                    LOGGER.debug("合并来源 " + index + ": " + file.getName() + " (生成于 " + generatedAt + ")");
+                }
+            }
+            StudentAwardRecord next = batch.get(pos++);
+            if (current != null && next.getStudentId() <= current.getStudentId()) {
+                throw new IOException("快照未按学号升序排列, 无法归并: " + file.getName());
+            }
+            current = next;
+            read++;
+            return true;
+        }
+    }
+}
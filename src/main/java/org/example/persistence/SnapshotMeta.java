@@ -0,0 +1,38 @@
+package org.example.persistence;
+
+import java.util.UUID;
+
+/**
+ * 快照头信息。全量快照的 baseId 为 null；增量快照只含基准快照之后变更过的记录，导入方须已导入/导出过 baseId 对应的快照。
+ * 旧版（meta 版本 1）文件没有编号，snapshotId 为 null，只能作为全量快照单独导入。
+ */
+final class SnapshotMeta {
+    final String snapshotId;
+    final String baseId;
+    final long generatedAt;
+    // 未知时为 -1
+    final int recordCount;
+
+    SnapshotMeta(String snapshotId, String baseId, long generatedAt, int recordCount) {
+        this.snapshotId = emptyToNull(snapshotId);
+        this.baseId = emptyToNull(baseId);
+        this.generatedAt = generatedAt;
+        this.recordCount = recordCount;
+    }
+
+    static SnapshotMeta full(int recordCount) {
+        return new SnapshotMeta(UUID.randomUUID().toString(), null, System.currentTimeMillis(), recordCount);
+    }
+
+    static SnapshotMeta delta(String baseId, int recordCount) {
+        return new SnapshotMeta(UUID.randomUUID().toString(), baseId, System.currentTimeMillis(), recordCount);
+    }
+
+    boolean isDelta() {
+        return baseId != null;
+    }
+
+    private static String emptyToNull(String s) {
+        return s == null || s.isEmpty() ? null : s;
+    }
+}
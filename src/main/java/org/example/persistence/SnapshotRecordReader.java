@@ -0,0 +1,31 @@
+package org.example.persistence;
+
+import org.example.model.StudentAwardRecord;
+
+import java.io.IOException;
+
+/**
+ * 快照逐条读取接口（JSON / 二进制格式各有实现），导入端据此按批写库而不必一次读入整个文件。
+ */
+interface SnapshotRecordReader extends AutoCloseable {
+
+    /**
+     * 快照头信息（编号、基准快照、声明的记录数）。
+     */
+    SnapshotMeta meta();
+
+    /**
+     * 快照头声明的记录数，未知时为 -1。
+     */
+    default int declaredCount() {
+        return meta().recordCount;
+    }
+
+    /**
+     * 读取下一条记录；读完时返回 null。
+     */
+    StudentAwardRecord next() throws IOException;
+
+    @Override
+    void close() throws IOException;
+}
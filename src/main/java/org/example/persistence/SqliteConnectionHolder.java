@@ -0,0 +1,114 @@
+package org.example.persistence;
+
+import org.example.config.Config;
+import org.example.util.LoggerUtil;
+import org.slf4j.Logger;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * SQLite 长连接持有者：每个数据库文件共享一条连接（WAL + 可配置 synchronous），
+ * 并缓存 PreparedStatement，单次写入只剩一次语句执行。
+ * 非线程安全的 JDBC 对象统一由调用方在 synchronized (holder) 内使用。
+ */
+public final class SqliteConnectionHolder implements AutoCloseable {
+    private static final Logger LOGGER = LoggerUtil.getLogger(SqliteConnectionHolder.class.getName());
+    private static final Map<String, SqliteConnectionHolder> HOLDERS = new ConcurrentHashMap<>();
+
+    private final String dbPath;
+    private final Map<String, PreparedStatement> statements = new HashMap<>();
+    private Connection connection;
+    private boolean schemaReady;
+
+    private SqliteConnectionHolder(String dbPath) {
+        this.dbPath = dbPath;
+    }
+
+    /**
+     * 按文件绝对路径获取共享持有者（连接惰性打开，关闭后再次使用会自动重连）。
+     */
+    public static SqliteConnectionHolder forPath(String dbPath) {
+        return HOLDERS.computeIfAbsent(new File(dbPath).getAbsolutePath(), SqliteConnectionHolder::new);
+    }
+
+    public static void closeAll() {
+        HOLDERS.values().forEach(SqliteConnectionHolder::close);
+    }
+
+    public synchronized Connection connection() throws SQLException {
+        if (connection == null || connection.isClosed()) {
+            connection = DriverManager.getConnection("jdbc:sqlite:" + dbPath);
+            try (Statement st = connection.createStatement()) {
+                st.execute("PRAGMA journal_mode=WAL");
+                st.execute("PRAGMA synchronous=" + Config.DB_SYNCHRONOUS);
+                st.execute("PRAGMA busy_timeout=" + Config.DB_BUSY_TIMEOUT_MS);
+            }
+            LOGGER.debug("打开数据库连接: " + dbPath + " (WAL, synchronous=" + Config.DB_SYNCHRONOUS + ")");
+        }
+        return connection;
+    }
+
+    /**
+     * 取缓存的 PreparedStatement（按 SQL 文本缓存，首次使用时预编译）。
+     */
+    public synchronized PreparedStatement prepare(String sql) throws SQLException {
+        PreparedStatement ps = statements.get(sql);
+        if (ps == null || ps.isClosed()) {
+            ps = connection().prepareStatement(sql);
+            statements.put(sql, ps);
+        }
+        return ps;
+    }
+
+    /**
+     * 首次调用返回 true，表示本进程内尚未建表/迁移；之后返回 false，避免重复执行 initDb。
+     */
+    public synchronized boolean claimSchemaInit() {
+        if (schemaReady) return false;
+        schemaReady = true;
+        return true;
+    }
+
+    /**
+     * 关闭连接并删除数据库文件（含 -wal / -shm），下次使用时重新建表。
+     */
+    public synchronized boolean closeAndDelete() {
+        close();
+        schemaReady = false;
+        boolean ok = true;
+        for (String suffix : new String[]{"", "-wal", "-shm"}) {
+            File f = new File(dbPath + suffix);
+            if (f.exists() && !f.delete()) ok = false;
+        }
+        return ok;
+    }
+
+    @Override
+    public synchronized void close() {
+        for (PreparedStatement ps : statements.values()) {
+            try {
+                ps.close();
+            } catch (SQLException ignore) {
+                // 连接即将关闭
+            }
+        }
+        statements.clear();
+        if (connection != null) {
+            try {
+                connection.close();
+                LOGGER.debug("关闭数据库连接: " + dbPath);
+            } catch (SQLException e) {
+                LoggerUtil.logException(LOGGER, e, "关闭数据库连接失败");
+            }
+            connection = null;
+        }
+    }
+}
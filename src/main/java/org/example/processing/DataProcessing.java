@@ -2,7 +2,6 @@ package org.example.processing;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import org.apache.poi.ss.usermodel.Cell;
 import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.usermodel.Workbook;
@@ -10,11 +9,11 @@ import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.example.config.Config;
 import org.example.model.Award;
 import org.example.model.Student;
+import org.example.util.StringDictionary;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -26,6 +25,7 @@ import java.util.Map;
  */
 public class DataProcessing {
     private static final Logger LOGGER = LoggerFactory.getLogger(DataProcessing.class);
+    private static final StringDictionary DICT = StringDictionary.shared();
     private final ObjectMapper mapper = new ObjectMapper();
 
     public List<Student> loadData() {
@@ -35,32 +35,30 @@ public class DataProcessing {
             LOGGER.warn("文件不存在: " + Config.AWARDS_SUMMARY_PATH);
             return list;
         }
-        try (FileInputStream fis = new FileInputStream(f); Workbook wb = new XSSFWorkbook(fis)) {
-            Sheet sheet = wb.getSheet(Config.SHEET_MAIN);
-            if (sheet == null) return list;
-            Row header = sheet.getRow(0);
-            if (header == null) return list;
-            int colStudentId = findColumnIndex(header, Config.COL_STUDENT_ID);
-            int colName = findColumnIndex(header, Config.COL_NAME);
-            int colClazz = findColumnIndex(header, Config.COL_CLASS);
-            int colAwards = findColumnIndex(header, "奖项");
-            for (int r = 1; r <= sheet.getLastRowNum(); r++) {
-                Row row = sheet.getRow(r);
-                if (row == null) continue;
-                String sidStr = getCellString(row.getCell(colStudentId));
-                if (sidStr == null || sidStr.isEmpty()) continue;
+        int[] cols = new int[4]; // 学号, 姓名, 班级, 奖项
+        try {
+            XlsxStreamReader.readSheet(f, Config.SHEET_MAIN, (r, cells) -> {
+                if (r == 0) {
+                    cols[0] = XlsxStreamReader.indexOf(cells, Config.COL_STUDENT_ID);
+                    cols[1] = XlsxStreamReader.indexOf(cells, Config.COL_NAME);
+                    cols[2] = XlsxStreamReader.indexOf(cells, Config.COL_CLASS);
+                    cols[3] = XlsxStreamReader.indexOf(cells, "奖项");
+                    return;
+                }
+                String sidStr = XlsxStreamReader.cell(cells, cols[0]);
+                if (sidStr == null || sidStr.isEmpty()) return;
                 long sid;
                 try {
                     sid = Long.parseLong(sidStr);
                 } catch (NumberFormatException ex) {
-                    continue;
+                    return;
                 }
-                String name = getCellString(row.getCell(colName));
-                String clazz = getCellString(row.getCell(colClazz));
-                String awardsJson = getCellString(row.getCell(colAwards));
+                String name = XlsxStreamReader.cell(cells, cols[1]);
+                String clazz = XlsxStreamReader.cell(cells, cols[2]);
+                String awardsJson = XlsxStreamReader.cell(cells, cols[3]);
                 List<Award> awards = parseAwards(awardsJson);
-                list.add(new Student(sid, name == null ? "" : name, clazz == null ? "" : clazz, awards));
-            }
+                list.add(new Student(sid, name == null ? "" : name, clazz == null ? "" : DICT.intern(clazz), awards));
+            });
         } catch (Exception e) {
             LOGGER.error("读取数据失败", e);
         }
@@ -71,35 +69,31 @@ public class DataProcessing {
         Map<Long, String[]> map = new HashMap<>();
         File f = new File(Config.STUDENT_AWARDS_PATH);
         if (!f.exists()) initNewFile();
-        try (FileInputStream fis = new FileInputStream(f); Workbook wb = new XSSFWorkbook(fis)) {
-            Sheet sheet = wb.getSheet(Config.SHEET_MAIN);
-            if (sheet == null) return map;
-            Row header = sheet.getRow(0);
-            if (header == null) return map;
-            int colStudentId = findColumnIndex(header, Config.COL_STUDENT_ID);
-            int[] awardCols = new int[50];
-            for (int i = 0; i < 50; i++)
-                awardCols[i] = findColumnIndex(header, Config.COL_AWARD_LABEL_PREFIX + (i + 1));
-            for (int r = 1; r <= sheet.getLastRowNum(); r++) {
-                Row row = sheet.getRow(r);
-                if (row == null) continue;
-                String sidStr = getCellString(row.getCell(colStudentId));
-                if (sidStr == null || sidStr.isEmpty()) continue;
+        int[] colStudentId = new int[1];
+        int[] awardCols = new int[50];
+        try {
+            XlsxStreamReader.readSheet(f, Config.SHEET_MAIN, (r, cells) -> {
+                if (r == 0) {
+                    colStudentId[0] = XlsxStreamReader.indexOf(cells, Config.COL_STUDENT_ID);
+                    for (int i = 0; i < 50; i++)
+                        awardCols[i] = XlsxStreamReader.indexOf(cells, Config.COL_AWARD_LABEL_PREFIX + (i + 1));
+                    return;
+                }
+                String sidStr = XlsxStreamReader.cell(cells, colStudentId[0]);
+                if (sidStr == null || sidStr.isEmpty()) return;
                 long sid;
                 try {
                     sid = Long.parseLong(sidStr);
                 } catch (NumberFormatException ex) {
-                    continue;
+                    return;
                 }
                 String[] labels = new String[50];
                 for (int i = 0; i < 50; i++) {
-                    if (awardCols[i] >= 0) {
-                        labels[i] = getCellString(row.getCell(awardCols[i]));
-                        if (labels[i] == null) labels[i] = "";
-                    } else labels[i] = "";
+                    labels[i] = XlsxStreamReader.cell(cells, awardCols[i]);
+                    if (labels[i] == null) labels[i] = "";
                 }
                 map.put(sid, labels);
-            }
+            });
         } catch (Exception e) {
             LOGGER.error("读取 newFile 失败", e);
         }
@@ -125,29 +119,6 @@ public class DataProcessing {
         }
     }
 
-    private int findColumnIndex(Row header, String name) {
-        for (int i = 0; i < header.getLastCellNum(); i++) {
-            Cell cell = header.getCell(i);
-            if (cell != null && name.equals(cell.getStringCellValue())) return i;
-        }
-        return -1;
-    }
-
-    private String getCellString(Cell cell) {
-        if (cell == null) return null;
-        switch (cell.getCellType()) {
-            case STRING:
-                return cell.getStringCellValue();
-            case NUMERIC:
-                double d = cell.getNumericCellValue();
-                return d == (long) d ? String.valueOf((long) d) : String.valueOf(d);
-            case BLANK:
-                return "";
-            default:
-                return cell.toString();
-        }
-    }
-
     private List<Award> parseAwards(String json) {
         List<Award> list = new ArrayList<>();
         if (json == null || json.isEmpty()) return list;
@@ -157,7 +128,7 @@ public class DataProcessing {
                 for (JsonNode node : arr) {
                     String name = node.has("奖项") ? node.get("奖项").asText() : "";
                     String img = node.has("证书图片") ? node.get("证书图片").asText() : "";
-                    list.add(new Award(name, img));
+                    list.add(new Award(DICT.intern(name), DICT.intern(img)));
                 }
             }
         } catch (Exception e) {
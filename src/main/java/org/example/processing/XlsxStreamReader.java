@@ -0,0 +1,232 @@
+package org.example.processing;
+
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+import java.io.File;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * xlsx 流式读取（XSSFReader + SAX）：逐行回调，不构建 XSSFWorkbook DOM，内存只与单行大小相关。
+ * 单元格统一转为字符串：数值型整数去掉小数部分（与各加载器原 getCellString 一致），空单元格为 null。
+ */
+public final class XlsxStreamReader {
+
+    private XlsxStreamReader() {
+    }
+
+    /**
+     * 行回调。rowIndex 从 0 开始（0 通常为表头），cells 按列号展开，缺失单元格为 null。
+     */
+    @FunctionalInterface
+    public interface RowHandler {
+        void onRow(int rowIndex, String[] cells) throws Exception;
+    }
+
+    /**
+     * 按工作簿中的顺序访问工作表：visitor 返回该表的行回调，返回 null 表示跳过该表。
+     */
+    @FunctionalInterface
+    public interface SheetVisitor {
+        RowHandler onSheet(String sheetName) throws Exception;
+    }
+
+    /**
+     * 读取指定名称的工作表；sheetName 为 null 时读取第一个工作表。
+     * @return 工作表不存在时返回 false
+     */
+    public static boolean readSheet(File file, String sheetName, RowHandler handler) throws Exception {
+        try (OPCPackage pkg = OPCPackage.open(file, PackageAccess.READ)) {
+            XSSFReader reader = new XSSFReader(pkg);
+            ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(pkg, false);
+            XSSFReader.SheetIterator it = (XSSFReader.SheetIterator) reader.getSheetsData();
+            while (it.hasNext()) {
+                try (InputStream sheet = it.next()) {
+                    if (sheetName == null || sheetName.equals(it.getSheetName())) {
+                        parse(sheet, strings, handler);
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 依次读取全部工作表（共享字符串表只加载一次）。
+     * @return 实际读取（visitor 未跳过）的工作表数
+     */
+    public static int readSheets(File file, SheetVisitor visitor) throws Exception {
+        int read = 0;
+        try (OPCPackage pkg = OPCPackage.open(file, PackageAccess.READ)) {
+            XSSFReader reader = new XSSFReader(pkg);
+            ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(pkg, false);
+            XSSFReader.SheetIterator it = (XSSFReader.SheetIterator) reader.getSheetsData();
+            while (it.hasNext()) {
+                try (InputStream sheet = it.next()) {
+                    RowHandler handler = visitor.onSheet(it.getSheetName());
+                    if (handler == null) continue;
+                    parse(sheet, strings, handler);
+                    read++;
+                }
+            }
+        }
+        return read;
+    }
+
+    /**
+     * 在表头行中按名称精确查找列号，找不到返回 -1。
+     */
+    public static int indexOf(String[] header, String name) {
+        for (int i = 0; i < header.length; i++) {
+            if (name.equals(header[i])) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * 越界安全的取值（列号为负或超出本行长度时返回 null）。
+     */
+    public static String cell(String[] cells, int index) {
+        return index >= 0 && index < cells.length ? cells[index] : null;
+    }
+
+    private static void parse(InputStream sheet, ReadOnlySharedStringsTable strings, RowHandler handler) throws Exception {
+        XMLReader parser = XMLHelper.newXMLReader();
+        SheetHandler sheetHandler = new SheetHandler(strings, handler);
+        parser.setContentHandler(sheetHandler);
+        try {
+            parser.parse(new InputSource(sheet));
+        } catch (SAXException e) {
+            // 回调异常经 SAXException 包装穿出解析器，这里还原
+            if (e.getException() != null) throw e.getException();
+            throw e;
+        }
+    }
+
+    // ================= 内部：sheetN.xml SAX 处理 =================
+    private static final class SheetHandler extends DefaultHandler {
+        private final ReadOnlySharedStringsTable strings;
+        private final RowHandler handler;
+        private final List<String> row = new ArrayList<>();
+        private final StringBuilder text = new StringBuilder();
+        private int rowIndex = -1;
+        private int column;
+        private String cellType;
+        private boolean inValue;
+        private boolean inInlineText;
+        private boolean hasValue;
+
+        SheetHandler(ReadOnlySharedStringsTable strings, RowHandler handler) {
+            this.strings = strings;
+            this.handler = handler;
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attrs) {
+            String name = localName == null || localName.isEmpty() ? qName : localName;
+            switch (name) {
+                case "row":
+                    String r = attrs.getValue("r");
+                    rowIndex = r != null ? Integer.parseInt(r) - 1 : rowIndex + 1;
+                    row.clear();
+                    column = -1;
+                    break;
+                case "c":
+                    String ref = attrs.getValue("r");
+                    column = ref != null ? columnOf(ref) : column + 1;
+                    cellType = attrs.getValue("t");
+                    text.setLength(0);
+                    hasValue = false;
+                    break;
+                case "v":
+                    inValue = true;
+                    hasValue = true;
+                    break;
+                case "t":
+                    // 内联字符串 <is><t>..</t></is>，富文本时可能有多个 <t>
+                    if ("inlineStr".equals(cellType)) {
+                        inInlineText = true;
+                        hasValue = true;
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            if (inValue || inInlineText) text.append(ch, start, length);
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) throws SAXException {
+            String name = localName == null || localName.isEmpty() ? qName : localName;
+            switch (name) {
+                case "v":
+                    inValue = false;
+                    break;
+                case "t":
+                    inInlineText = false;
+                    break;
+                case "c":
+                    if (hasValue) {
+                        while (row.size() <= column) row.add(null);
+                        row.set(column, convert(cellType, text.toString()));
+                    }
+                    break;
+                case "row":
+                    try {
+                        handler.onRow(rowIndex, row.toArray(new String[0]));
+                    } catch (Exception e) {
+                        throw new SAXException(e);
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        private String convert(String type, String raw) {
+            if (type == null || "n".equals(type)) {
+                if (raw.isEmpty()) return "";
+                try {
+                    double d = Double.parseDouble(raw);
+                    return d == (long) d ? String.valueOf((long) d) : String.valueOf(d);
+                } catch (NumberFormatException e) {
+                    return raw;
+                }
+            }
+            switch (type) {
+                case "s":
+                    return strings.getItemAt(Integer.parseInt(raw.trim())).getString();
+                case "b":
+                    return "1".equals(raw) ? "TRUE" : "FALSE";
+                default:
+                    // inlineStr / str(公式字符串结果) / e(错误值) 原样返回
+                    return raw;
+            }
+        }
+
+        private static int columnOf(String ref) {
+            int col = 0;
+            for (int i = 0; i < ref.length(); i++) {
+                char c = ref.charAt(i);
+                if (c < 'A' || c > 'Z') break;
+                col = col * 26 + (c - 'A' + 1);
+            }
+            return col - 1;
+        }
+    }
+}
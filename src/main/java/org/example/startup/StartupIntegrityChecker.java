@@ -24,6 +24,7 @@ public final class StartupIntegrityChecker {
             checkFiles();
             checkStudents(students);
             checkRecordMap(newDataManager, students);
+            checkAwardLabels(newDataManager);
             LOGGER.info("启动完整性检查完成");
         } catch (Exception ex) {
             LoggerUtil.logException(LOGGER, ex, "启动完整性检查异常");
@@ -62,5 +63,10 @@ public final class StartupIntegrityChecker {
         }
         LOGGER.debug("已存在记录学生数=" + records + " 其中已全部录入=" + withFull + " (recordMap size可能 > 统计数)");
     }
+
+    private static void checkAwardLabels(NewDataManager dm) {
+        if (dm == null) return;
+        LOGGER.debug("数据库奖项分类统计(空串=未评分): " + dm.countAwardsByCategory());
+    }
 }
 
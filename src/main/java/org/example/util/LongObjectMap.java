@@ -0,0 +1,218 @@
+package org.example.util;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.function.LongFunction;
+
+/**
+ * long -> 对象 的开放寻址哈希表（线性探测，键为原始 long，不装箱）。
+ * 额外维护一份按键升序的视图：结构变化后首次访问时重建（一次排序），之后按学号顺序遍历无需再排序。
+ * 不允许 null 值；与 HashMap 一样非线程安全。
+ */
+public final class LongObjectMap<V> {
+    private static final float LOAD_FACTOR = 0.6f;
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] keys;
+    private Object[] values;
+    private int size;
+    private int resizeAt;
+
+    // 有序视图缓存，结构变化 (新增/删除/清空) 时置空
+    private long[] sortedKeys;
+    private List<V> sortedValues;
+
+    public LongObjectMap() {
+        this(MIN_CAPACITY);
+    }
+
+    public LongObjectMap(int expectedSize) {
+        allocate(tableSizeFor(expectedSize));
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        int slot = find(key);
+        return slot < 0 ? null : (V) values[slot];
+    }
+
+    public boolean containsKey(long key) {
+        return find(key) >= 0;
+    }
+
+    /**
+     * 写入键值，返回旧值（不存在时为 null）。
+     */
+    @SuppressWarnings("unchecked")
+    public V put(long key, V value) {
+        if (value == null) throw new IllegalArgumentException("value 不能为 null");
+        int mask = keys.length - 1;
+        int slot = mix(key) & mask;
+        while (values[slot] != null) {
+            if (keys[slot] == key) {
+                V old = (V) values[slot];
+                values[slot] = value;
+                if (sortedValues != null) invalidateOrder(); // 值替换不改变键序，但视图持有旧对象
+                return old;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        invalidateOrder();
+        if (++size >= resizeAt) rehash(keys.length << 1);
+        return null;
+    }
+
+    public V computeIfAbsent(long key, LongFunction<? extends V> factory) {
+        V v = get(key);
+        if (v == null) {
+            v = factory.apply(key);
+            if (v != null) put(key, v);
+        }
+        return v;
+    }
+
+    /**
+     * 删除键，返回旧值。采用向后移位删除，不留墓碑，探测链保持紧凑。
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(long key) {
+        int slot = find(key);
+        if (slot < 0) return null;
+        V old = (V) values[slot];
+        int mask = keys.length - 1;
+        int gap = slot;
+        int next = (gap + 1) & mask;
+        while (values[next] != null) {
+            int home = mix(keys[next]) & mask;
+            // next 的理想位置不在 (gap, next] 区间内时，可以前移填补空位
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                keys[gap] = keys[next];
+                values[gap] = values[next];
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+        values[gap] = null;
+        size--;
+        invalidateOrder();
+        return old;
+    }
+
+    public void clear() {
+        Arrays.fill(values, null);
+        size = 0;
+        invalidateOrder();
+    }
+
+    /**
+     * 按键升序排列的全部键（只读视图，调用方不得修改）。
+     */
+    public long[] sortedKeys() {
+        ensureOrder();
+        return sortedKeys;
+    }
+
+    /**
+     * 按键升序排列的全部值（不可修改的 List），映射结构变化后需重新获取。
+     */
+    public List<V> valuesInKeyOrder() {
+        ensureOrder();
+        return sortedValues;
+    }
+
+    // ================= 内部 =================
+    private int find(long key) {
+        int mask = keys.length - 1;
+        int slot = mix(key) & mask;
+        while (values[slot] != null) {
+            if (keys[slot] == key) return slot;
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void ensureOrder() {
+        if (sortedValues != null) return;
+        long[] sk = new long[size];
+        int n = 0;
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null) sk[n++] = keys[i];
+        }
+        Arrays.sort(sk);
+        Object[] sv = new Object[size];
+        for (int i = 0; i < sk.length; i++) {
+            sv[i] = values[find(sk[i])];
+        }
+        sortedKeys = sk;
+        sortedValues = new OrderedValues<>(sv);
+    }
+
+    private void invalidateOrder() {
+        sortedKeys = null;
+        sortedValues = null;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        allocate(capacity);
+        int mask = capacity - 1;
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] == null) continue;
+            int slot = mix(oldKeys[i]) & mask;
+            while (values[slot] != null) slot = (slot + 1) & mask;
+            keys[slot] = oldKeys[i];
+            values[slot] = oldValues[i];
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new Object[capacity];
+        resizeAt = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private static int tableSizeFor(int expectedSize) {
+        long needed = (long) Math.ceil(Math.max(expectedSize, 1) / (double) LOAD_FACTOR) + 1;
+        int capacity = MIN_CAPACITY;
+        while (capacity < needed && capacity < (1 << 30)) capacity <<= 1;
+        return capacity;
+    }
+
+    // 学号高位相近、低位集中，先做一次 64 位混合再取低位
+    private static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private static final class OrderedValues<V> extends AbstractList<V> implements RandomAccess {
+        private final Object[] items;
+
+        OrderedValues(Object[] items) {
+            this.items = items;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public V get(int index) {
+            return (V) items[index];
+        }
+
+        @Override
+        public int size() {
+            return items.length;
+        }
+    }
+}
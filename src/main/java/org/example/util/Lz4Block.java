@@ -0,0 +1,157 @@
+package org.example.util;
+
+import java.util.Arrays;
+
+/**
+ * LZ4 块格式（无帧头）的快速压缩/解压：单哈希表贪心匹配，与 lz4 命令行的默认级别思路相同。
+ * 只处理单个块，帧格式由调用方组装。输出可被任何标准 LZ4 解码器解压。
+ */
+public final class Lz4Block {
+    private static final int MIN_MATCH = 4;
+    // 块尾约束：最后 5 字节必须是字面量，最后一个匹配须在距结尾 12 字节之前开始
+    private static final int LAST_LITERALS = 5;
+    private static final int MF_LIMIT = 12;
+    private static final int MAX_OFFSET = 65535;
+    private static final int HASH_LOG = 14;
+    // 连续未命中时逐步加大跳跃步长，不可压缩数据不至于逐字节搜索
+    private static final int SKIP_TRIGGER = 6;
+
+    private Lz4Block() {}
+
+    /**
+     * 最坏情况（完全不可压缩）下的压缩输出长度。
+     */
+    public static int maxCompressedLength(int len) {
+        return len + len / 255 + 16;
+    }
+
+    /**
+     * 压缩 src[off, off+len) 到 dst[dOff...]，dst 剩余空间须不小于 maxCompressedLength(len)。
+     * @return 写入 dst 的字节数
+     */
+    public static int compress(byte[] src, int off, int len, byte[] dst, int dOff) {
+        int end = off + len;
+        int d = dOff;
+        int anchor = off;
+        if (len >= MF_LIMIT + 1) {
+            int[] table = new int[1 << HASH_LOG];
+            Arrays.fill(table, -1);
+            int limit = end - MF_LIMIT;
+            int matchLimit = end - LAST_LITERALS;
+            int i = off;
+            int misses = 0;
+            while (i < limit) {
+                int seq = readInt(src, i);
+                int h = hash(seq);
+                int ref = table[h];
+                table[h] = i;
+                if (ref < 0 || i - ref > MAX_OFFSET || readInt(src, ref) != seq) {
+                    i += 1 + (misses++ >>> SKIP_TRIGGER);
+                    continue;
+                }
+                misses = 0;
+                // 向前扩展匹配
+                while (i > anchor && ref > off && src[i - 1] == src[ref - 1]) {
+                    i--;
+                    ref--;
+                }
+                int matchLen = MIN_MATCH;
+                while (i + matchLen < matchLimit && src[ref + matchLen] == src[i + matchLen]) matchLen++;
+                d = writeSequence(src, anchor, i - anchor, i - ref, matchLen, dst, d);
+                i += matchLen;
+                anchor = i;
+                if (i < limit) table[hash(readInt(src, i - 2))] = i - 2;
+            }
+        }
+        return writeLastLiterals(src, anchor, end - anchor, dst, d) - dOff;
+    }
+
+    /**
+     * 解压 src[off, off+len) 到 dst[dOff...]。
+     * @return 写入 dst 的字节数
+     * @throws IllegalArgumentException 数据损坏或 dst 空间不足
+     */
+    public static int decompress(byte[] src, int off, int len, byte[] dst, int dOff) {
+        int s = off;
+        int end = off + len;
+        int d = dOff;
+        try {
+            while (s < end) {
+                int token = src[s++] & 0xff;
+                int litLen = token >>> 4;
+                if (litLen == 15) {
+                    int b;
+                    do {
+                        b = src[s++] & 0xff;
+                        litLen += b;
+                    } while (b == 255);
+                }
+                System.arraycopy(src, s, dst, d, litLen);
+                s += litLen;
+                d += litLen;
+                if (s >= end) break; // 最后一个序列只有字面量
+                int offset = (src[s] & 0xff) | (src[s + 1] & 0xff) << 8;
+                s += 2;
+                if (offset == 0 || offset > d - dOff) throw new IllegalArgumentException("LZ4 偏移无效: " + offset);
+                int matchLen = token & 0x0f;
+                if (matchLen == 15) {
+                    int b;
+                    do {
+                        b = src[s++] & 0xff;
+                        matchLen += b;
+                    } while (b == 255);
+                }
+                matchLen += MIN_MATCH;
+                int from = d - offset;
+                if (offset >= matchLen) {
+                    System.arraycopy(dst, from, dst, d, matchLen);
+                    d += matchLen;
+                } else {
+                    // 重叠复制（如连续重复字节），须逐字节
+                    for (int k = 0; k < matchLen; k++) dst[d++] = dst[from + k];
+                }
+            }
+        } catch (IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("LZ4 数据损坏或输出空间不足", e);
+        }
+        return d - dOff;
+    }
+
+    private static int writeSequence(byte[] src, int litStart, int litLen, int offset, int matchLen, byte[] dst, int d) {
+        int ml = matchLen - MIN_MATCH;
+        int tokenPos = d++;
+        int token = (Math.min(litLen, 15) << 4) | Math.min(ml, 15);
+        if (litLen >= 15) d = writeLength(litLen - 15, dst, d);
+        System.arraycopy(src, litStart, dst, d, litLen);
+        d += litLen;
+        dst[d++] = (byte) offset;
+        dst[d++] = (byte) (offset >>> 8);
+        if (ml >= 15) d = writeLength(ml - 15, dst, d);
+        dst[tokenPos] = (byte) token;
+        return d;
+    }
+
+    private static int writeLastLiterals(byte[] src, int litStart, int litLen, byte[] dst, int d) {
+        dst[d++] = (byte) (Math.min(litLen, 15) << 4);
+        if (litLen >= 15) d = writeLength(litLen - 15, dst, d);
+        System.arraycopy(src, litStart, dst, d, litLen);
+        return d + litLen;
+    }
+
+    private static int writeLength(int rest, byte[] dst, int d) {
+        while (rest >= 255) {
+            dst[d++] = (byte) 255;
+            rest -= 255;
+        }
+        dst[d++] = (byte) rest;
+        return d;
+    }
+
+    private static int readInt(byte[] b, int i) {
+        return (b[i] & 0xff) | (b[i + 1] & 0xff) << 8 | (b[i + 2] & 0xff) << 16 | (b[i + 3] & 0xff) << 24;
+    }
+
+    private static int hash(int seq) {
+        return (seq * -1640531535) >>> (32 - HASH_LOG);
+    }
+}
@@ -0,0 +1,103 @@
+package org.example.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 字符串字典：重复出现的值（班级、奖项名称、证书图片链接）只保留一份实例，并分配从 0 递增的 int 编号，
+ * 快照等序列化格式可以只写编号。线程安全；编号在同一个字典实例内稳定，不跨进程。
+ * 学生姓名等基本不重复的字段不要放进来，只会让字典变大而节省不了内存。
+ */
+public final class StringDictionary {
+    private static final StringDictionary SHARED = new StringDictionary();
+    // String 对象头 + 字段 (~24B) 与 byte[] 头 (~16B) 的估算值
+    private static final int STRING_OVERHEAD_BYTES = 40;
+
+    private static final class Entry {
+        final int id;
+        final String value;
+
+        Entry(int id, String value) {
+            this.id = id;
+            this.value = value;
+        }
+    }
+
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final List<String> byId = new ArrayList<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder savedBytes = new LongAdder();
+
+    /**
+     * 加载器共用的进程级字典。
+     */
+    public static StringDictionary shared() {
+        return SHARED;
+    }
+
+    /**
+     * 返回字典中与 s 相等的唯一实例（首次出现时登记）。null 原样返回。
+     */
+    public String intern(String s) {
+        if (s == null) return null;
+        return entry(s).value;
+    }
+
+    /**
+     * s 的编号（首次出现时登记）。
+     */
+    public int idOf(String s) {
+        return entry(s).id;
+    }
+
+    public synchronized String valueOf(int id) {
+        return byId.get(id);
+    }
+
+    public synchronized int size() {
+        return byId.size();
+    }
+
+    /**
+     * 按编号顺序的全部值（副本）。
+     */
+    public synchronized List<String> values() {
+        return new ArrayList<>(byId);
+    }
+
+    /**
+     * 命中字典（即少分配一个 String）所节省的估算字节数。
+     */
+    public long estimatedBytesSaved() {
+        return savedBytes.sum();
+    }
+
+    public String summary() {
+        return "字符串字典: " + size() + " 个不同值, 复用 " + hits.sum() + " 次, 约节省 " + (estimatedBytesSaved() / 1024) + " KB";
+    }
+
+    private Entry entry(String s) {
+        Entry e = entries.get(s);
+        if (e != null) {
+            if (e.value != s) {
+                hits.increment();
+                savedBytes.add(estimateBytes(s));
+            }
+            return e;
+        }
+        return entries.computeIfAbsent(s, this::register);
+    }
+
+    private synchronized Entry register(String s) {
+        byId.add(s);
+        return new Entry(byId.size() - 1, s);
+    }
+
+    private static long estimateBytes(String s) {
+        // 紧凑字符串：纯 Latin-1 每字符 1 字节，否则 2 字节
+        boolean latin1 = s.chars().allMatch(c -> c < 256);
+        return STRING_OVERHEAD_BYTES + (long) s.length() * (latin1 ? 1 : 2);
+    }
+}
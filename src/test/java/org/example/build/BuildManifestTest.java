@@ -0,0 +1,63 @@
+package org.example.build;
+
+import org.example.util.LongObjectMap;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BuildManifestTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void diffFindsAppendedChangedAndRemovedRowsAfterRoundTrip() throws IOException {
+        File summary = Files.writeString(dir.resolve("summary.xlsx"), "x").toFile();
+        File source = Files.writeString(dir.resolve("raw.xlsx"), "raw").toFile();
+        BuildManifest.Source before = BuildManifest.Source.of(source);
+        before.add(0, 1, row("1001", "竞赛一等奖"), BuildManifest.studentHash("1001"));
+        before.add(0, 2, row("1002", "英语证书"), BuildManifest.studentHash("1002"));
+        before.add(0, 3, row("1003", "三好学生"), BuildManifest.studentHash("1003"));
+        before.add(0, 4, row("1004", "优秀干部"), BuildManifest.studentHash("1004"));
+        BuildManifest manifest = new BuildManifest(summary.length(), summary.lastModified());
+        manifest.put(before);
+        File file = dir.resolve("build.manifest").toFile();
+        manifest.write(file);
+
+        BuildManifest read = BuildManifest.readIfCurrent(file, summary);
+        assertNotNull(read);
+        BuildManifest.Source previous = read.get(source);
+        assertTrue(previous.sameFingerprint(source));
+
+        // 第 2 行改了奖项、第 4 行删除、追加第 5 行（学生 1005）；第 1、3 行不变
+        BuildManifest.Source after = BuildManifest.Source.of(source);
+        after.add(0, 1, row("1001", "竞赛一等奖"), BuildManifest.studentHash("1001"));
+        after.add(0, 2, row("1002", "英语证书（补）"), BuildManifest.studentHash("1002"));
+        after.add(0, 3, row("1003", "三好学生"), BuildManifest.studentHash("1003"));
+        after.add(0, 5, row("1005", "竞赛二等奖"), BuildManifest.studentHash("1005"));
+        LongObjectMap<Boolean> affected = new LongObjectMap<>();
+        assertEquals(3, after.diff(previous, affected));
+        assertEquals(3, affected.size());
+        for (String sid : new String[]{"1002", "1004", "1005"}) assertTrue(affected.containsKey(BuildManifest.studentHash(sid)));
+        assertFalse(affected.containsKey(BuildManifest.studentHash("1001")));
+        assertTrue(before.touches(affected));
+
+        // 汇总被改动后清单作废
+        assertTrue(summary.setLastModified(summary.lastModified() + 10_000));
+        assertNull(BuildManifest.readIfCurrent(file, summary));
+    }
+
+    private static long row(String sid, String award) {
+        return BuildManifest.rowHash(new String[]{null, "学生" + sid, "班级1", sid, award, "https://img/" + sid + ".jpg"});
+    }
+}
@@ -0,0 +1,54 @@
+package org.example.build;
+
+import org.example.processing.XlsxStreamReader;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+public class BuildNullTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void sameSeedGivesSameRowsAcrossSheets() throws Exception {
+        File a = dir.resolve("a.xlsx").toFile();
+        File b = dir.resolve("b.xlsx").toFile();
+        File c = dir.resolve("c.xlsx").toFile();
+        // 分区 16 行、每表 100 行：250 名学生跨 3 个工作表、16 个分区
+        new BuildNull(250, 42, 16, 100).write(a);
+        new BuildNull(250, 42, 16, 100).write(b);
+        new BuildNull(250, 43, 16, 100).write(c);
+
+        List<String> rowsA = rows(a);
+        assertEquals(250, rowsA.size());
+        assertEquals(rowsA, rows(b));
+        assertNotEquals(rowsA, rows(c));
+        assertEquals(List.of("Sheet1", "Sheet2", "Sheet3"), sheets(a));
+    }
+
+    private static List<String> rows(File file) throws Exception {
+        List<String> out = new ArrayList<>();
+        XlsxStreamReader.readSheets(file, sheet -> (i, cells) -> {
+            if (i > 0) out.add(Arrays.toString(Arrays.copyOfRange(cells, 6, cells.length)));
+        });
+        return out;
+    }
+
+    private static List<String> sheets(File file) throws Exception {
+        List<String> out = new ArrayList<>();
+        XlsxStreamReader.readSheets(file, sheet -> {
+            out.add(sheet);
+            return null;
+        });
+        return out;
+    }
+}
@@ -0,0 +1,133 @@
+package org.example.build;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SpillingAggregatorTest {
+
+    @Test
+    void spilledRunsMergeToSameAggregateInIdOrder() throws IOException {
+        Map<String, List<String>> spilled = new LinkedHashMap<>();
+        Map<String, List<String>> inMemory = new LinkedHashMap<>();
+        // 预算极小、扇入为 2：几乎每行溢写一段，并触发多轮中间归并
+        try (SpillingAggregator small = new SpillingAggregator(1, 2);
+             SpillingAggregator unbounded = new SpillingAggregator(Long.MAX_VALUE, 2)) {
+            String[] ids = {"20240012", "9", "20240003", "20240012", "9", "100", "20240003", "20240012"};
+            for (int i = 0; i < ids.length; i++) {
+                for (SpillingAggregator g : List.of(small, unbounded)) {
+                    BuildList.AggregatedStudent s = g.student(ids[i], "学生" + ids[i], "班级1");
+                    g.addAward(s, "奖项" + i, "https://img/" + i + ".jpg");
+                    g.endRow();
+                }
+            }
+            assertTrue(small.spilledRuns() > 2);
+            assertEquals(4, small.forEach(s -> spilled.put(s.studentId, awards(s))));
+            unbounded.forEach(s -> inMemory.put(s.studentId, awards(s)));
+        }
+        assertEquals(List.of("9", "100", "20240003", "20240012"), new ArrayList<>(spilled.keySet()));
+        assertEquals(List.of("20240012", "9", "20240003", "100"), new ArrayList<>(inMemory.keySet()));
+        assertEquals(inMemory, spilled);
+        assertEquals(List.of("奖项0", "奖项3", "奖项7"), spilled.get("20240012"));
+    }
+
+    @Test
+    void adoptedRunsKeepSourceOrder() throws IOException {
+        Map<String, List<String>> merged = new LinkedHashMap<>();
+        try (SpillingAggregator total = new SpillingAggregator(Long.MAX_VALUE, 2);
+             SpillingAggregator first = new SpillingAggregator(Long.MAX_VALUE, 2);
+             SpillingAggregator second = new SpillingAggregator(Long.MAX_VALUE, 2)) {
+            // 第二个源先聚合完（模拟并行完成顺序），接管时仍按源顺序
+            second.addAward(second.student("7", "学生7", "班级2"), "乙", "b.jpg");
+            first.addAward(first.student("7", "学生7", "班级1"), "甲", "a.jpg");
+            first.addAward(first.student("3", "学生3", "班级1"), "丙", "c.jpg");
+            total.adoptRuns(first);
+            total.adoptRuns(second);
+            total.forEach(s -> merged.put(s.studentId + s.clazz, awards(s)));
+        }
+        assertEquals(Map.of("3班级1", List.of("丙"), "7班级1", List.of("甲", "乙")), merged);
+        assertEquals(List.of("3班级1", "7班级1"), new ArrayList<>(merged.keySet()));
+    }
+
+    @Test
+    void duplicatesDroppedWithinAndAcrossRuns() throws IOException {
+        String[][] rows = {
+                {"蓝桥杯 国奖", "https://img/a.jpg"},
+                {"蓝桥杯国奖 ", " https://img/a.jpg"},
+                {"ＡＢＣ杯", "https://img/b.jpg"},
+                {"abc杯", "https://img/b.jpg"},
+                {"蓝桥杯国奖", "https://img/A.jpg"},
+        };
+        for (long budget : new long[]{1, Long.MAX_VALUE}) {
+            DedupReport report = new DedupReport();
+            List<BuildList.AggregatedStudent> out = new ArrayList<>();
+            try (SpillingAggregator g = new SpillingAggregator(budget, 2)) {
+                // 预算为 1 时每行一段，重复只能在归并时发现
+                for (String[] r : rows) {
+                    g.addAward(g.student("9", "学生9", "班级1"), r[0], r[1]);
+                    g.endRow();
+                }
+                g.forEach(s -> {
+                    report.add(s);
+                    out.add(s);
+                });
+            }
+            assertEquals(1, out.size());
+            assertEquals(List.of("蓝桥杯 国奖", "ＡＢＣ杯", "蓝桥杯国奖"), awards(out.get(0)));
+            assertEquals(2, report.getDuplicateCount());
+            assertEquals("abc杯", report.getDuplicates().get(1).awardName);
+        }
+    }
+
+    @Test
+    void failedIntermediateMergeLeavesNoRunFiles() throws IOException {
+        Set<Path> before = spillDirs();
+        Path dir;
+        try (SpillingAggregator g = new SpillingAggregator(1, 2)) {
+            for (int i = 0; i < 5; i++) {
+                g.addAward(g.student(String.valueOf(i), "学生" + i, "班级1"), "奖项" + i, "https://img/" + i + ".jpg");
+                g.endRow();
+            }
+            Set<Path> created = spillDirs();
+            created.removeAll(before);
+            assertEquals(1, created.size());
+            dir = created.iterator().next();
+            // 第二组的段截断在字符串中间：第一组已归并成新段，第二组归并到一半失败
+            try (RandomAccessFile f = new RandomAccessFile(dir.resolve("run-3.bin").toFile(), "rw")) {
+                f.setLength(6);
+            }
+            assertThrows(IOException.class, () -> g.forEach(s -> { }));
+        }
+        assertFalse(Files.exists(dir), "溢写目录应已删除");
+    }
+
+    private static Set<Path> spillDirs() throws IOException {
+        try (Stream<Path> s = Files.list(Paths.get(System.getProperty("java.io.tmpdir")))) {
+            Set<Path> out = new HashSet<>();
+            s.filter(p -> p.getFileName().toString().startsWith("buildlist-")).forEach(out::add);
+            return out;
+        }
+    }
+
+    private static List<String> awards(BuildList.AggregatedStudent s) {
+        List<String> out = new ArrayList<>();
+        for (BuildList.AwardPair p : s.awards) out.add(p.award);
+        return out;
+    }
+}
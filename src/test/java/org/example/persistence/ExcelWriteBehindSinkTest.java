@@ -0,0 +1,98 @@
+package org.example.persistence;
+
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.example.config.Config;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ExcelWriteBehindSinkTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void flushReplacesDirtyRowsAndAppendsNewOnes() throws Exception {
+        File file = dir.resolve("Student_Awards.xlsx").toFile();
+        List<Long> versions = new ArrayList<>();
+        // 定时器与阈值都不触发，只在显式 flush 时落盘
+        try (ExcelWriteBehindSink sink = new ExcelWriteBehindSink(file, 3_600_000, Integer.MAX_VALUE, (v, len, mod) -> versions.add(v))) {
+            sink.markDirty(2, row(2, "李四", 0), 1);
+            sink.markDirty(1, row(1, "张三", 0), 1);
+            sink.flush();
+            sink.markDirty(1, row(1, "张三", 5), 2);
+            sink.markDirty(3, row(3, "王五", 1), 3);
+            sink.flush();
+            assertEquals(0, sink.pendingCount());
+        }
+        // 每次落盘报告本批的最大变更版本
+        assertEquals(List.of(1L, 3L), versions);
+
+        try (FileInputStream in = new FileInputStream(file); XSSFWorkbook wb = new XSSFWorkbook(in)) {
+            Sheet sheet = wb.getSheet(Config.SHEET_MAIN);
+            assertEquals(Config.COL_STUDENT_ID, sheet.getRow(0).getCell(0).getStringCellValue());
+            assertEquals(3, sheet.getLastRowNum());
+            // 已有行原位替换，新学生追加在末尾
+            assertRow(sheet.getRow(1), 2, "李四", 0);
+            assertRow(sheet.getRow(2), 1, "张三", 5);
+            assertRow(sheet.getRow(3), 3, "王五", 1);
+        }
+        assertFalse(new File(file.getPath() + ".tmp").exists());
+    }
+
+    @Test
+    void rewriteAllReplacesTableAndDropsPendingRows() throws Exception {
+        File file = dir.resolve("Student_Awards.xlsx").toFile();
+        List<Long> versions = new ArrayList<>();
+        boolean[] written = {false};
+        try (ExcelWriteBehindSink sink = new ExcelWriteBehindSink(file, 3_600_000, Integer.MAX_VALUE, (v, len, mod) -> versions.add(v))) {
+            sink.markDirty(9, row(9, "赵六", 0), 1);
+            sink.markDirty(1, row(1, "张三", 0), 1);
+            sink.flush();
+            sink.markDirty(9, row(9, "赵六", 3), 2);
+            int rows = sink.rewriteAll(sheet -> {
+                NewDataManager.writeHeaderRow(sheet.createRow(0));
+                ExcelWriteBehindSink.writeRow(sheet.createRow(1), row(1, "张三", 5));
+                return 1;
+            }, () -> written[0] = true);
+            assertEquals(1, rows);
+            // 整表已包含此前的脏行，不再单独落盘
+            assertEquals(0, sink.pendingCount());
+        }
+        assertTrue(written[0]);
+        assertEquals(List.of(1L), versions);
+
+        try (FileInputStream in = new FileInputStream(file); XSSFWorkbook wb = new XSSFWorkbook(in)) {
+            Sheet sheet = wb.getSheet(Config.SHEET_MAIN);
+            assertEquals(1, sheet.getLastRowNum());
+            assertRow(sheet.getRow(1), 1, "张三", 5);
+        }
+        assertFalse(new File(file.getPath() + ".tmp").exists());
+    }
+
+    private static Object[] row(long id, String name, int points) {
+        return new Object[]{id, name, "软件1001", points, 0, points > 0 ? 1 : 0, "[]"};
+    }
+
+    private static void assertRow(Row row, long id, String name, int points) {
+        // 复制过的行仍按数值写出
+        assertEquals(CellType.NUMERIC, row.getCell(0).getCellType());
+        assertEquals(CellType.NUMERIC, row.getCell(3).getCellType());
+        assertEquals(id, (long) row.getCell(0).getNumericCellValue());
+        assertEquals(name, row.getCell(1).getStringCellValue());
+        assertEquals(points, (int) row.getCell(3).getNumericCellValue());
+        assertEquals("[]", row.getCell(6).getStringCellValue());
+    }
+}
@@ -0,0 +1,123 @@
+package org.example.persistence;
+
+import org.example.config.Config;
+import org.example.model.StudentAwardRecord;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class NewDataManagerTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void excelFreshnessFollowsRecordedExportVersion() {
+        String excel = dir.resolve("Student_Awards.xlsx").toString();
+        String db = dir.resolve("student.db").toString();
+
+        NewDataManager manager = new NewDataManager(excel, db);
+        StudentAwardRecord r = manager.getOrCreateRecord(1, "张三", "软件1001");
+        r.addAward("蓝桥杯国奖", "https://img/a.jpg", "");
+        manager.persistRecords(List.of(r));
+        assertTrue(manager.isExcelStale());
+        assertTrue(manager.exportExcelIfStale());
+        assertFalse(manager.isExcelStale());
+
+        // 评分经写回缓冲进入 Excel，落盘后导出版本随之前移
+        manager.scoreAward(r, 0, Config.CATEGORY_NATIONAL).join();
+        manager.flushExcel();
+        assertFalse(manager.isExcelStale());
+
+        // 不经写回缓冲的写库使导出失效
+        manager.persistRecords(List.of(r));
+        assertTrue(manager.isExcelStale());
+        manager.saveAll();
+        manager.close();
+
+        // 导出状态记在库中，重启后仍然有效
+        manager = new NewDataManager(excel, db);
+        try {
+            manager.reloadFromDb();
+            assertFalse(manager.isExcelStale());
+            File file = new File(excel);
+            assertTrue(file.setLastModified(file.lastModified() - 60_000));
+            assertTrue(manager.isExcelStale());
+        } finally {
+            manager.close();
+        }
+    }
+
+    @Test
+    void summarySyncFlagSurvivesRestartButNotRecreate() {
+        String excel = dir.resolve("Student_Awards.xlsx").toString();
+        String db = dir.resolve("student.db").toString();
+        NewDataManager manager = new NewDataManager(excel, db);
+        assertFalse(manager.isSummarySynced());
+        manager.markSummarySynced();
+        manager.close();
+
+        manager = new NewDataManager(excel, db);
+        try {
+            assertTrue(manager.isSummarySynced());
+            // 清空重建（快照重建）后的库需要重新同步
+            manager.clearAndRecreateStorage();
+            assertFalse(manager.isSummarySynced());
+        } finally {
+            manager.close();
+        }
+    }
+
+    @Test
+    void legacyAwardsJsonMigratesIntoAwardLabels() throws Exception {
+        String excel = dir.resolve("Student_Awards.xlsx").toString();
+        String db = dir.resolve("legacy.db").toString();
+        // 旧结构：奖项以 JSON 存在 students.awards_json，无 change_version；旧 award_labels 没有 award_index
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + db); Statement st = conn.createStatement()) {
+            st.execute("CREATE TABLE students (student_id INTEGER PRIMARY KEY, name TEXT, class_name TEXT, cert_total_points REAL DEFAULT 0.0, award_total_points REAL DEFAULT 0.0, recorded_award_count INTEGER DEFAULT 0, awards_json TEXT)");
+            st.execute("CREATE TABLE award_labels (student_id INTEGER, label TEXT)");
+            st.execute("INSERT INTO award_labels VALUES (1, 'stale')");
+            st.execute("INSERT INTO students VALUES (1, '张三', '软件1001', 0, 0, 2, '[{\"name\":\"蓝桥杯国奖\",\"image\":\"https://img/a.jpg\",\"category\":\"" + Config.CATEGORY_NATIONAL + "\"},"
+                    + "{\"name\":\"英语四级证书\",\"image\":\"https://img/b.jpg\",\"category\":\"" + Config.CATEGORY_CERT + "\"},"
+                    + "{\"name\":\"校运会\",\"image\":\"\",\"category\":\"\"}]')");
+            st.execute("INSERT INTO students VALUES (2, '李四', '软件1002', 0, 0, 0, NULL)");
+        }
+
+        NewDataManager manager = new NewDataManager(excel, db);
+        try {
+            assertEquals(2, manager.reloadFromDb());
+            StudentAwardRecord r = manager.getRecord(1);
+            assertEquals(3, r.getAwardCount());
+            assertEquals("蓝桥杯国奖", r.getAwardName(0));
+            assertEquals("https://img/b.jpg", r.getAwardImage(1));
+            assertEquals(Config.CATEGORY_NATIONAL, r.getAwardLabel(0));
+            assertEquals(Config.CATEGORY_CERT, r.getAwardLabel(1));
+            assertEquals("", r.getAwardLabel(2));
+            assertEquals(0, manager.getRecord(2).getAwardCount());
+        } finally {
+            manager.close();
+        }
+
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + db); Statement st = conn.createStatement()) {
+            try (ResultSet rs = st.executeQuery("SELECT awards_json FROM students WHERE student_id = 1")) {
+                assertTrue(rs.next());
+                assertNull(rs.getString(1));
+            }
+            try (ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM award_labels")) {
+                assertEquals(3, rs.getInt(1));
+            }
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package org.example.persistence;
+
+import org.example.model.StudentAwardRecord;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PersistencePipelineTest {
+
+    private final FakeWriter writer = new FakeWriter();
+    private PersistencePipeline pipeline;
+
+    @AfterEach
+    void tearDown() {
+        writer.release.countDown();
+        if (pipeline != null) pipeline.close();
+    }
+
+    @Test
+    void submitBlocksWhileQueueIsFull() throws Exception {
+        pipeline = new PersistencePipeline(2, 10, writer);
+        pipeline.submit(delta(1, 1, 0));
+        // 写线程卡在第一批，队列容量 2
+        assertTrue(writer.entered.await(5, TimeUnit.SECONDS));
+        pipeline.submit(delta(2, 2, 0));
+        pipeline.submit(delta(3, 3, 0));
+
+        CountDownLatch submitted = new CountDownLatch(1);
+        Thread producer = new Thread(() -> {
+            try {
+                pipeline.submit(delta(4, 4, 0));
+                submitted.countDown();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        producer.start();
+        assertFalse(submitted.await(200, TimeUnit.MILLISECONDS));
+        assertEquals(2, pipeline.pendingCount());
+
+        writer.release.countDown();
+        assertTrue(submitted.await(5, TimeUnit.SECONDS));
+        producer.join();
+        pipeline.flush().get(5, TimeUnit.SECONDS);
+        assertEquals(4, writer.submitted());
+    }
+
+    @Test
+    void deltasOfOneStudentMergeIntoOneWrite() throws Exception {
+        pipeline = new PersistencePipeline(16, 16, writer);
+        pipeline.submit(delta(1, 9, 0));
+        assertTrue(writer.entered.await(5, TimeUnit.SECONDS));
+        // 以下四条在写线程阻塞期间排队，下一批一起取出
+        pipeline.submit(delta(2, 1, 0));
+        pipeline.submit(delta(3, 1, 1));
+        pipeline.submit(delta(4, 2, 0));
+        RecordDelta latest = delta(5, 1, 0);
+        pipeline.submit(latest);
+        writer.release.countDown();
+        pipeline.flush().get(5, TimeUnit.SECONDS);
+
+        assertEquals(2, writer.batches.size());
+        List<RecordDelta> second = writer.batches.get(1);
+        assertEquals(4, writer.submittedPerBatch.get(1));
+        assertEquals(2, second.size());
+        RecordDelta merged = second.get(0);
+        assertEquals(1, merged.studentId);
+        assertSame(latest.record, merged.record);
+        assertArrayEquals(new int[]{0, 1}, merged.changedIndices);
+        assertEquals(2, second.get(1).studentId);
+    }
+
+    @Test
+    void acksCompleteOnlyAfterTheWrite() throws Exception {
+        pipeline = new PersistencePipeline(16, 16, writer);
+        CompletableFuture<Void> ack = pipeline.submit(delta(1, 1, 0));
+        assertTrue(writer.entered.await(5, TimeUnit.SECONDS));
+        Thread.sleep(50);
+        assertFalse(ack.isDone());
+        writer.release.countDown();
+        ack.get(5, TimeUnit.SECONDS);
+        assertEquals(1, writer.submitted());
+
+        // 写入失败时 ack 异常完成
+        writer.fail = true;
+        CompletableFuture<Void> failed = pipeline.submit(delta(2, 1, 1));
+        assertThrows(CompletionException.class, failed::join);
+    }
+
+    @Test
+    void flushWaitsForEverythingSubmittedBefore() throws Exception {
+        pipeline = new PersistencePipeline(16, 1, writer);
+        pipeline.submit(delta(1, 1, 0));
+        assertTrue(writer.entered.await(5, TimeUnit.SECONDS));
+        pipeline.submit(delta(2, 2, 0));
+        pipeline.submit(delta(3, 3, 0));
+        CompletableFuture<Void> barrier = pipeline.flush();
+        Thread.sleep(50);
+        assertFalse(barrier.isDone());
+
+        writer.release.countDown();
+        barrier.get(5, TimeUnit.SECONDS);
+        // maxBatch 为 1，屏障完成时前面三批都已写完
+        assertEquals(3, writer.batches.size());
+        assertEquals(3, writer.submitted());
+    }
+
+    private static RecordDelta delta(long seq, long studentId, int awardIndex) {
+        StudentAwardRecord r = new StudentAwardRecord(studentId, "学生" + studentId, "软件1001");
+        r.addAward("蓝桥杯国奖", "https://img/a.jpg", "");
+        r.addAward("英语四级证书", "https://img/b.jpg", "");
+        return RecordDelta.labelChange(seq, r, awardIndex);
+    }
+
+    /**
+     * 记录每批写入；第一次写入阻塞到 release 放行，便于在写线程忙时排队。
+     */
+    private static final class FakeWriter implements PersistencePipeline.BatchWriter {
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<List<RecordDelta>> batches = Collections.synchronizedList(new ArrayList<>());
+        final List<Integer> submittedPerBatch = Collections.synchronizedList(new ArrayList<>());
+        volatile boolean fail;
+
+        @Override
+        public void write(List<RecordDelta> deltas, int submitted) throws Exception {
+            entered.countDown();
+            release.await();
+            if (fail) throw new IllegalStateException("模拟写库失败");
+            batches.add(deltas);
+            submittedPerBatch.add(submitted);
+        }
+
+        int submitted() {
+            synchronized (submittedPerBatch) {
+                return submittedPerBatch.stream().mapToInt(Integer::intValue).sum();
+            }
+        }
+    }
+}
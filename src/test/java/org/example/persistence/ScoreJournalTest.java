@@ -0,0 +1,121 @@
+package org.example.persistence;
+
+import org.example.config.Config;
+import org.example.model.StudentAwardRecord;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class ScoreJournalTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void replayStopsAtTornTailAndTrimsIt() throws IOException {
+        File file = dir.resolve("torn.journal").toFile();
+        long recordBytes = writeEvents(file, 3) / 3;
+        // 崩溃时第三条只写了一部分
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(recordBytes * 3 - 5);
+        }
+        List<ScoreJournal.ScoreEvent> replayed = new ArrayList<>();
+        try (ScoreJournal journal = new ScoreJournal(file, 0)) {
+            assertEquals(2, journal.replay(replayed::add));
+            assertEquals(2, journal.eventCount());
+        }
+        assertEquals(List.of(1L, 2L), replayed.stream().map(e -> e.studentId).toList());
+        assertEquals(Config.CATEGORY_NATIONAL, replayed.get(1).newLabel);
+        assertEquals(recordBytes * 2, file.length());
+
+        // 截断后继续追加，新事件接在完整前缀之后
+        try (ScoreJournal journal = new ScoreJournal(file, 0)) {
+            journal.append(new ScoreJournal.ScoreEvent(9, 0, "", Config.CATEGORY_CERT, 1L));
+        }
+        replayed.clear();
+        try (ScoreJournal journal = new ScoreJournal(file, 0)) {
+            assertEquals(3, journal.replay(replayed::add));
+        }
+        assertEquals(9L, replayed.get(2).studentId);
+    }
+
+    @Test
+    void replayStopsAtCrcMismatch() throws IOException {
+        File file = dir.resolve("crc.journal").toFile();
+        long recordBytes = writeEvents(file, 3) / 3;
+        // 改动第二条事件负载中的一个字节（跳过 8 字节头）
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            long pos = recordBytes + 8 + 3;
+            raf.seek(pos);
+            int b = raf.read();
+            raf.seek(pos);
+            raf.write(b ^ 0x5A);
+        }
+        List<ScoreJournal.ScoreEvent> replayed = new ArrayList<>();
+        try (ScoreJournal journal = new ScoreJournal(file, 0)) {
+            assertEquals(1, journal.replay(replayed::add));
+        }
+        assertEquals(1L, replayed.get(0).studentId);
+        assertEquals(recordBytes, file.length());
+    }
+
+    @Test
+    void managerReplaysUnwrittenEventsAndResetsJournalOnceCaughtUp() throws IOException {
+        String excel = dir.resolve("Student_Awards.xlsx").toString();
+        String db = dir.resolve("student.db").toString();
+        File journalFile = new File(db + Config.JOURNAL_SUFFIX);
+
+        NewDataManager manager = new NewDataManager(excel, db);
+        StudentAwardRecord r = manager.getOrCreateRecord(1, "张三", "软件1001");
+        r.addAward("蓝桥杯国奖", "https://img/a.jpg", "");
+        r.addAward("英语四级证书", "https://img/b.jpg", "");
+        manager.persistRecord(r).join();
+        // 评分写库后 journal 中的事件都已合并，随即清空
+        manager.scoreAward(r, 0, Config.CATEGORY_NATIONAL).join();
+        assertEquals(0, journalFile.length());
+        manager.close();
+
+        // 模拟崩溃：事件已写入 journal，但未来得及写库
+        try (ScoreJournal journal = new ScoreJournal(journalFile, 0)) {
+            journal.append(new ScoreJournal.ScoreEvent(1, 1, "", Config.CATEGORY_CERT, System.currentTimeMillis()));
+        }
+        manager = new NewDataManager(excel, db);
+        try {
+            assertEquals(1, manager.reloadFromDb());
+            assertEquals(1, manager.replayJournal());
+            assertEquals(Config.CATEGORY_CERT, manager.getRecord(1).getAwardLabel(1));
+            assertEquals(0, journalFile.length());
+        } finally {
+            manager.close();
+        }
+        manager = new NewDataManager(excel, db);
+        try {
+            manager.reloadFromDb();
+            assertEquals(Config.CATEGORY_NATIONAL, manager.getRecord(1).getAwardLabel(0));
+            assertEquals(Config.CATEGORY_CERT, manager.getRecord(1).getAwardLabel(1));
+            assertEquals(0, manager.replayJournal());
+        } finally {
+            manager.close();
+        }
+    }
+
+    /**
+     * 写入 count 条等长事件（学号 1..count），返回文件长度。
+     */
+    private static long writeEvents(File file, int count) throws IOException {
+        try (ScoreJournal journal = new ScoreJournal(file, 0)) {
+            for (int i = 1; i <= count; i++) {
+                journal.append(new ScoreJournal.ScoreEvent(i, 0, "", Config.CATEGORY_NATIONAL, 1_000L * i));
+            }
+        }
+        return file.length();
+    }
+}
@@ -0,0 +1,259 @@
+package org.example.persistence;
+
+import org.apache.commons.compress.compressors.lz4.FramedLZ4CompressorInputStream;
+import org.example.config.Config;
+import org.example.model.StudentAwardRecord;
+import org.example.util.StringDictionary;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SnapshotFormatTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void allFormatsRoundTripToSameRecords() throws IOException {
+        List<StudentAwardRecord> records = sampleRecords(2_500);
+        File json = dir.resolve("s.json").toFile();
+        File gz = dir.resolve("s.json.gz").toFile();
+        File lz4 = dir.resolve("s.json.lz4").toFile();
+        File bin = dir.resolve("s.snap").toFile();
+        SnapshotManager.exportSnapshot(json, records);
+        SnapshotManager.exportSnapshotCompressed(gz, records);
+        SnapshotManager.exportSnapshot(lz4, records, SnapshotFormat.JSON_LZ4);
+        SnapshotManager.exportSnapshotBinary(bin, records);
+
+        List<StudentAwardRecord> fromJson = readAll(json);
+        assertSameRecords(records, fromJson);
+        assertSameRecords(fromJson, readAll(gz));
+        assertSameRecords(fromJson, readAll(lz4));
+        assertSameRecords(fromJson, readAll(bin));
+        assertTrue(bin.length() < json.length() / 2, "二进制快照应明显小于 JSON");
+    }
+
+    @Test
+    void blockCompressedFilesStayReadableByStandardDecoders() throws IOException {
+        // 约 0.8 MB JSON，跨越多个压缩块
+        List<StudentAwardRecord> records = sampleRecords(2_500);
+        File gz = dir.resolve("s.json.gz").toFile();
+        File lz4 = dir.resolve("s.json.lz4").toFile();
+        SnapshotManager.exportSnapshotCompressed(gz, records);
+        SnapshotManager.exportSnapshot(lz4, records, SnapshotFormat.JSON_LZ4);
+
+        try (InputStream in = new GZIPInputStream(new FileInputStream(gz))) {
+            assertSameRecords(records, readJson(in));
+        }
+        try (InputStream in = new FramedLZ4CompressorInputStream(new FileInputStream(lz4), true)) {
+            assertSameRecords(records, readJson(in));
+        }
+    }
+
+    @Test
+    void plainGzipFromOtherToolsIsImported() throws IOException {
+        List<StudentAwardRecord> records = sampleRecords(500);
+        File json = dir.resolve("s.json").toFile();
+        File gz = dir.resolve("plain.json.gz").toFile();
+        SnapshotManager.exportSnapshot(json, records);
+        try (OutputStream out = new GZIPOutputStream(new FileOutputStream(gz))) {
+            Files.copy(json.toPath(), out);
+        }
+        assertSameRecords(records, readAll(gz));
+    }
+
+    @Test
+    void corruptedBlockIsRejected() throws IOException {
+        File bin = dir.resolve("s.snap").toFile();
+        SnapshotManager.exportSnapshotBinary(bin, sampleRecords(3_000));
+        byte[] data = Files.readAllBytes(bin.toPath());
+        data[data.length / 2] ^= 0x20;
+        Files.write(bin.toPath(), data);
+
+        IOException ex = assertThrows(IOException.class, () -> readAll(bin));
+        assertTrue(ex.getMessage().contains("校验失败"), ex.getMessage());
+    }
+
+    @Test
+    void emptySnapshotRoundTrips() throws IOException {
+        File bin = dir.resolve("empty.snap").toFile();
+        SnapshotManager.exportSnapshotBinary(bin, List.of());
+        assertEquals(0, readAll(bin).size());
+    }
+
+    @Test
+    void failedWriteLeavesExistingSnapshotIntact() throws IOException {
+        File bin = dir.resolve("s.snap").toFile();
+        List<StudentAwardRecord> records = sampleRecords(200);
+        SnapshotManager.exportSnapshotBinary(bin, records);
+        byte[] before = Files.readAllBytes(bin.toPath());
+
+        // 写到一半时记录源出错
+        List<StudentAwardRecord> broken = new ArrayList<>(sampleRecords(300));
+        broken.set(250, null);
+        assertThrows(RuntimeException.class, () -> SnapshotManager.writeSnapshotFile(bin, broken, SnapshotFormat.BINARY, SnapshotMeta.full(broken.size())));
+        assertArrayEquals(before, Files.readAllBytes(bin.toPath()));
+        assertFalse(new File(bin.getPath() + ".tmp").exists());
+        assertSameRecords(records, readAll(bin));
+    }
+
+    @Test
+    void indexedSelectionMatchesFilteredScan() throws IOException {
+        List<StudentAwardRecord> records = sampleRecords(5_000);
+        File bin = dir.resolve("s.snap").toFile();
+        File json = dir.resolve("s.json").toFile();
+        SnapshotManager.exportSnapshotBinary(bin, records);
+        SnapshotManager.exportSnapshot(json, records);
+
+        long from = records.get(1_200).getStudentId();
+        long to = records.get(1_700).getStudentId();
+        for (SnapshotFilter filter : List.of(SnapshotFilter.byIdRange(from, to), SnapshotFilter.byClass("班级7"))) {
+            List<StudentAwardRecord> expected = records.stream().filter(filter::matches).toList();
+            assertSameRecords(expected, readAll(bin, filter));
+            assertSameRecords(expected, readAll(json, filter));
+        }
+        // 学号范围只跨 1~2 个块，其余块不读取
+        try (BinarySnapshotReader reader = BinarySnapshotReader.openIndexed(bin, SnapshotFilter.byIdRange(from, to), new StringDictionary())) {
+            assertTrue(reader.selectedBlocks() <= 2, "命中块数 " + reader.selectedBlocks());
+        }
+    }
+
+    @Test
+    void unsortedInputStillSelectsEveryMatchingRecord() throws IOException {
+        List<StudentAwardRecord> records = new ArrayList<>(sampleRecords(3_000));
+        Collections.shuffle(records, new Random(11));
+        File bin = dir.resolve("unsorted.snap").toFile();
+        SnapshotManager.exportSnapshotBinary(bin, records);
+
+        assertSameRecords(records, readAll(bin));
+        List<Long> ids = records.stream().map(StudentAwardRecord::getStudentId).sorted().toList();
+        SnapshotFilter filter = SnapshotFilter.byIdRange(ids.get(1_000), ids.get(1_100));
+        assertSameRecords(records.stream().filter(filter::matches).toList(), readAll(bin, filter));
+    }
+
+    @Test
+    void compactingBaseAndDeltasMatchesFinalState() throws IOException {
+        List<StudentAwardRecord> base = sampleRecords(1_000);
+        Map<Long, StudentAwardRecord> expected = new TreeMap<>();
+        base.forEach(r -> expected.put(r.getStudentId(), r));
+        SnapshotMeta full = SnapshotMeta.full(base.size());
+        File f0 = dir.resolve("base.snap").toFile();
+        SnapshotManager.writeSnapshotFile(f0, base, SnapshotFormat.BINARY, full);
+
+        // 第一个增量：改写 10 名学生并新增 1 名；第二个增量再改写其中 5 名
+        List<StudentAwardRecord> d1 = new ArrayList<>();
+        for (int i = 10; i < 20; i++) d1.add(rescored(base.get(i), Config.CATEGORY_NATIONAL));
+        d1.add(rescored(new StudentAwardRecord(99_999_999_999L, "新生", "班级1"), Config.CATEGORY_SCHOOL));
+        SnapshotMeta m1 = SnapshotMeta.delta(full.snapshotId, d1.size());
+        File f1 = dir.resolve("d1.json").toFile();
+        SnapshotManager.writeSnapshotFile(f1, d1, SnapshotFormat.JSON, m1);
+        d1.forEach(r -> expected.put(r.getStudentId(), r));
+
+        List<StudentAwardRecord> d2 = new ArrayList<>();
+        for (int i = 15; i < 20; i++) d2.add(rescored(base.get(i), Config.CATEGORY_COLLEGE));
+        SnapshotMeta m2 = SnapshotMeta.delta(m1.snapshotId, d2.size());
+        File f2 = dir.resolve("d2.json.gz").toFile();
+        SnapshotManager.writeSnapshotFile(f2, d2, SnapshotFormat.JSON_GZIP, m2);
+        d2.forEach(r -> expected.put(r.getStudentId(), r));
+
+        File out = dir.resolve("compacted.snap").toFile();
+        assertTrue(SnapshotManager.compactChain(List.of(f2, f0, f1), out, SnapshotFormat.BINARY));
+        assertSameRecords(new ArrayList<>(expected.values()), readAll(out));
+        try (SnapshotRecordReader reader = SnapshotManager.openReader(out)) {
+            assertEquals(m2.snapshotId, reader.meta().snapshotId);
+            assertFalse(reader.meta().isDelta());
+        }
+        // 缺少中间的增量时拒绝
+        assertFalse(SnapshotManager.compactChain(List.of(f0, f2), dir.resolve("broken.snap").toFile(), SnapshotFormat.BINARY));
+    }
+
+    private static StudentAwardRecord rescored(StudentAwardRecord r, String label) {
+        StudentAwardRecord copy = new StudentAwardRecord(r.getStudentId(), r.getName(), r.getClassName());
+        for (int i = 0; i < r.getAwardCount(); i++) copy.addAward(r.getAwardName(i), r.getAwardImage(i), label);
+        copy.addAward("补录奖项", "https://img/new.jpg", label);
+        copy.recomputeTotals();
+        return copy;
+    }
+
+    private static List<StudentAwardRecord> readAll(File f) throws IOException {
+        List<StudentAwardRecord> out = new ArrayList<>();
+        try (SnapshotRecordReader reader = SnapshotManager.openReader(f)) {
+            for (StudentAwardRecord r; (r = reader.next()) != null; ) out.add(r);
+            assertEquals(out.size(), reader.declaredCount());
+        }
+        return out;
+    }
+
+    private static List<StudentAwardRecord> readAll(File f, SnapshotFilter filter) throws IOException {
+        List<StudentAwardRecord> out = new ArrayList<>();
+        try (SnapshotRecordReader reader = SnapshotManager.openReader(f, filter)) {
+            for (StudentAwardRecord r; (r = reader.next()) != null; ) out.add(r);
+        }
+        return out;
+    }
+
+    private static List<StudentAwardRecord> readJson(InputStream in) throws IOException {
+        List<StudentAwardRecord> out = new ArrayList<>();
+        try (JsonSnapshotReader reader = new JsonSnapshotReader(in, new StringDictionary())) {
+            for (StudentAwardRecord r; (r = reader.next()) != null; ) out.add(r);
+        }
+        return out;
+    }
+
+    private static List<StudentAwardRecord> sampleRecords(int n) {
+        Random rnd = new Random(7);
+        String[] labels = {"", "", Config.CATEGORY_CERT, Config.CATEGORY_NATIONAL, Config.CATEGORY_PROVINCE_CITY,
+                Config.CATEGORY_SCHOOL, Config.CATEGORY_COLLEGE, Config.CATEGORY_NONE, "旧标签"};
+        List<StudentAwardRecord> list = new ArrayList<>(n);
+        long id = 10_000_000_000L;
+        for (int i = 0; i < n; i++) {
+            id += 1 + rnd.nextInt(1_000);
+            StudentAwardRecord r = new StudentAwardRecord(id, "学生" + i, "班级" + rnd.nextInt(50));
+            int awards = rnd.nextInt(6);
+            for (int a = 0; a < awards; a++) {
+                r.addAward("奖项" + rnd.nextInt(200), "https://img/" + rnd.nextInt(300) + ".jpg", labels[rnd.nextInt(labels.length)]);
+            }
+            r.recomputeTotals();
+            list.add(r);
+        }
+        return list;
+    }
+
+    private static void assertSameRecords(List<StudentAwardRecord> expected, List<StudentAwardRecord> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            StudentAwardRecord e = expected.get(i);
+            StudentAwardRecord a = actual.get(i);
+            a.recomputeTotals();
+            assertEquals(e.getStudentId(), a.getStudentId());
+            assertEquals(e.getName(), a.getName());
+            assertEquals(e.getClassName(), a.getClassName());
+            assertEquals(e.toAwardMaps(), a.toAwardMaps());
+            assertEquals(e.getCertTotalFixedPoints(), a.getCertTotalFixedPoints());
+            assertEquals(e.getAwardTotalFixedPoints(), a.getAwardTotalFixedPoints());
+            assertEquals(e.getRecordedAwardCount(), a.getRecordedAwardCount());
+        }
+    }
+}
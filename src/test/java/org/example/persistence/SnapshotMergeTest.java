@@ -0,0 +1,78 @@
+package org.example.persistence;
+
+import org.example.config.Config;
+import org.example.model.AwardCategory;
+import org.example.model.StudentAwardRecord;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+public class SnapshotMergeTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void mergesLabelsPerAwardAndReportsConflicts() throws IOException {
+        // 评分人 A 较早导出：学生 1 的第一个奖项、学生 2 的第一个奖项；学生 4 只在 A 中
+        File a = write("a.snap", 1_000L,
+                student(1, Config.CATEGORY_NATIONAL, ""),
+                student(2, Config.CATEGORY_SCHOOL, ""),
+                student(4, "", ""));
+        // 评分人 B 较晚导出：学生 1 的第二个奖项，学生 2 的第一个奖项评得不同
+        File b = write("b.json", 2_000L,
+                student(1, "", Config.CATEGORY_CERT),
+                student(2, Config.CATEGORY_COLLEGE, ""),
+                student(3, "", ""));
+
+        File out = dir.resolve("merged.snap").toFile();
+        MergeReport report = SnapshotManager.mergeSnapshots(List.of(b, a), out, SnapshotFormat.BINARY, LabelMergePolicy.LAST_WRITER);
+        assertNotNull(report);
+        List<StudentAwardRecord> merged = readAll(out);
+        assertEquals(List.of(1L, 2L, 3L, 4L), merged.stream().map(StudentAwardRecord::getStudentId).toList());
+        assertEquals(Config.CATEGORY_NATIONAL, merged.get(0).getAwardLabel(0));
+        assertEquals(Config.CATEGORY_CERT, merged.get(0).getAwardLabel(1));
+        assertEquals(Config.CATEGORY_COLLEGE, merged.get(1).getAwardLabel(0));
+        assertEquals(1, report.getConflictCount());
+        MergeReport.Conflict c = report.getConflicts().get(0);
+        assertEquals(2, c.studentId);
+        assertEquals("a.snap", c.discardedSource);
+
+        report = SnapshotManager.mergeSnapshots(List.of(a, b), out, SnapshotFormat.JSON, LabelMergePolicy.HIGHEST_SCORE);
+        assertNotNull(report);
+        String higher = AwardCategory.fromLabel(Config.CATEGORY_SCHOOL).points() >= AwardCategory.fromLabel(Config.CATEGORY_COLLEGE).points()
+                ? Config.CATEGORY_SCHOOL : Config.CATEGORY_COLLEGE;
+        assertEquals(higher, readAll(out).get(1).getAwardLabel(0));
+    }
+
+    private File write(String name, long generatedAt, StudentAwardRecord... records) throws IOException {
+        File f = dir.resolve(name).toFile();
+        SnapshotFormat format = name.endsWith(".snap") ? SnapshotFormat.BINARY : SnapshotFormat.JSON;
+        SnapshotManager.writeSnapshotFile(f, List.of(records), format, new SnapshotMeta(name, null, generatedAt, records.length));
+        return f;
+    }
+
+    private static StudentAwardRecord student(long id, String first, String second) {
+        StudentAwardRecord r = new StudentAwardRecord(id, "学生" + id, "班级1");
+        r.addAward("竞赛一等奖", "https://img/1.jpg", first);
+        r.addAward("英语证书", "https://img/2.jpg", second);
+        r.recomputeTotals();
+        return r;
+    }
+
+    private static List<StudentAwardRecord> readAll(File f) throws IOException {
+        List<StudentAwardRecord> out = new ArrayList<>();
+        try (SnapshotRecordReader reader = SnapshotManager.openReader(f)) {
+            for (StudentAwardRecord r; (r = reader.next()) != null; ) out.add(r);
+        }
+        return out;
+    }
+}
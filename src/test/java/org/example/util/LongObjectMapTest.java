@@ -0,0 +1,52 @@
+package org.example.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class LongObjectMapTest {
+
+    @Test
+    void matchesTreeMapUnderRandomPutRemove() {
+        LongObjectMap<String> map = new LongObjectMap<>();
+        TreeMap<Long, String> expected = new TreeMap<>();
+        Random rnd = new Random(42);
+        for (int i = 0; i < 20_000; i++) {
+            long key = 10_000_000_000L + rnd.nextInt(5_000);
+            if (rnd.nextInt(4) == 0) {
+                assertEquals(expected.remove(key), map.remove(key));
+            } else {
+                String v = "v" + i;
+                assertEquals(expected.put(key, v), map.put(key, v));
+            }
+        }
+        assertEquals(expected.size(), map.size());
+        for (Map.Entry<Long, String> e : expected.entrySet()) {
+            assertEquals(e.getValue(), map.get(e.getKey()));
+        }
+        assertArrayEquals(expected.keySet().stream().mapToLong(Long::longValue).toArray(), map.sortedKeys());
+        assertEquals(expected.values().stream().toList(), map.valuesInKeyOrder());
+    }
+
+    @Test
+    void orderedViewRefreshesAfterChange() {
+        LongObjectMap<String> map = new LongObjectMap<>();
+        map.put(3, "c");
+        map.put(1, "a");
+        assertEquals(List.of("a", "c"), map.valuesInKeyOrder());
+        map.put(2, "b");
+        assertEquals(List.of("a", "b", "c"), map.valuesInKeyOrder());
+        map.clear();
+        assertEquals(0, map.valuesInKeyOrder().size());
+        assertNull(map.get(1));
+        assertEquals("x", map.computeIfAbsent(7, k -> "x"));
+        assertEquals("x", map.get(7));
+    }
+}
@@ -0,0 +1,52 @@
+package org.example.util;
+
+import org.apache.commons.compress.compressors.lz4.BlockLZ4CompressorInputStream;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class Lz4BlockTest {
+
+    @Test
+    void roundTripsEdgeCases() throws IOException {
+        Random rnd = new Random(3);
+        for (int len : new int[]{0, 1, 5, 12, 13, 14, 100, 4096, 65536, 200_000}) {
+            byte[] random = new byte[len];
+            rnd.nextBytes(random);
+            byte[] runs = new byte[len];
+            Arrays.fill(runs, (byte) 'x');
+            byte[] text = new byte[len];
+            byte[] pattern = "{\"name\":\"奖项12\",\"image\":\"https://img/3.jpg\",\"category\":\"\"},".getBytes(StandardCharsets.UTF_8);
+            for (int i = 0; i < len; i++) text[i] = pattern[(i * 7 + i / 97) % pattern.length];
+            for (byte[] data : new byte[][]{random, runs, text}) {
+                assertRoundTrip(data);
+            }
+        }
+    }
+
+    @Test
+    void compressesRepetitiveData() {
+        byte[] data = "学号,姓名,班级,奖项;".repeat(5_000).getBytes(StandardCharsets.UTF_8);
+        byte[] out = new byte[Lz4Block.maxCompressedLength(data.length)];
+        assertTrue(Lz4Block.compress(data, 0, data.length, out, 0) < data.length / 20);
+    }
+
+    private static void assertRoundTrip(byte[] data) throws IOException {
+        byte[] compressed = new byte[Lz4Block.maxCompressedLength(data.length) + 3];
+        int n = Lz4Block.compress(data, 0, data.length, compressed, 3);
+        byte[] restored = new byte[data.length];
+        Lz4Block.decompress(compressed, 3, n, restored, 0);
+        assertArrayEquals(data, restored);
+        // 标准解码器也能读出同样内容
+        try (BlockLZ4CompressorInputStream in = new BlockLZ4CompressorInputStream(new ByteArrayInputStream(compressed, 3, n))) {
+            assertArrayEquals(data, in.readAllBytes());
+        }
+    }
+}